@@ -0,0 +1,43 @@
+package com.zjgsu.gateway.cache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 可在其他请求的响应上重放的响应头
+ * 排除逐跳头、长度(重放时重新计算)和跨域头(由网关按当前请求生成)
+ */
+final class ReplayableHeaders {
+
+    private static final Set<String> EXCLUDED_HEADERS = Set.of("connection", "keep-alive", "transfer-encoding",
+            "content-length", "date", "vary", "x-cache");
+    private static final String CORS_HEADER_PREFIX = "access-control-";
+
+    private ReplayableHeaders() {
+    }
+
+    static HttpHeaders copyOf(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        headers.forEach((name, values) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (!EXCLUDED_HEADERS.contains(lower) && !lower.startsWith(CORS_HEADER_PREFIX)) {
+                copy.put(name, List.copyOf(values));
+            }
+        });
+        return HttpHeaders.readOnlyHttpHeaders(copy);
+    }
+
+    /**
+     * 写入目标响应中尚未设置的头
+     */
+    static void applyTo(HttpHeaders target, HttpHeaders replayed) {
+        replayed.forEach((name, values) -> {
+            if (!target.containsKey(name)) {
+                target.put(name, values);
+            }
+        });
+    }
+}
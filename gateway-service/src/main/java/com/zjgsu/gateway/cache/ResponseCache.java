@@ -0,0 +1,183 @@
+package com.zjgsu.gateway.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 网关响应缓存
+ * 按字节预算淘汰的LRU，条目带过期时间和失效标签(请求路径、用户)，按标签批量失效
+ * 请求开始之后其标签发生过失效的响应不再写入，避免把失效前读到的旧数据缓存下来
+ */
+@Component
+public class ResponseCache {
+
+    // 每个条目除响应体和响应头外的估算开销
+    private static final int ENTRY_OVERHEAD = 256;
+    // 失效记录最多保留的数量，超过时清理较早的记录
+    private static final int MAX_INVALIDATIONS = 10_000;
+
+    /**
+     * 缓存的响应
+     */
+    public record CachedResponse(int status, HttpHeaders headers, byte[] body, String eTag,
+                                 long storedAtNanos, long expiresAtNanos, Set<String> tags) {
+    }
+
+    private record Entry(CachedResponse response, long weight) {
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long invalidationWindowNanos;
+
+    // 以下状态由this保护
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<String>> keysByTag = new HashMap<>();
+    private final Map<String, Long> invalidatedAt = new HashMap<>();
+    private long bytes;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         @Value("${app.response-cache.max-size:64MB}") DataSize maxSize,
+                         @Value("${app.response-cache.max-entry-size:256KB}") DataSize maxEntrySize,
+                         @Value("${app.response-cache.invalidation-window:PT1M}") Duration invalidationWindow) {
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.invalidationWindowNanos = invalidationWindow.toNanos();
+
+        this.hitCounter = Counter.builder("gateway.response.cache.requests").tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("gateway.response.cache.requests").tag("result", "miss")
+                .register(meterRegistry);
+        this.invalidationCounter = Counter.builder("gateway.response.cache.invalidations").register(meterRegistry);
+        Gauge.builder("gateway.response.cache.bytes", this, ResponseCache::getBytes).register(meterRegistry);
+        Gauge.builder("gateway.response.cache.entries", this, ResponseCache::getEntryCount).register(meterRegistry);
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * 查询未过期的响应，过期的条目当场移除
+     */
+    public synchronized Optional<CachedResponse> get(String key, long nowNanos) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.response().expiresAtNanos() - nowNanos <= 0) {
+            remove(key);
+            entry = null;
+        }
+        (entry != null ? hitCounter : missCounter).increment();
+        return Optional.ofNullable(entry).map(Entry::response);
+    }
+
+    /**
+     * 写入响应
+     * @param requestStartNanos 请求开始的时间，之后有标签失效过或请求耗时超过失效记录的保留时间时不写入
+     * @return 是否写入
+     */
+    public synchronized boolean put(String key, CachedResponse response, long requestStartNanos) {
+        long weight = weigh(key, response);
+        if (weight > maxEntryBytes || response.expiresAtNanos() - response.storedAtNanos() <= 0
+                || response.storedAtNanos() - requestStartNanos > invalidationWindowNanos) {
+            return false;
+        }
+        for (String tag : response.tags()) {
+            Long invalidated = invalidatedAt.get(tag);
+            if (invalidated != null && invalidated - requestStartNanos >= 0) {
+                return false;
+            }
+        }
+        remove(key);
+        entries.put(key, new Entry(response, weight));
+        bytes += weight;
+        for (String tag : response.tags()) {
+            keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+        evict();
+        return true;
+    }
+
+    /**
+     * 使带有该标签的全部响应失效
+     * @return 移除的条目数
+     */
+    public synchronized int invalidate(String tag, long nowNanos) {
+        invalidatedAt.put(tag, nowNanos);
+        if (invalidatedAt.size() > MAX_INVALIDATIONS) {
+            invalidatedAt.values().removeIf(at -> nowNanos - at > invalidationWindowNanos);
+        }
+        invalidationCounter.increment();
+        Set<String> keys = keysByTag.get(tag);
+        if (keys == null) {
+            return 0;
+        }
+        List<String> removed = List.copyOf(keys);
+        removed.forEach(this::remove);
+        return removed.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private void evict() {
+        // 访问顺序的LinkedHashMap上get会调整顺序，淘汰时只通过迭代器访问
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> entry = eldest.next();
+            eldest.remove();
+            unlink(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unlink(key, entry);
+        }
+    }
+
+    private void unlink(String key, Entry entry) {
+        bytes -= entry.weight();
+        for (String tag : entry.response().tags()) {
+            Set<String> keys = keysByTag.get(tag);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByTag.remove(tag);
+            }
+        }
+    }
+
+    private static long weigh(String key, CachedResponse response) {
+        long headerBytes = 0;
+        for (Map.Entry<String, List<String>> header : response.headers().entrySet()) {
+            headerBytes += header.getKey().length();
+            for (String value : header.getValue()) {
+                headerBytes += value.length();
+            }
+        }
+        return ENTRY_OVERHEAD + key.length() * 2L + headerBytes * 2 + response.body().length;
+    }
+}
@@ -0,0 +1,249 @@
+package com.zjgsu.gateway.cache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET响应缓存过滤器，按路由配置启用：
+ * <pre>
+ * filters:
+ *   - ResponseCache=PT2S
+ * </pre>
+ * 缓存键为路径、查询参数和X-User-Id，命中时直接在网关返回，不转发到下游
+ * 下游响应的Cache-Control为no-store/no-cache时不缓存，max-age/s-maxage小于路由TTL时按其缩短；
+ * 缓存的ETag与请求的If-None-Match匹配时返回304
+ * 下游的todo/user事件到达后按路径使缓存失效(见ResponseCacheInvalidator)，TTL是事件丢失或延迟时的兜底
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    public static final String CACHE_HEADER = "X-Cache";
+    public static final String USER_TAG_PREFIX = "user:";
+
+    private static final String USER_ID_HEADER = "X-User-Id";
+
+    private final ResponseCache responseCache;
+
+    public ResponseCacheGatewayFilterFactory(ResponseCache responseCache) {
+        super(Config.class);
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("ttl");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // 在NettyWriteResponseFilter之前执行，才能替换它写回响应体时使用的response
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+            List<String> requestDirectives = directives(request.getHeaders().getCacheControl());
+            if (requestDirectives.contains("no-store")) {
+                return chain.filter(exchange);
+            }
+
+            String userId = request.getHeaders().getFirst(USER_ID_HEADER);
+            String path = request.getPath().value();
+            String query = request.getURI().getRawQuery();
+            String key = path + (query != null ? "?" + query : "") + "|" + (userId != null ? userId : "");
+            long start = System.nanoTime();
+
+            // 客户端要求no-cache时跳过查询，但仍用新响应刷新缓存
+            if (!requestDirectives.contains("no-cache")) {
+                ResponseCache.CachedResponse cached = responseCache.get(key, start).orElse(null);
+                if (cached != null) {
+                    return writeCached(exchange, cached, start);
+                }
+            }
+
+            Set<String> tags = userId != null ? Set.of(path, USER_TAG_PREFIX + userId) : Set.of(path);
+            ServerHttpResponse response = exchange.getResponse();
+            response.getHeaders().set(CACHE_HEADER, "MISS");
+            ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(response) {
+                @Override
+                public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                    Duration ttl = ttl(config.getTtl(), getStatusCode(), getHeaders());
+                    long contentLength = getHeaders().getContentLength();
+                    if (ttl == null || contentLength > responseCache.getMaxEntryBytes()) {
+                        return super.writeWith(body);
+                    }
+                    // 边转发边复制，不等待完整响应体；未声明长度的响应超过单条上限时放弃缓存，复制的内存不超过上限
+                    BodyCopy copy = new BodyCopy(responseCache.getMaxEntryBytes());
+                    return super.writeWith(Flux.<DataBuffer>from(body)
+                            .doOnNext(copy::append)
+                            .doOnComplete(() -> {
+                                byte[] bytes = copy.toByteArray();
+                                if (bytes == null) {
+                                    return;
+                                }
+                                long now = System.nanoTime();
+                                responseCache.put(key, new ResponseCache.CachedResponse(getStatusCode().value(),
+                                        ReplayableHeaders.copyOf(getHeaders()), bytes, getHeaders().getETag(),
+                                        now, now + ttl.toNanos(), tags), start);
+                            }));
+                }
+            };
+            return chain.filter(exchange.mutate().response(decorated).build());
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, ResponseCache.CachedResponse cached, long now) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        ReplayableHeaders.applyTo(headers, cached.headers());
+        headers.set(CACHE_HEADER, "HIT");
+        headers.set(HttpHeaders.AGE, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(now - cached.storedAtNanos())));
+
+        if (cached.eTag() != null && matches(exchange.getRequest().getHeaders(), cached.eTag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatusCode.valueOf(cached.status()));
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    /**
+     * 只缓存200响应；返回null表示不缓存
+     * s-maxage优先于max-age，二者都不超过路由配置的TTL
+     */
+    private static Duration ttl(Duration routeTtl, HttpStatusCode status, HttpHeaders headers) {
+        if (status == null || status.value() != HttpStatus.OK.value() || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return null;
+        }
+        List<String> directives = directives(headers.getCacheControl());
+        if (directives.contains("no-store") || directives.contains("no-cache")) {
+            return null;
+        }
+        Duration ttl = routeTtl;
+        Long maxAge = maxAge(directives, "s-maxage=");
+        if (maxAge == null) {
+            maxAge = maxAge(directives, "max-age=");
+        }
+        if (maxAge != null && Duration.ofSeconds(maxAge).compareTo(ttl) < 0) {
+            ttl = Duration.ofSeconds(maxAge);
+        }
+        return ttl.isZero() || ttl.isNegative() ? null : ttl;
+    }
+
+    private static Long maxAge(List<String> directives, String prefix) {
+        for (String directive : directives) {
+            if (directive.startsWith(prefix)) {
+                try {
+                    return Long.parseLong(directive.substring(prefix.length()).replace("\"", ""));
+                } catch (NumberFormatException e) {
+                    // 无法解析时按不可缓存处理
+                    return 0L;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<String> directives(String cacheControl) {
+        if (cacheControl == null || cacheControl.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(cacheControl.split(","))
+                .map(directive -> directive.trim().toLowerCase(Locale.ROOT))
+                .toList();
+    }
+
+    /**
+     * If-None-Match使用弱比较
+     */
+    private static boolean matches(HttpHeaders requestHeaders, String eTag) {
+        List<String> ifNoneMatch;
+        try {
+            ifNoneMatch = requestHeaders.getIfNoneMatch();
+        } catch (IllegalArgumentException e) {
+            // 格式错误的If-None-Match按未携带处理
+            return false;
+        }
+        String target = weak(eTag);
+        return ifNoneMatch.stream().anyMatch(candidate -> "*".equals(candidate) || weak(candidate).equals(target));
+    }
+
+    private static String weak(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    /**
+     * 转发过程中复制的响应体，超过上限后丢弃已复制的内容
+     */
+    private static final class BodyCopy {
+        private final long limit;
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        BodyCopy(long limit) {
+            this.limit = limit;
+        }
+
+        void append(DataBuffer buffer) {
+            if (bytes == null) {
+                return;
+            }
+            int readable = buffer.readableByteCount();
+            if (bytes.size() + (long) readable > limit) {
+                bytes = null;
+                return;
+            }
+            // 复制后恢复读位置，不影响写回客户端
+            int position = buffer.readPosition();
+            byte[] chunk = new byte[readable];
+            buffer.read(chunk);
+            buffer.readPosition(position);
+            bytes.writeBytes(chunk);
+        }
+
+        /**
+         * @return 完整的响应体，超过上限时返回null
+         */
+        byte[] toByteArray() {
+            return bytes == null ? null : bytes.toByteArray();
+        }
+    }
+
+    public static class Config {
+        // 缓存时间，下游未给出更短的max-age时使用
+        private Duration ttl = Duration.ofSeconds(2);
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.zjgsu.gateway.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 按todo/user事件使网关缓存的响应失效
+ * todo事件使/api/todos/{todoId}失效；user事件使/api/users/{userId}失效，用户删除时同时清除该用户的全部缓存
+ * 按content-type解码JSON或CBOR消息体，只读取ID字段，不依赖各服务的事件类型
+ */
+@Component
+public class ResponseCacheInvalidator {
+    private static final Logger log = LoggerFactory.getLogger(ResponseCacheInvalidator.class);
+
+    private static final String CBOR_CONTENT_TYPE = "application/cbor";
+
+    private final ResponseCache responseCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new CBORMapper();
+
+    public ResponseCacheInvalidator(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * 失效只影响缓存命中率，解码失败的消息记录日志后丢弃，使用自动确认
+     */
+    @RabbitListener(queues = "#{responseCacheInvalidationQueue.name}", ackMode = "AUTO")
+    public void onEvent(Message message) {
+        String routingKey = message.getMessageProperties().getReceivedRoutingKey();
+        Map<?, ?> event;
+        try {
+            event = decode(message);
+        } catch (IOException e) {
+            log.warn("无法解析缓存失效事件: {}, routing key: {}", e.getMessage(), routingKey);
+            return;
+        }
+        long now = System.nanoTime();
+        if (routingKey.startsWith("todo.") && event.get("todoId") instanceof Number todoId) {
+            responseCache.invalidate("/api/todos/" + todoId.longValue(), now);
+        } else if (routingKey.startsWith("user.") && event.get("userId") instanceof Number userId) {
+            responseCache.invalidate("/api/users/" + userId.longValue(), now);
+            if (routingKey.equals("user.deleted")) {
+                responseCache.invalidate(ResponseCacheGatewayFilterFactory.USER_TAG_PREFIX + userId.longValue(), now);
+            }
+        }
+    }
+
+    private Map<?, ?> decode(Message message) throws IOException {
+        String contentType = message.getMessageProperties().getContentType();
+        ObjectMapper mapper = contentType != null && contentType.startsWith(CBOR_CONTENT_TYPE)
+                ? cborMapper : objectMapper;
+        return mapper.readValue(message.getBody(), Map.class);
+    }
+}
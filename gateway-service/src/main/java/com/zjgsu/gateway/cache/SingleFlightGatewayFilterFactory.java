@@ -0,0 +1,241 @@
+package com.zjgsu.gateway.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GET请求合并(single-flight)过滤器，按路由配置启用：
+ * <pre>
+ * filters:
+ *   - SingleFlight
+ * </pre>
+ * 路径、查询参数和X-User-Id相同的并发请求只转发第一个，其余请求等待它的响应并复用
+ * 首个请求的响应照常流式写回，同时复制一份不超过max-body-size的响应体共享给等待的请求；
+ * 响应体超过上限、转发失败或首个请求被取消时，等待的请求各自转发；
+ * 等待超过follower-timeout时也各自转发，慢的首个请求不会拖住所有等待的请求
+ * 带条件请求头(If-None-Match等)或Range的请求响应因请求而异，不参与合并
+ */
+@Component
+public class SingleFlightGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<SingleFlightGatewayFilterFactory.Config> {
+
+    private static final String USER_ID_HEADER = "X-User-Id";
+    private static final List<String> PER_REQUEST_HEADERS = List.of(HttpHeaders.IF_NONE_MATCH,
+            HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_MATCH, HttpHeaders.IF_UNMODIFIED_SINCE, HttpHeaders.RANGE);
+
+    private record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+    }
+
+    /**
+     * 一次进行中的上游调用
+     */
+    private static final class Flight {
+        private final Sinks.One<Optional<SharedResponse>> result = Sinks.one();
+        private final AtomicInteger followers = new AtomicInteger();
+    }
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final long defaultMaxBodyBytes;
+    private final Duration defaultFollowerTimeout;
+
+    private final Counter leaderCounter;
+    private final Counter coalescedCounter;
+    private final Counter fallbackCounter;
+    private final DistributionSummary followersSummary;
+
+    public SingleFlightGatewayFilterFactory(MeterRegistry meterRegistry,
+                                            @Value("${app.single-flight.max-body-size:1MB}") DataSize maxBodySize,
+                                            @Value("${app.single-flight.follower-timeout:PT5S}")
+                                            Duration followerTimeout) {
+        super(Config.class);
+        this.defaultMaxBodyBytes = maxBodySize.toBytes();
+        this.defaultFollowerTimeout = followerTimeout;
+
+        this.leaderCounter = Counter.builder("gateway.single.flight.requests").tag("result", "leader")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("gateway.single.flight.requests").tag("result", "coalesced")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("gateway.single.flight.requests").tag("result", "fallback")
+                .register(meterRegistry);
+        // 每次上游调用服务的等待请求数，合并率 = coalesced / (leader + coalesced + fallback)
+        this.followersSummary = DistributionSummary.builder("gateway.single.flight.followers")
+                .register(meterRegistry);
+        Gauge.builder("gateway.single.flight.inflight", flights, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("maxBodySize", "followerTimeout");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        long maxBodyBytes = config.getMaxBodySize() != null ? config.getMaxBodySize().toBytes() : defaultMaxBodyBytes;
+        Duration followerTimeout = config.getFollowerTimeout() != null
+                ? config.getFollowerTimeout() : defaultFollowerTimeout;
+        // 与ResponseCache相同，在NettyWriteResponseFilter之前替换response
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET
+                    || PER_REQUEST_HEADERS.stream().anyMatch(request.getHeaders()::containsKey)) {
+                return chain.filter(exchange);
+            }
+            String userId = request.getHeaders().getFirst(USER_ID_HEADER);
+            String query = request.getURI().getRawQuery();
+            String key = request.getPath().value() + (query != null ? "?" + query : "")
+                    + "|" + (userId != null ? userId : "");
+
+            Flight flight = new Flight();
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing != null) {
+                existing.followers.incrementAndGet();
+                return follow(exchange, chain, existing, followerTimeout);
+            }
+            leaderCounter.increment();
+            return lead(exchange, chain, key, flight, maxBodyBytes);
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    /**
+     * 转发请求，响应写回的同时复制响应体，完成后共享给等待的请求
+     */
+    private Mono<Void> lead(ServerWebExchange exchange, GatewayFilterChain chain, String key, Flight flight,
+                            long maxBodyBytes) {
+        ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                HttpStatusCode status = getStatusCode();
+                HttpHeaders headers = ReplayableHeaders.copyOf(getHeaders());
+                if (getHeaders().getContentLength() > maxBodyBytes) {
+                    land(key, flight, null);
+                    return super.writeWith(body);
+                }
+                ByteArrayOutputStream copy = new ByteArrayOutputStream();
+                boolean[] overflow = new boolean[1];
+                Flux<DataBuffer> tee = Flux.from(body)
+                        .map(buffer -> {
+                            if (!overflow[0]) {
+                                if (copy.size() + buffer.readableByteCount() > maxBodyBytes) {
+                                    overflow[0] = true;
+                                    land(key, flight, null);
+                                } else {
+                                    byte[] bytes = new byte[buffer.readableByteCount()];
+                                    int position = buffer.readPosition();
+                                    buffer.read(bytes);
+                                    buffer.readPosition(position);
+                                    copy.writeBytes(bytes);
+                                }
+                            }
+                            return (DataBuffer) buffer;
+                        })
+                        .doOnComplete(() -> {
+                            if (!overflow[0]) {
+                                land(key, flight, new SharedResponse(status, headers, copy.toByteArray()));
+                            }
+                        });
+                return super.writeWith(tee);
+            }
+
+            @Override
+            public Mono<Void> setComplete() {
+                // 没有响应体的响应(如204)
+                land(key, flight, new SharedResponse(getStatusCode(), ReplayableHeaders.copyOf(getHeaders()),
+                        new byte[0]));
+                return super.setComplete();
+            }
+        };
+        // 失败或取消时还没有结果，等待的请求改为各自转发
+        return chain.filter(exchange.mutate().response(decorated).build())
+                .doFinally(signal -> land(key, flight, null));
+    }
+
+    private Mono<Void> follow(ServerWebExchange exchange, GatewayFilterChain chain, Flight flight,
+                              Duration timeout) {
+        // 超时后按不可共享处理，之后到达的结果不再使用
+        return flight.result.asMono().timeout(timeout, Mono.just(Optional.empty())).flatMap(shared -> {
+            if (shared.isEmpty() || shared.get().status() == null) {
+                fallbackCounter.increment();
+                return chain.filter(exchange);
+            }
+            coalescedCounter.increment();
+            return write(exchange, shared.get());
+        });
+    }
+
+    private static Mono<Void> write(ServerWebExchange exchange, SharedResponse shared) {
+        ServerHttpResponse response = exchange.getResponse();
+        ReplayableHeaders.applyTo(response.getHeaders(), shared.headers());
+        response.setStatusCode(shared.status());
+        if (shared.body().length == 0) {
+            response.getHeaders().setContentLength(0);
+            return response.setComplete();
+        }
+        response.getHeaders().setContentLength(shared.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(shared.body())));
+    }
+
+    /**
+     * 结束本次调用：先从表中移除，之后到达的请求发起新的调用，再通知等待的请求
+     * 只有第一次调用生效
+     * @param shared 为null表示结果不可共享
+     */
+    private void land(String key, Flight flight, SharedResponse shared) {
+        if (flights.remove(key, flight)) {
+            followersSummary.record(flight.followers.get());
+        }
+        flight.result.tryEmitValue(Optional.ofNullable(shared));
+    }
+
+    public static class Config {
+        // 可共享的响应体上限，为空时使用app.single-flight.max-body-size
+        private DataSize maxBodySize;
+        // 等待首个请求的最长时间，为空时使用app.single-flight.follower-timeout
+        private Duration followerTimeout;
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        public Duration getFollowerTimeout() {
+            return followerTimeout;
+        }
+
+        public void setFollowerTimeout(Duration followerTimeout) {
+            this.followerTimeout = followerTimeout;
+        }
+    }
+}
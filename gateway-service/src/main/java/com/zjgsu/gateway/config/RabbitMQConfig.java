@@ -0,0 +1,63 @@
+package com.zjgsu.gateway.config;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.ExchangeBuilder;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ配置类
+ * 网关只订阅todo/user事件用于响应缓存失效，交换机与各服务中的声明保持一致
+ */
+@Configuration
+public class RabbitMQConfig {
+
+    @Bean
+    public TopicExchange todoEventExchange() {
+        return ExchangeBuilder
+                .topicExchange("todo.event.exchange")
+                .durable(true)
+                .build();
+    }
+
+    @Bean
+    public TopicExchange userEventExchange() {
+        return ExchangeBuilder
+                .topicExchange("user.event.exchange")
+                .durable(true)
+                .build();
+    }
+
+    /**
+     * 响应缓存失效队列 - 每个网关实例独占的匿名队列，实例下线后自动删除
+     */
+    @Bean
+    public AnonymousQueue responseCacheInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * routing key: todo.#
+     */
+    @Bean
+    public Binding todoInvalidationBinding() {
+        return BindingBuilder
+                .bind(responseCacheInvalidationQueue())
+                .to(todoEventExchange())
+                .with("todo.#");
+    }
+
+    /**
+     * routing key: user.#
+     */
+    @Bean
+    public Binding userInvalidationBinding() {
+        return BindingBuilder
+                .bind(responseCacheInvalidationQueue())
+                .to(userEventExchange())
+                .with("user.#");
+    }
+}
@@ -13,8 +13,10 @@ import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
 
@@ -29,6 +31,10 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
     @Autowired
     private JwtUtil jwtUtil;
 
+    // 允许通过access_token参数携带Token的路径，浏览器EventSource无法设置请求头
+    private static final String STREAM_PATH = "/api/todos/stream";
+    private static final String ACCESS_TOKEN_PARAM = "access_token";
+
     // 白名单：不需要认证的路径
     private static final List<String> WHITE_LIST = Arrays.asList(
             "/api/auth/login",
@@ -47,6 +53,10 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
         // 2. 获取Token
         String token = exchange.getRequest().getHeaders().getFirst("Authorization");
+        if (token == null && path.equals(STREAM_PATH)) {
+            String accessToken = exchange.getRequest().getQueryParams().getFirst(ACCESS_TOKEN_PARAM);
+            token = accessToken != null ? "Bearer " + accessToken : null;
+        }
 
         if (token == null || !token.startsWith("Bearer ")) {
             log.warn("请求未携带Token或格式错误: {}", path);
@@ -59,7 +69,9 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
             Claims claims = jwtUtil.parseToken(jwt);
 
             // 4. 添加用户信息到请求头，传递给下游服务
+            // 查询参数中的Token不转发，避免出现在下游的访问日志中
             ServerHttpRequest request = exchange.getRequest().mutate()
+                    .uri(withoutAccessToken(exchange.getRequest().getURI()))
                     .header("X-User-Id", claims.getSubject())
                     .header("X-Username", claims.get("username", String.class))
                     .header("X-User-Role", claims.get("role", String.class))
@@ -76,6 +88,16 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
         }
     }
 
+    private static URI withoutAccessToken(URI uri) {
+        if (uri.getRawQuery() == null || !uri.getRawQuery().contains(ACCESS_TOKEN_PARAM)) {
+            return uri;
+        }
+        return UriComponentsBuilder.fromUri(uri)
+                .replaceQueryParam(ACCESS_TOKEN_PARAM)
+                .build(true)
+                .toUri();
+    }
+
     /**
      * 检查是否在白名单中
      */
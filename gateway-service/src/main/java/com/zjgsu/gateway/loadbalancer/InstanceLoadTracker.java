@@ -0,0 +1,109 @@
+package com.zjgsu.gateway.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按实例记录在途请求数和延迟
+ * 作为LoadBalancerLifecycle挂在lb://路由的转发上，选中实例时计入在途，调用结束时记录延迟
+ * 失败和5xx按不低于failure-penalty的延迟记录，避免快速失败的实例吸走流量
+ */
+@Component
+public class InstanceLoadTracker implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+
+    private final long decayNanos;
+    private final long failurePenaltyNanos;
+    private final Map<String, InstanceLoad> loads = new ConcurrentHashMap<>();
+    // 各服务最近一次用于清理的实例列表
+    private final Map<String, List<ServiceInstance>> lastSeen = new ConcurrentHashMap<>();
+
+    public InstanceLoadTracker(@Value("${app.loadbalancer.decay:PT10S}") Duration decay,
+                               @Value("${app.loadbalancer.failure-penalty:PT1S}") Duration failurePenalty) {
+        this.decayNanos = decay.toNanos();
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+    }
+
+    public InstanceLoad get(ServiceInstance instance) {
+        return loads.computeIfAbsent(key(instance), key -> new InstanceLoad(decayNanos, System.nanoTime()));
+    }
+
+    /**
+     * 删除服务实例列表中已不存在的实例记录，避免实例下线或换地址后记录一直累积
+     * 实例列表来自带缓存的supplier，列表对象未变化时不重复扫描；列表为空时保留记录
+     */
+    public void retain(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return;
+        }
+        String serviceId = instances.get(0).getServiceId();
+        if (lastSeen.put(serviceId, instances) == instances) {
+            return;
+        }
+        String prefix = serviceId + "@";
+        Set<String> live = new HashSet<>();
+        for (ServiceInstance instance : instances) {
+            live.add(key(instance));
+        }
+        loads.keySet().removeIf(key -> key.startsWith(prefix) && !live.contains(key));
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse.hasServer()) {
+            request.getContext().setRequestStartTime(System.nanoTime());
+            get(lbResponse.getServer()).start();
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (completionContext.status() == CompletionContext.Status.DISCARD
+                || lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long latency = now - completionContext.getLoadBalancerRequest().getContext().getRequestStartTime();
+        if (failed(completionContext)) {
+            latency = Math.max(latency, failurePenaltyNanos);
+        }
+        get(lbResponse.getServer()).complete(latency, now);
+    }
+
+    private static boolean failed(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> context) {
+        if (context.status() == CompletionContext.Status.FAILED) {
+            return true;
+        }
+        ResponseData response = context.getClientResponse();
+        return response != null && response.getHttpStatus() != null && response.getHttpStatus().is5xxServerError();
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getServiceId() + "@" + instance.getHost() + ":" + instance.getPort();
+    }
+}
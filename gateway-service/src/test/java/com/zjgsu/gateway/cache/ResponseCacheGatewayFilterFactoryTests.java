@@ -0,0 +1,72 @@
+package com.zjgsu.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 响应缓存过滤器测试
+ * 下游分两块写出未声明长度的响应体
+ */
+class ResponseCacheGatewayFilterFactoryTests {
+
+    private final ResponseCache responseCache = new ResponseCache(new SimpleMeterRegistry(),
+            DataSize.ofMegabytes(1), DataSize.ofKilobytes(1), Duration.ofMinutes(1));
+    private final GatewayFilter filter =
+            new ResponseCacheGatewayFilterFactory(responseCache).apply(new ResponseCacheGatewayFilterFactory.Config());
+    private final AtomicInteger forwarded = new AtomicInteger();
+
+    @Test
+    void cachesChunkedResponseWithinEntryLimit() {
+        String body = "x".repeat(100);
+        MockServerWebExchange first = exchange();
+        filter.filter(first, downstream(body)).block();
+        assertEquals(body + body, first.getResponse().getBodyAsString().block());
+
+        MockServerWebExchange second = exchange();
+        filter.filter(second, downstream(body)).block();
+
+        assertEquals(1, forwarded.get());
+        assertEquals("HIT", second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilterFactory.CACHE_HEADER));
+        assertEquals(body + body, second.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void streamsChunkedResponseOverEntryLimitWithoutCaching() {
+        String body = "x".repeat(800);
+        MockServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, downstream(body)).block();
+
+        assertEquals(body + body, exchange.getResponse().getBodyAsString().block());
+        assertEquals(0, responseCache.getEntryCount());
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/todos/1").header("X-User-Id", "7"));
+    }
+
+    private GatewayFilterChain downstream(String chunk) {
+        return exchange -> {
+            forwarded.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            return exchange.getResponse().writeWith(Flux.just(
+                    DefaultDataBufferFactory.sharedInstance.wrap(bytes),
+                    DefaultDataBufferFactory.sharedInstance.wrap(bytes)));
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.zjgsu.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 网关响应缓存测试
+ * 键为单个字符、无响应头、响应体100字节时每个条目计358字节
+ */
+class ResponseCacheTests {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long ENTRY_BYTES = 358;
+
+    private final ResponseCache cache = new ResponseCache(new SimpleMeterRegistry(),
+            DataSize.ofBytes(2 * ENTRY_BYTES), DataSize.ofBytes(ENTRY_BYTES), Duration.ofMinutes(1));
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverByteBudget() {
+        assertTrue(cache.put("a", response(100, 0, "/a"), 0));
+        assertTrue(cache.put("b", response(100, 0, "/b"), 0));
+        assertEquals(2 * ENTRY_BYTES, cache.getBytes());
+
+        // 访问a后b成为最久未使用的条目
+        assertTrue(cache.get("a", 1).isPresent());
+        assertTrue(cache.put("c", response(100, 1, "/c"), 1));
+
+        assertTrue(cache.get("a", 2).isPresent());
+        assertFalse(cache.get("b", 2).isPresent());
+        assertTrue(cache.get("c", 2).isPresent());
+        assertEquals(2 * ENTRY_BYTES, cache.getBytes());
+    }
+
+    @Test
+    void rejectsEntriesLargerThanEntryLimit() {
+        assertFalse(cache.put("a", response(101, 0, "/a"), 0));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void invalidatesEveryEntryWithTag() {
+        cache.put("a", response(100, 0, "/a", "user:7"), 0);
+        cache.put("b", response(100, 0, "/b", "user:7"), 0);
+
+        assertEquals(2, cache.invalidate("user:7", 1));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getBytes());
+        assertEquals(0, cache.invalidate("user:7", 2));
+    }
+
+    @Test
+    void dropsPutOfResponseReadBeforeInvalidation() {
+        cache.invalidate("/a", 5 * SECOND);
+
+        // 请求在失效之前开始，读到的可能是旧数据
+        assertFalse(cache.put("a", response(100, 6 * SECOND, "/a"), 4 * SECOND));
+        // 失效之后开始的请求正常写入
+        assertTrue(cache.put("a", response(100, 7 * SECOND, "/a"), 6 * SECOND));
+    }
+
+    @Test
+    void expiredEntryIsRemovedOnGet() {
+        cache.put("a", response(100, 0, "/a"), 0);
+
+        assertFalse(cache.get("a", 3 * SECOND).isPresent());
+        assertEquals(0, cache.getBytes());
+    }
+
+    private static ResponseCache.CachedResponse response(int bodySize, long storedAt, String... tags) {
+        return new ResponseCache.CachedResponse(200, HttpHeaders.EMPTY, new byte[bodySize], null,
+                storedAt, storedAt + 2 * SECOND, Set.of(tags));
+    }
+}
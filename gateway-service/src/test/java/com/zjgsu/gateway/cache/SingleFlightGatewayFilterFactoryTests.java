@@ -0,0 +1,106 @@
+package com.zjgsu.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 请求合并过滤器测试
+ * 下游第一次调用等待release后才写出响应，之后的调用立即写出
+ */
+class SingleFlightGatewayFilterFactoryTests {
+
+    private static final String BODY = "x".repeat(100);
+
+    private final SingleFlightGatewayFilterFactory factory = new SingleFlightGatewayFilterFactory(
+            new SimpleMeterRegistry(), DataSize.ofMegabytes(1), Duration.ofSeconds(5));
+    private final AtomicInteger forwarded = new AtomicInteger();
+    private final Sinks.Empty<Void> release = Sinks.empty();
+    private final GatewayFilterChain downstream = exchange -> {
+        Mono<Void> gate = forwarded.incrementAndGet() == 1 ? release.asMono() : Mono.empty();
+        return gate.then(Mono.defer(() -> {
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory()
+                    .wrap(BODY.getBytes(StandardCharsets.UTF_8))));
+        }));
+    };
+
+    @Test
+    void concurrentRequestsShareOneUpstreamCall() {
+        GatewayFilter filter = factory.apply(new SingleFlightGatewayFilterFactory.Config());
+        MockServerWebExchange leader = exchange();
+        MockServerWebExchange follower = exchange();
+
+        filter.filter(leader, downstream).subscribe();
+        Mono<Void> following = filter.filter(follower, downstream);
+        release.tryEmitEmpty();
+        following.block(Duration.ofSeconds(5));
+
+        assertEquals(1, forwarded.get());
+        assertEquals(BODY, leader.getResponse().getBodyAsString().block());
+        assertEquals(BODY, follower.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void followerForwardsItselfWhenBodyExceedsLimit() {
+        SingleFlightGatewayFilterFactory.Config config = new SingleFlightGatewayFilterFactory.Config();
+        config.setMaxBodySize(DataSize.ofBytes(10));
+        GatewayFilter filter = factory.apply(config);
+        MockServerWebExchange follower = exchange();
+
+        filter.filter(exchange(), downstream).subscribe();
+        Mono<Void> following = filter.filter(follower, downstream);
+        release.tryEmitEmpty();
+        following.block(Duration.ofSeconds(5));
+
+        assertEquals(2, forwarded.get());
+        assertEquals(BODY, follower.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void followerForwardsItselfWhenLeaderIsCancelled() {
+        GatewayFilter filter = factory.apply(new SingleFlightGatewayFilterFactory.Config());
+        MockServerWebExchange follower = exchange();
+
+        Disposable leading = filter.filter(exchange(), downstream).subscribe();
+        Mono<Void> following = filter.filter(follower, downstream);
+        leading.dispose();
+        following.block(Duration.ofSeconds(5));
+
+        assertEquals(2, forwarded.get());
+        assertEquals(BODY, follower.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void followerForwardsItselfAfterTimeout() {
+        SingleFlightGatewayFilterFactory.Config config = new SingleFlightGatewayFilterFactory.Config();
+        config.setFollowerTimeout(Duration.ofMillis(50));
+        GatewayFilter filter = factory.apply(config);
+        MockServerWebExchange follower = exchange();
+
+        Disposable leading = filter.filter(exchange(), downstream).subscribe();
+        filter.filter(follower, downstream).block(Duration.ofSeconds(5));
+
+        assertEquals(2, forwarded.get());
+        assertEquals(BODY, follower.getResponse().getBodyAsString().block());
+        leading.dispose();
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/users/7").header("X-User-Id", "7"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.zjgsu.gateway.filter;
+
+import com.zjgsu.gateway.util.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * JWT认证过滤器测试
+ */
+class JwtAuthenticationFilterTests {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private final JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtUtil, "secret", "0123456789abcdef".repeat(4));
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+    }
+
+    @Test
+    void streamTokenIsRemovedFromForwardedUri() {
+        String token = jwtUtil.generateToken("7", "alice", "USER");
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/api/todos/stream?access_token=" + token + "&lastEventId=e1"));
+
+        filter.filter(exchange, this::forward).block();
+
+        ServerWebExchange downstream = forwarded.get();
+        assertEquals("lastEventId=e1", downstream.getRequest().getURI().getRawQuery());
+        assertEquals("7", downstream.getRequest().getHeaders().getFirst("X-User-Id"));
+    }
+
+    @Test
+    void queryTokenIsOnlyAcceptedOnStreamPath() {
+        String token = jwtUtil.generateToken("7", "alice", "USER");
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/api/todos?access_token=" + token));
+
+        filter.filter(exchange, this::forward).block();
+
+        assertNull(forwarded.get());
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+    }
+
+    private Mono<Void> forward(ServerWebExchange exchange) {
+        forwarded.set(exchange);
+        return Mono.empty();
+    }
+}
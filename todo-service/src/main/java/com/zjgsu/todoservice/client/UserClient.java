@@ -1,5 +1,7 @@
 package com.zjgsu.todoservice.client;
 
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.dto.UserSummary;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -23,4 +25,22 @@ public interface UserClient {
      */
     @GetMapping("/api/users/{id}")
     Map<String, Object> getUser(@PathVariable("id") Long id);
+
+    /**
+     * 获取用户摘要
+     * 只包含ID和用户名，不传输密码哈希、邮箱等字段
+     * @param id 用户ID
+     * @return 用户不存在时code为404
+     */
+    @GetMapping("/api/users/{id}/summary")
+    ApiResponse<UserSummary> getUserSummary(@PathVariable("id") Long id);
+
+    /**
+     * 检查用户是否存在
+     * 只传输布尔值，用于写操作前的用户校验
+     * @param id 用户ID
+     * @return data为true表示用户存在
+     */
+    @GetMapping("/api/users/{id}/exists")
+    ApiResponse<Boolean> existsUser(@PathVariable("id") Long id);
 }
@@ -1,5 +1,7 @@
 package com.zjgsu.todoservice.client;
 
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.dto.UserSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -29,4 +31,20 @@ public class UserClientFallback implements UserClient {
 
         return fallbackUser;
     }
+
+    @Override
+    public ApiResponse<UserSummary> getUserSummary(Long id) {
+        logger.warn("User service unavailable, returning fallback for user summary: {}", id);
+
+        // 降级响应：调用方不应缓存默认用户名
+        return ApiResponse.error(503, "User service unavailable");
+    }
+
+    @Override
+    public ApiResponse<Boolean> existsUser(Long id) {
+        logger.warn("User service unavailable, returning fallback for user existence check: {}", id);
+
+        // 降级响应：无法确认用户是否存在
+        return ApiResponse.error(503, "User service unavailable");
+    }
 }
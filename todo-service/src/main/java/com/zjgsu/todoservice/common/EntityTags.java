@@ -0,0 +1,40 @@
+package com.zjgsu.todoservice.common;
+
+import com.zjgsu.todoservice.exception.PreconditionFailedException;
+
+/**
+ * ETag工具类
+ * 使用实体版本号作为强ETag，并解析If-Match请求头
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * 根据版本号生成ETag
+     */
+    public static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * 解析If-Match请求头
+     * @return 期望的版本号；未携带或为"*"时返回null，表示不做前置条件校验
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        // If-Match使用强比较，弱ETag永远不匹配
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("Invalid If-Match header: " + ifMatch);
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("Invalid If-Match header: " + ifMatch);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.zjgsu.todoservice.concurrency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.todoservice.common.ApiResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Todo接口的自适应并发限制
+ * 读(GET/HEAD)和写请求分别限制，超过当前限制的请求立即返回503，而不是在Tomcat线程上排队直到调用方超时
+ * SSE推送连接是长连接，不计入限制
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/api/todos";
+    private static final String STREAM_PATH = "/api/todos/stream";
+
+    private final ConcurrencyLimiter readLimiter;
+    private final ConcurrencyLimiter writeLimiter;
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+
+    private final Counter readRejected;
+    private final Counter writeRejected;
+
+    public ConcurrencyLimitFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${app.concurrency-limit.enabled:true}") boolean enabled,
+                                  @Value("${app.concurrency-limit.read.initial:100}") int readInitial,
+                                  @Value("${app.concurrency-limit.read.min:10}") int readMin,
+                                  @Value("${app.concurrency-limit.read.max:400}") int readMax,
+                                  @Value("${app.concurrency-limit.write.initial:40}") int writeInitial,
+                                  @Value("${app.concurrency-limit.write.min:5}") int writeMin,
+                                  @Value("${app.concurrency-limit.write.max:200}") int writeMax,
+                                  @Value("${app.concurrency-limit.smoothing:0.2}") double smoothing,
+                                  @Value("${app.concurrency-limit.tolerance:1.5}") double tolerance,
+                                  @Value("${app.concurrency-limit.min-window:PT0.1S}") Duration minWindow,
+                                  @Value("${app.concurrency-limit.min-window-samples:10}") int minWindowSamples) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.readLimiter = new ConcurrencyLimiter(new GradientLimit(readInitial, readMin, readMax,
+                smoothing, tolerance, minWindow.toNanos(), minWindowSamples));
+        this.writeLimiter = new ConcurrencyLimiter(new GradientLimit(writeInitial, writeMin, writeMax,
+                smoothing, tolerance, minWindow.toNanos(), minWindowSamples));
+
+        this.readRejected = register(meterRegistry, "read", readLimiter);
+        this.writeRejected = register(meterRegistry, "write", writeLimiter);
+    }
+
+    private static Counter register(MeterRegistry meterRegistry, String type, ConcurrencyLimiter limiter) {
+        Gauge.builder("http.concurrency.limit", limiter, ConcurrencyLimiter::getLimit)
+                .tag("type", type).register(meterRegistry);
+        Gauge.builder("http.concurrency.inflight", limiter, ConcurrencyLimiter::getInflight)
+                .tag("type", type).register(meterRegistry);
+        return Counter.builder("http.concurrency.rejected").tag("type", type).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || !path.startsWith(PATH_PREFIX) || path.startsWith(STREAM_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        ConcurrencyLimiter limiter = read ? readLimiter : writeLimiter;
+        int inflight = limiter.tryAcquire();
+        if (inflight < 0) {
+            (read ? readRejected : writeRejected).increment();
+            reject(response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limiter.release(start, inflight);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                ApiResponse.error(503, "Service is overloaded, please retry later"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.zjgsu.todoservice.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并发限制器
+ * 并发数达到当前限制时立即拒绝，放行的请求结束后把延迟反馈给GradientLimit
+ */
+public class ConcurrencyLimiter {
+
+    private final GradientLimit limit;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    public ConcurrencyLimiter(GradientLimit limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * 尝试占用一个并发名额
+     * @return 请求开始时的并发数，-1表示超过限制被拒绝
+     */
+    public int tryAcquire() {
+        int current = inflight.incrementAndGet();
+        if (current > limit.getLimit()) {
+            inflight.decrementAndGet();
+            return -1;
+        }
+        return current;
+    }
+
+    /**
+     * 释放名额并记录延迟
+     */
+    public void release(long startNanos, int inflightAtStart) {
+        inflight.decrementAndGet();
+        long now = System.nanoTime();
+        limit.onSample(now, now - startNanos, inflightAtStart);
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+}
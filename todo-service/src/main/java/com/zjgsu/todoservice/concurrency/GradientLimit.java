@@ -0,0 +1,98 @@
+package com.zjgsu.todoservice.concurrency;
+
+/**
+ * 基于延迟梯度的自适应并发限制
+ * 按窗口聚合请求延迟，短期平均延迟与长期基线之比作为梯度：延迟上升时按梯度缩小限制，
+ * 延迟平稳时每个窗口增加sqrt(limit)作为排队余量，逐步探测更高的并发
+ * 非线程安全的计算都在synchronized方法内完成，调用频率为每个请求一次
+ */
+public class GradientLimit {
+
+    // 长期基线的EWMA系数，约等于最近600个窗口的平均
+    private static final double LONG_RTT_ALPHA = 2.0 / 601;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final long minWindowNanos;
+    private final int minWindowSamples;
+
+    private volatile double limit;
+    private double longRtt;
+
+    private long windowStart = -1;
+    private long windowRttSum;
+    private int windowCount;
+    private int windowMaxInflight;
+
+    /**
+     * @param initialLimit     初始限制
+     * @param minLimit         限制下限
+     * @param maxLimit         限制上限
+     * @param smoothing        每次调整向新值靠近的比例
+     * @param tolerance        允许的延迟上升倍数，短期延迟在基线的该倍数以内时不缩小限制
+     * @param minWindowNanos   窗口的最短时长
+     * @param minWindowSamples 窗口的最少样本数
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance,
+                         long minWindowNanos, int minWindowSamples) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limit bounds");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.minWindowNanos = minWindowNanos;
+        this.minWindowSamples = minWindowSamples;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 记录一个请求的延迟
+     * @param endNanos 请求结束时间
+     * @param rttNanos 请求耗时
+     * @param inflight 请求开始时的并发数
+     */
+    public synchronized void onSample(long endNanos, long rttNanos, int inflight) {
+        if (windowStart < 0) {
+            windowStart = endNanos;
+        }
+        windowRttSum += rttNanos;
+        windowCount++;
+        windowMaxInflight = Math.max(windowMaxInflight, inflight);
+        if (windowCount < minWindowSamples || endNanos - windowStart < minWindowNanos) {
+            return;
+        }
+        update((double) windowRttSum / windowCount, windowMaxInflight);
+        windowStart = endNanos;
+        windowRttSum = 0;
+        windowCount = 0;
+        windowMaxInflight = 0;
+    }
+
+    private void update(double shortRtt, int inflight) {
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += (shortRtt - longRtt) * LONG_RTT_ALPHA;
+        }
+        // 负载下降后基线明显高于当前延迟，让基线更快回落，避免梯度长期偏大
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // 并发远未用满时延迟不反映限制是否合适，不调整
+        if (inflight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        double next = limit * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,75 @@
+package com.zjgsu.todoservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zjgsu.todoservice.datasource.ReadWriteRoutingDataSource;
+import com.zjgsu.todoservice.datasource.ReadYourWritesTracker;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * 读写分离数据源配置
+ * 配置了app.datasource.replica.url且未启用分片时生效(分片模式下由ShardingConfig按分片配置副本)：
+ * - @Transactional(readOnly = true)的查询路由到副本库
+ * - 写事务以及复制延迟窗口内同一用户的读请求路由到主库
+ */
+@Configuration
+@ConditionalOnExpression("'${app.datasource.replica.url:}' != '' and !${app.sharding.enabled:false}")
+public class DataSourceRoutingConfig {
+
+    /**
+     * 主库连接池，沿用spring.datasource配置
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * 副本库连接池
+     */
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            DataSourceProperties properties,
+            @Value("${app.datasource.replica.url}") String url,
+            @Value("${app.datasource.replica.username:${spring.datasource.username}}") String username,
+            @Value("${app.datasource.replica.password:${spring.datasource.password}}") String password) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+            @Value("${app.datasource.replica.read-your-writes-window-ms:2000}") long windowMillis) {
+        return new ReadYourWritesTracker(windowMillis);
+    }
+
+    /**
+     * 对外暴露的主数据源
+     * LazyConnectionDataSourceProxy推迟到第一条SQL才获取物理连接，此时事务只读标记已设置
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource, readYourWritesTracker));
+    }
+}
@@ -0,0 +1,13 @@
+package com.zjgsu.todoservice.config;
+
+import com.zjgsu.todoservice.loadbalancer.PeakEwmaLoadBalancerConfiguration;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 所有服务调用(UserClient等Feign客户端)默认使用PeakEwmaLoadBalancer
+ */
+@Configuration
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+}
@@ -1,9 +1,18 @@
 package com.zjgsu.todoservice.config;
 
+import com.zjgsu.todoservice.messaging.Jackson2CborMessageConverter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -13,6 +22,7 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 public class RabbitMQConfig {
+    private static final Logger logger = LoggerFactory.getLogger(RabbitMQConfig.class);
 
     // ========== 交换机定义 ==========
 
@@ -28,6 +38,29 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * Headers交换机 - 按eventType/userId消息头路由
+     * 通过交换机到交换机绑定接收topic交换机上的全部todo事件，消费者按消息头选择性绑定
+     */
+    @Bean
+    public HeadersExchange todoEventHeadersExchange() {
+        return ExchangeBuilder
+                .headersExchange("todo.event.headers")
+                .durable(true)
+                .build();
+    }
+
+    /**
+     * Topic交换机 - 接收user-service发布的用户事件
+     */
+    @Bean
+    public TopicExchange userEventExchange() {
+        return ExchangeBuilder
+                .topicExchange("user.event.exchange")
+                .durable(true)
+                .build();
+    }
+
     /**
      * Direct交换机 - 用于通知路由
      */
@@ -107,6 +140,51 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * 读模型队列 - 每个实例独占的匿名队列，实例下线后自动删除
+     */
+    @Bean
+    public AnonymousQueue todoReadModelQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * 用户删除队列 - 所有实例共享，每个用户删除事件只由一个实例执行清理
+     * 清理失败的消息进入dlx.todo.queue，死信重放按x-death中的队列名投递回本队列
+     */
+    @Bean
+    public Queue userDeletedQueue() {
+        return QueueBuilder
+                .durable("todo.user-deleted.queue")
+                .deadLetterExchange("dlx.exchange")
+                .deadLetterRoutingKey("dlx.todo.key")
+                .build();
+    }
+
+    /**
+     * 用户缓存失效队列 - 每个实例独占的匿名队列，用户删除后清除本地读模型中的数据
+     */
+    @Bean
+    public AnonymousQueue userEvictionQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * 提醒调度队列 - 每个实例独占的匿名队列，跟踪截止时间的变化
+     */
+    @Bean
+    public AnonymousQueue todoReminderQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * 事件推送队列 - 每个实例独占的匿名队列，供SSE连接分发
+     */
+    @Bean
+    public AnonymousQueue todoStreamQueue() {
+        return new AnonymousQueue();
+    }
+
     // ========== 绑定关系 ==========
 
     /**
@@ -133,6 +211,77 @@ public class RabbitMQConfig {
                 .with("todo.updated");
     }
 
+    /**
+     * 将headers交换机绑定到topic交换机，转发全部todo事件
+     */
+    @Bean
+    public Binding todoEventHeadersBinding() {
+        return BindingBuilder
+                .bind(todoEventHeadersExchange())
+                .to(todoEventExchange())
+                .with("todo.#");
+    }
+
+    /**
+     * 绑定读模型队列到topic交换机，接收全部todo事件
+     * routing key: todo.#
+     */
+    @Bean
+    public Binding todoReadModelBinding() {
+        return BindingBuilder
+                .bind(todoReadModelQueue())
+                .to(todoEventExchange())
+                .with("todo.#");
+    }
+
+    /**
+     * 绑定用户删除队列到用户事件交换机
+     * routing key: user.deleted
+     */
+    @Bean
+    public Binding userDeletedBinding() {
+        return BindingBuilder
+                .bind(userDeletedQueue())
+                .to(userEventExchange())
+                .with("user.deleted");
+    }
+
+    /**
+     * 绑定用户缓存失效队列到用户事件交换机
+     * routing key: user.deleted
+     */
+    @Bean
+    public Binding userEvictionBinding() {
+        return BindingBuilder
+                .bind(userEvictionQueue())
+                .to(userEventExchange())
+                .with("user.deleted");
+    }
+
+    /**
+     * 绑定提醒调度队列到topic交换机，接收全部todo事件
+     * routing key: todo.#
+     */
+    @Bean
+    public Binding todoReminderBinding() {
+        return BindingBuilder
+                .bind(todoReminderQueue())
+                .to(todoEventExchange())
+                .with("todo.#");
+    }
+
+    /**
+     * 绑定事件推送队列到topic交换机，接收全部todo事件
+     * routing key: todo.#
+     */
+    @Bean
+    public Binding todoStreamBinding() {
+        return BindingBuilder
+                .bind(todoStreamQueue())
+                .to(todoEventExchange())
+                .with("todo.#");
+    }
+
     /**
      * 绑定通知队列到direct交换机
      */
@@ -155,39 +304,66 @@ public class RabbitMQConfig {
                 .with("dlx.todo.key");
     }
 
+    // ========== 监听容器配置 ==========
+
+    /**
+     * 用户清理监听容器
+     * 清理在消费线程上分批执行，耗时与用户数据量成正比；每个消费者只预取1条消息，
+     * 未开始的删除事件留在队列中由其他空闲的消费者或实例领取，实例下线时只有正在清理的消息重新投递
+     * 其余配置(手动确认、重试)沿用spring.rabbitmq.listener.simple
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory userCleanupContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            @Value("${app.user-cleanup.concurrency:2}") int concurrency) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setPrefetchCount(1);
+        factory.setConcurrentConsumers(concurrency);
+        return factory;
+    }
+
     // ========== RabbitTemplate配置 ==========
 
     /**
-     * 配置RabbitTemplate使用JSON消息转换器
+     * 配置RabbitTemplate使用消息转换器
      */
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter messageConverter,
+                                         MeterRegistry meterRegistry) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
-        rabbitTemplate.setMessageConverter(jackson2JsonMessageConverter());
-
-        // 配置确认回调
-        rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
-            if (ack) {
-                System.out.println("消息发送到交换机成功");
-            } else {
-                System.err.println("消息发送到交换机失败: " + cause);
-            }
-        });
+        rabbitTemplate.setMessageConverter(messageConverter);
+        // 无法路由到任何队列的消息退回给发送方，否则退回回调不会触发
+        rabbitTemplate.setMandatory(true);
+
+        // 发送确认通过每条消息的CorrelationData处理，见BatchingEventPublisher
 
         // 配置退回回调
         rabbitTemplate.setReturnsCallback(returned -> {
-            System.err.println("消息未路由到队列: " +
-                returned.getMessage() + ", routing key: " + returned.getRoutingKey());
+            meterRegistry.counter("todo.events.unroutable", "routingKey", returned.getRoutingKey()).increment();
+            logger.warn("Event not routed to any queue, routing key: {}", returned.getRoutingKey());
         });
 
         return rabbitTemplate;
     }
 
     /**
-     * JSON消息转换器
+     * 消息转换器
+     * 接收时按消息的content-type选择JSON或CBOR解码，发送时使用app.messaging.wire-format指定的格式
+     * 先升级所有消费者，再把发送格式切换为cbor
      */
     @Bean
-    public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${app.messaging.wire-format:json}") String wireFormat) {
+        Jackson2JsonMessageConverter jsonConverter = new Jackson2JsonMessageConverter();
+        Jackson2CborMessageConverter cborConverter = new Jackson2CborMessageConverter();
+        MessageConverter sendConverter = switch (wireFormat) {
+            case "json" -> jsonConverter;
+            case "cbor" -> cborConverter;
+            default -> throw new IllegalArgumentException("Unsupported app.messaging.wire-format: " + wireFormat);
+        };
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(sendConverter);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, jsonConverter);
+        converter.addDelegate(Jackson2CborMessageConverter.CONTENT_TYPE, cborConverter);
+        return converter;
     }
 }
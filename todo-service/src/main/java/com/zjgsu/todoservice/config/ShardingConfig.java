@@ -0,0 +1,110 @@
+package com.zjgsu.todoservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zjgsu.todoservice.datasource.ReadWriteRoutingDataSource;
+import com.zjgsu.todoservice.datasource.ReadYourWritesTracker;
+import com.zjgsu.todoservice.sharding.ShardRouter;
+import com.zjgsu.todoservice.sharding.ShardRoutingDataSource;
+import com.zjgsu.todoservice.sharding.ShardingProperties;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 水平分片配置
+ * app.sharding.enabled=true时按user_id将todos分布到多个数据库，
+ * 分片配置了replica-url时在分片内部继续做读写分离
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ShardRouter shardRouter(ShardingProperties properties, DataSourceProperties dataSourceProperties,
+                                   @Value("${app.datasource.replica.read-your-writes-window-ms:2000}") long windowMillis) {
+        if (!properties.isEnabled()) {
+            return ShardRouter.disabled();
+        }
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("app.sharding.shards must not be empty when sharding is enabled");
+        }
+
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        List<AutoCloseable> pools = new ArrayList<>();
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(windowMillis);
+        properties.getShards().forEach((name, shard) -> {
+            HikariDataSource primary = createPool(name, shard.getUrl(), shard, dataSourceProperties);
+            pools.add(primary);
+            if (shard.getReplicaUrl() != null && !shard.getReplicaUrl().isBlank()) {
+                HikariDataSource replica = createPool(name + "-replica", shard.getReplicaUrl(), shard, dataSourceProperties);
+                pools.add(replica);
+                dataSources.put(name, new ReadWriteRoutingDataSource(primary, replica, tracker));
+            } else {
+                dataSources.put(name, primary);
+            }
+        });
+
+        List<String> active = properties.getActive().isEmpty()
+                ? new ArrayList<>(dataSources.keySet())
+                : properties.getActive();
+        for (String shard : active) {
+            if (!dataSources.containsKey(shard)) {
+                throw new IllegalStateException("Unknown active shard: " + shard);
+            }
+        }
+        String defaultShard = properties.getDefaultShard() != null ? properties.getDefaultShard() : active.get(0);
+        return new ShardRouter(dataSources, active, defaultShard, properties.getVirtualNodes(), pools);
+    }
+
+    /**
+     * 对外暴露的主数据源，按ShardContext路由到分片
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+    public DataSource dataSource(ShardRouter shardRouter) {
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shardRouter));
+    }
+
+    /**
+     * 分片模式下对每个分片执行相同的Flyway迁移，默认只会迁移默认分片
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+    public FlywayMigrationStrategy shardedFlywayMigrationStrategy(ShardRouter shardRouter) {
+        return flyway -> shardRouter.getDataSources().forEach((shard, dataSource) ->
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(dataSource)
+                        .load()
+                        .migrate());
+    }
+
+    private HikariDataSource createPool(String name, String url, ShardingProperties.Shard shard,
+                                        DataSourceProperties defaults) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("shard-" + name);
+        dataSource.setDriverClassName(defaults.determineDriverClassName());
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(shard.getUsername() != null ? shard.getUsername() : defaults.determineUsername());
+        dataSource.setPassword(shard.getPassword() != null ? shard.getPassword() : defaults.determinePassword());
+        dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+        if (shard.getConnectionInitSql() != null) {
+            dataSource.setConnectionInitSql(shard.getConnectionInitSql());
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,63 @@
+package com.zjgsu.todoservice.controller;
+
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.messaging.DeadLetterService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 死信队列管理Controller
+ * 查看dlx.todo.queue中的消息，按条件批量重放到消息原来所在的队列
+ */
+@RestController
+@RequestMapping("/api/admin/dead-letters")
+public class DeadLetterController {
+
+    private final DeadLetterService deadLetterService;
+
+    public DeadLetterController(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    /**
+     * 分页查看死信消息
+     * GET /api/admin/dead-letters?offset=0&limit=50
+     */
+    @GetMapping
+    public ApiResponse<DeadLetterService.Page> browse(
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ApiResponse.success(deadLetterService.browse(offset, limit));
+    }
+
+    /**
+     * 按x-death原因和来源队列分组统计
+     * GET /api/admin/dead-letters/summary
+     */
+    @GetMapping("/summary")
+    public ApiResponse<DeadLetterService.Summary> summarize() {
+        return ApiResponse.success(deadLetterService.summarize());
+    }
+
+    /**
+     * 获取死信积压和重放进度
+     * GET /api/admin/dead-letters/status
+     */
+    @GetMapping("/status")
+    public ApiResponse<DeadLetterService.Status> getStatus() {
+        return ApiResponse.success(deadLetterService.getStatus());
+    }
+
+    /**
+     * 按速率重放匹配条件的死信消息
+     * POST /api/admin/dead-letters/replay
+     * 请求体: {"reason": "expired", "queue": "todo.created.queue", "limit": 1000, "ratePerSecond": 200}
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<ApiResponse<DeadLetterService.Status>> replay(
+            @RequestBody DeadLetterService.ReplayRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(deadLetterService.replay(request)));
+    }
+}
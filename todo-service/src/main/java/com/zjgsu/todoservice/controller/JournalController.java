@@ -0,0 +1,61 @@
+package com.zjgsu.todoservice.controller;
+
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.journal.JournalService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+
+/**
+ * 事件日志Controller
+ * 读取本地事件日志，按时间范围重放事件
+ */
+@RestController
+@RequestMapping("/api/admin/journal")
+public class JournalController {
+
+    private final JournalService journalService;
+
+    public JournalController(JournalService journalService) {
+        this.journalService = journalService;
+    }
+
+    /**
+     * 从指定位置读取事件
+     * GET /api/admin/journal/events?from=0&limit=100
+     * 返回的nextOffset作为下一次请求的from，可持续跟随新写入的事件
+     */
+    @GetMapping("/events")
+    public ApiResponse<JournalService.Page> readEvents(
+            @RequestParam(defaultValue = "0") long from,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (limit <= 0 || limit > 1000) {
+            throw new IllegalArgumentException("limit must be between 1 and 1000");
+        }
+        return ApiResponse.success(journalService.read(from, limit));
+    }
+
+    /**
+     * 获取日志和重放状态
+     * GET /api/admin/journal/status
+     */
+    @GetMapping("/status")
+    public ApiResponse<JournalService.Status> getStatus() {
+        return ApiResponse.success(journalService.getStatus());
+    }
+
+    /**
+     * 重新发布时间范围内的事件到todo.event.exchange
+     * POST /api/admin/journal/replay?from=2024-01-01T00:00:00Z&to=2024-01-02T00:00:00Z
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<ApiResponse<JournalService.Status>> replay(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(journalService.replay(from, to)));
+    }
+}
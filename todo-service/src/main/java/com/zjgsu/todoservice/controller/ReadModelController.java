@@ -0,0 +1,55 @@
+package com.zjgsu.todoservice.controller;
+
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.dto.UserTodoList;
+import com.zjgsu.todoservice.readmodel.TodoReadModelProjector;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Todo读模型Controller
+ * 查询按用户组织的Todo列表，查看读模型状态和触发重建
+ */
+@RestController
+@RequestMapping("/api/admin/read-model")
+public class ReadModelController {
+
+    private final TodoReadModelProjector projector;
+
+    public ReadModelController(TodoReadModelProjector projector) {
+        this.projector = projector;
+    }
+
+    /**
+     * 获取用户的Todo列表（包含用户名）
+     * GET /api/admin/read-model/users/{userId}
+     */
+    @GetMapping("/users/{userId}")
+    public ApiResponse<UserTodoList> getUserTodos(@PathVariable Long userId) {
+        return ApiResponse.success(projector.getUserTodos(userId));
+    }
+
+    /**
+     * 获取读模型状态
+     * GET /api/admin/read-model/status
+     */
+    @GetMapping("/status")
+    public ApiResponse<TodoReadModelProjector.Status> getStatus() {
+        return ApiResponse.success(projector.getStatus());
+    }
+
+    /**
+     * 从数据库全量重建读模型
+     * POST /api/admin/read-model/rebuild
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<ApiResponse<TodoReadModelProjector.Status>> rebuild() {
+        if (!projector.rebuild()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(409, "Read model rebuild already in progress"));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(projector.getStatus()));
+    }
+}
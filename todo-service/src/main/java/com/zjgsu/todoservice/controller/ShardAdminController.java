@@ -0,0 +1,47 @@
+package com.zjgsu.todoservice.controller;
+
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.sharding.ReshardingService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 分片管理Controller
+ * 查看分片状态，在线调整参与哈希环的分片
+ */
+@RestController
+@RequestMapping("/api/admin/shards")
+public class ShardAdminController {
+
+    private final ReshardingService reshardingService;
+
+    public ShardAdminController(ReshardingService reshardingService) {
+        this.reshardingService = reshardingService;
+    }
+
+    /**
+     * 获取分片及重新分片进度
+     * GET /api/admin/shards
+     */
+    @GetMapping
+    public ApiResponse<ReshardingService.Status> getStatus() {
+        return ApiResponse.success(reshardingService.getStatus());
+    }
+
+    /**
+     * 以新的分片列表重新分片，数据在后台迁移
+     * POST /api/admin/shards/rebalance
+     * 请求体: {"shards": ["shard0", "shard1", "shard2"]}
+     */
+    @PostMapping("/rebalance")
+    public ResponseEntity<ApiResponse<ReshardingService.Status>> rebalance(@RequestBody RebalanceRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(reshardingService.rebalance(request.shards())));
+    }
+
+    public record RebalanceRequest(List<String> shards) {
+    }
+}
@@ -1,13 +1,20 @@
 package com.zjgsu.todoservice.controller;
 
 import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.common.EntityTags;
+import com.zjgsu.todoservice.dto.TodoChanges;
+import com.zjgsu.todoservice.dto.TodoDetail;
+import com.zjgsu.todoservice.dto.TodoSummary;
 import com.zjgsu.todoservice.model.Todo;
+import com.zjgsu.todoservice.service.IdempotencyService;
 import com.zjgsu.todoservice.service.TodoService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Todo管理Controller
@@ -17,28 +24,70 @@ import java.util.List;
 @RequestMapping("/api/todos")
 public class TodoController {
 
+    // 摘要视图包含的字段
+    private static final Set<String> SUMMARY_FIELDS = Set.of("id", "title", "completed", "userId", "updatedAt", "version");
+    // 需要扩展为详情视图的字段
+    private static final Set<String> DETAIL_FIELDS = Set.of("description", "createdAt");
+
     private final TodoService todoService;
+    private final IdempotencyService idempotencyService;
 
-    public TodoController(TodoService todoService) {
+    public TodoController(TodoService todoService, IdempotencyService idempotencyService) {
         this.todoService = todoService;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
      * 获取所有Todo
-     * GET /api/todos
+     * GET /api/todos?userId=&completed=&fields=&includeArchived=
+     * 默认返回摘要视图，fields包含description/createdAt时返回详情视图
+     * 已归档的Todo只在指定userId且includeArchived=true时返回
      */
     @GetMapping
-    public ResponseEntity<ApiResponse<List<Todo>>> getAllTodos(
-            @RequestParam(required = false) Long userId) {
-        List<Todo> todos;
-        if (userId != null) {
-            todos = todoService.findByUserId(userId);
+    public ResponseEntity<ApiResponse<List<?>>> getAllTodos(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Boolean completed,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        Class<?> view = resolveListView(fields);
+        List<?> todos;
+        if (includeArchived) {
+            if (userId == null || completed != null) {
+                throw new IllegalArgumentException("includeArchived requires userId and cannot be combined with completed");
+            }
+            todos = todoService.findByUserIdIncludingArchived(userId, view);
+        } else if (userId != null && completed != null) {
+            todos = todoService.findByUserIdAndCompleted(userId, completed, view);
+        } else if (userId != null) {
+            todos = todoService.findByUserId(userId, view);
+        } else if (completed != null) {
+            todos = todoService.findByCompleted(completed, view);
         } else {
-            todos = todoService.findAll();
+            todos = todoService.findAll(view);
         }
         return ResponseEntity.ok(ApiResponse.success(todos));
     }
 
+    /**
+     * 增量同步
+     * GET /api/todos/changes?userId=1&since=0&limit=500
+     * since为上一次返回的next，首次同步传0；hasMore为true时继续用next请求
+     * 离线超过墓碑保留期限时返回410，客户端需丢弃本地数据并从0重新同步
+     */
+    @GetMapping("/changes")
+    public ApiResponse<TodoChanges> getChanges(
+            @RequestParam Long userId,
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "500") int limit) {
+        if (since < 0) {
+            throw new IllegalArgumentException("since must not be negative");
+        }
+        if (limit <= 0 || limit > 1000) {
+            throw new IllegalArgumentException("limit must be between 1 and 1000");
+        }
+        return ApiResponse.success(todoService.findChanges(userId, since, limit));
+    }
+
     /**
      * 根据ID获取Todo
      * GET /api/todos/{id}
@@ -46,7 +95,9 @@ public class TodoController {
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<Todo>> getTodoById(@PathVariable Long id) {
         return todoService.findById(id)
-                .map(todo -> ResponseEntity.ok(ApiResponse.success(todo)))
+                .map(todo -> ResponseEntity.ok()
+                        .eTag(EntityTags.of(todo.getVersion()))
+                        .body(ApiResponse.success(todo)))
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.notFound("Todo not found with id: " + id)));
     }
@@ -54,24 +105,35 @@ public class TodoController {
     /**
      * 创建Todo
      * POST /api/todos
+     * 带Idempotency-Key请求头时，同一key的重复请求重放首次的响应，不会重复创建
      */
     @PostMapping
-    public ResponseEntity<ApiResponse<Todo>> createTodo(@RequestBody Todo todo) {
-        Todo created = todoService.createTodo(todo);
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ApiResponse.created(created));
+    public ResponseEntity<ApiResponse<Todo>> createTodo(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody Todo todo) {
+        List<Object> request = Arrays.asList(todo.getTitle(), todo.getDescription(), todo.getCompleted(),
+                todo.getUserId(), todo.getDueAt());
+        return idempotencyService.execute("createTodo", todo.getUserId(), idempotencyKey, request, Todo.class, () -> {
+            Todo created = todoService.createTodo(todo);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ApiResponse.created(created));
+        });
     }
 
     /**
      * 更新Todo
      * PUT /api/todos/{id}
+     * 支持If-Match请求头进行乐观并发控制
      */
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<Todo>> updateTodo(
             @PathVariable Long id,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody Todo todo) {
-        Todo updated = todoService.updateTodo(id, todo);
-        return ResponseEntity.ok(ApiResponse.success(updated));
+        Todo updated = todoService.updateTodo(id, todo, EntityTags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(EntityTags.of(updated.getVersion()))
+                .body(ApiResponse.success(updated));
     }
 
     /**
@@ -79,8 +141,10 @@ public class TodoController {
      * DELETE /api/todos/{id}
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<ApiResponse<Void>> deleteTodo(@PathVariable Long id) {
-        todoService.deleteTodo(id);
+    public ResponseEntity<ApiResponse<Void>> deleteTodo(
+            @PathVariable Long id,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        todoService.deleteTodo(id, EntityTags.parseIfMatch(ifMatch));
         return ResponseEntity.ok(ApiResponse.success("Todo deleted successfully"));
     }
 
@@ -89,8 +153,33 @@ public class TodoController {
      * PATCH /api/todos/{id}/toggle
      */
     @PatchMapping("/{id}/toggle")
-    public ResponseEntity<ApiResponse<Todo>> toggleComplete(@PathVariable Long id) {
-        Todo updated = todoService.toggleComplete(id);
-        return ResponseEntity.ok(ApiResponse.success(updated));
+    public ResponseEntity<ApiResponse<Todo>> toggleComplete(
+            @PathVariable Long id,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        Todo updated = todoService.toggleComplete(id, EntityTags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(EntityTags.of(updated.getVersion()))
+                .body(ApiResponse.success(updated));
+    }
+
+    /**
+     * 根据fields参数选择列表投影
+     */
+    private Class<?> resolveListView(String fields) {
+        Class<?> view = TodoSummary.class;
+        if (fields == null || fields.isBlank()) {
+            return view;
+        }
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty() || SUMMARY_FIELDS.contains(name)) {
+                continue;
+            }
+            if (!DETAIL_FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unsupported field: " + name);
+            }
+            view = TodoDetail.class;
+        }
+        return view;
     }
 }
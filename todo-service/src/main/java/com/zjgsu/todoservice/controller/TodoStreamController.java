@@ -0,0 +1,38 @@
+package com.zjgsu.todoservice.controller;
+
+import com.zjgsu.todoservice.stream.TodoEventStream;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Todo事件推送Controller
+ * 客户端通过SSE接收自己的todo变更，替代轮询 GET /api/todos?userId=
+ */
+@RestController
+@RequestMapping("/api/todos/stream")
+public class TodoStreamController {
+
+    private final TodoEventStream todoEventStream;
+
+    public TodoStreamController(TodoEventStream todoEventStream) {
+        this.todoEventStream = todoEventStream;
+    }
+
+    /**
+     * 订阅当前用户的todo事件
+     * GET /api/todos/stream
+     * 用户取自网关设置的X-User-Id；重连时浏览器自动携带Last-Event-ID，
+     * 无法设置请求头的客户端可改用lastEventId参数
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("X-User-Id header is required");
+        }
+        return todoEventStream.subscribe(userId, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+}
@@ -0,0 +1,42 @@
+package com.zjgsu.todoservice.controller;
+
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.exception.ResourceNotFoundException;
+import com.zjgsu.todoservice.service.UserCleanupService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 用户数据清理Controller
+ * 查看user.deleted事件触发的清理任务进度
+ */
+@RestController
+@RequestMapping("/api/admin/user-cleanups")
+public class UserCleanupController {
+
+    private final UserCleanupService userCleanupService;
+
+    public UserCleanupController(UserCleanupService userCleanupService) {
+        this.userCleanupService = userCleanupService;
+    }
+
+    /**
+     * 获取最近的清理任务
+     * GET /api/admin/user-cleanups
+     */
+    @GetMapping
+    public ApiResponse<List<UserCleanupService.Status>> getJobs() {
+        return ApiResponse.success(userCleanupService.getJobs());
+    }
+
+    /**
+     * 获取指定用户的清理进度
+     * GET /api/admin/user-cleanups/{userId}
+     */
+    @GetMapping("/{userId}")
+    public ApiResponse<UserCleanupService.Status> getJob(@PathVariable Long userId) {
+        return ApiResponse.success(userCleanupService.getJob(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User cleanup", userId)));
+    }
+}
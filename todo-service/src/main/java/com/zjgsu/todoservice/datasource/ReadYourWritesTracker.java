@@ -0,0 +1,58 @@
+package com.zjgsu.todoservice.datasource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读己之写跟踪器
+ * 记录用户最近一次写主库的时间，在复制延迟窗口内该用户的读请求仍然路由到主库
+ * 跟踪范围为当前实例
+ */
+public class ReadYourWritesTracker {
+
+    private static final int PURGE_THRESHOLD = 10000;
+
+    private final long windowNanos;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * 记录用户写操作
+     */
+    public void recordWrite(String userKey) {
+        if (userKey == null) {
+            return;
+        }
+        lastWrites.put(userKey, System.nanoTime());
+        if (lastWrites.size() > PURGE_THRESHOLD) {
+            purgeExpired();
+        }
+    }
+
+    /**
+     * 判断用户是否在复制延迟窗口内写过主库
+     */
+    public boolean recentlyWrote(String userKey) {
+        if (userKey == null) {
+            return false;
+        }
+        Long writtenAt = lastWrites.get(userKey);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - writtenAt > windowNanos) {
+            lastWrites.remove(userKey, writtenAt);
+            return false;
+        }
+        return true;
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(writtenAt -> now - writtenAt > windowNanos);
+    }
+}
@@ -0,0 +1,13 @@
+package com.zjgsu.todoservice.dto;
+
+import com.zjgsu.todoservice.model.Todo;
+
+import java.util.List;
+
+/**
+ * 增量同步结果
+ * changed为since之后新建或修改的Todo，deleted为since之后删除的Todo ID，
+ * next作为下一次请求的since，hasMore为true时应立即继续请求
+ */
+public record TodoChanges(List<Todo> changed, List<Long> deleted, long next, boolean hasMore) {
+}
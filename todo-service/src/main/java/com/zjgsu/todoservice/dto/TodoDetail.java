@@ -0,0 +1,19 @@
+package com.zjgsu.todoservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Todo列表详情视图
+ * 列表接口通过fields参数请求description/createdAt时使用
+ */
+public record TodoDetail(
+        Long id,
+        String title,
+        String description,
+        Boolean completed,
+        Long userId,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Long version,
+        LocalDateTime dueAt) {
+}
@@ -0,0 +1,14 @@
+package com.zjgsu.todoservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Todo到期视图
+ * 提醒调度加载时间窗口时使用，只查询调度所需的列
+ */
+public record TodoDue(
+        Long id,
+        LocalDateTime dueAt,
+        Boolean completed,
+        Boolean reminded) {
+}
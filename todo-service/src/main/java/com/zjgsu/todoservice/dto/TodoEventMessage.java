@@ -2,21 +2,29 @@ package com.zjgsu.todoservice.dto;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * Todo事件消息DTO
  * 用于RabbitMQ消息传递
+ * eventId在创建事件时生成，重放和重试沿用原值，消费者据此去重
  */
 public class TodoEventMessage implements Serializable {
 
+    private String eventId;
     private Long todoId;
     private String title;
     private String description;
     private Long userId;
+    private Boolean completed;
+    private Long version;      // 事件对应的实体版本号，消费者据此忽略乱序到达的旧事件
+    private LocalDateTime updatedAt;
+    private LocalDateTime dueAt;
     private String eventType;  // created, updated, deleted, completed
     private LocalDateTime timestamp;
 
     public TodoEventMessage() {
+        this.eventId = UUID.randomUUID().toString();
         this.timestamp = LocalDateTime.now();
     }
 
@@ -26,10 +34,19 @@ public class TodoEventMessage implements Serializable {
         this.description = description;
         this.userId = userId;
         this.eventType = eventType;
+        this.eventId = UUID.randomUUID().toString();
         this.timestamp = LocalDateTime.now();
     }
 
     // Getters and Setters
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+
     public Long getTodoId() {
         return todoId;
     }
@@ -62,6 +79,38 @@ public class TodoEventMessage implements Serializable {
         this.userId = userId;
     }
 
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public LocalDateTime getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(LocalDateTime dueAt) {
+        this.dueAt = dueAt;
+    }
+
     public String getEventType() {
         return eventType;
     }
@@ -81,9 +130,11 @@ public class TodoEventMessage implements Serializable {
     @Override
     public String toString() {
         return "TodoEventMessage{" +
-                "todoId=" + todoId +
+                "eventId='" + eventId + '\'' +
+                ", todoId=" + todoId +
                 ", title='" + title + '\'' +
                 ", userId=" + userId +
+                ", version=" + version +
                 ", eventType='" + eventType + '\'' +
                 ", timestamp=" + timestamp +
                 '}';
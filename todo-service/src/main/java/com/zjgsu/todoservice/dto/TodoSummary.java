@@ -0,0 +1,16 @@
+package com.zjgsu.todoservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Todo列表摘要视图
+ * 列表接口默认使用，只查询列表展示所需的列（不含TEXT类型的description）
+ */
+public record TodoSummary(
+        Long id,
+        String title,
+        Boolean completed,
+        Long userId,
+        LocalDateTime updatedAt,
+        Long version) {
+}
@@ -0,0 +1,15 @@
+package com.zjgsu.todoservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户事件消息DTO
+ * user-service发送到user.event.exchange的事件，按JSON字段解码
+ */
+public record UserEventMessage(
+        String eventId,
+        Long userId,
+        String username,
+        String eventType,
+        LocalDateTime timestamp) {
+}
@@ -0,0 +1,10 @@
+package com.zjgsu.todoservice.dto;
+
+/**
+ * user-service返回的用户摘要
+ * 只使用ID和用户名，其余字段忽略
+ */
+public record UserSummary(
+        Long id,
+        String username) {
+}
@@ -0,0 +1,13 @@
+package com.zjgsu.todoservice.dto;
+
+import java.util.List;
+
+/**
+ * 用户Todo列表视图
+ * 由读模型提供，已包含用户名，无需再调用user-service
+ */
+public record UserTodoList(
+        Long userId,
+        String username,
+        List<TodoSummary> todos) {
+}
@@ -0,0 +1,12 @@
+package com.zjgsu.todoservice.exception;
+
+/**
+ * 增量同步位置过期异常
+ * since之后的墓碑已超过保留期限被删除，客户端需要从since=0重新全量同步
+ */
+public class ChangesExpiredException extends RuntimeException {
+    public ChangesExpiredException(Long userId, long since, long purgedSeq) {
+        super("Changes since " + since + " are no longer available for user " + userId
+                + " (tombstones purged up to " + purgedSeq + "), resync from since=0");
+    }
+}
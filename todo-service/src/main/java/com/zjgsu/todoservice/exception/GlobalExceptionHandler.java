@@ -1,6 +1,7 @@
 package com.zjgsu.todoservice.exception;
 
 import com.zjgsu.todoservice.common.ApiResponse;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -34,6 +35,46 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.notFound("Resource not found: " + ex.getResourcePath()));
     }
 
+    /**
+     * 处理前置条件失败异常（If-Match版本不匹配）
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiResponse<Void>> handlePreconditionFailed(PreconditionFailedException ex) {
+        return ResponseEntity
+                .status(HttpStatus.PRECONDITION_FAILED)
+                .body(ApiResponse.error(412, ex.getMessage()));
+    }
+
+    /**
+     * 处理增量同步位置过期异常（墓碑已被清除，需全量同步）
+     */
+    @ExceptionHandler(ChangesExpiredException.class)
+    public ResponseEntity<ApiResponse<Void>> handleChangesExpired(ChangesExpiredException ex) {
+        return ResponseEntity
+                .status(HttpStatus.GONE)
+                .body(ApiResponse.error(410, ex.getMessage()));
+    }
+
+    /**
+     * 处理Idempotency-Key复用异常（同一key对应不同的请求内容）
+     */
+    @ExceptionHandler(IdempotencyKeyException.class)
+    public ResponseEntity<ApiResponse<Void>> handleIdempotencyKey(IdempotencyKeyException ex) {
+        return ResponseEntity
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(ApiResponse.error(422, ex.getMessage()));
+    }
+
+    /**
+     * 处理乐观锁冲突异常（并发修改）
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponse<Void>> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error(409, "Concurrent modification detected, please reload and retry"));
+    }
+
     /**
      * 处理非法参数异常
      */
@@ -0,0 +1,333 @@
+package com.zjgsu.todoservice.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 本地事件日志
+ * 只追加写入的内存映射分段文件，每个段固定大小，写满后滚动到新段，超出保留数量时删除最旧的段
+ * 记录格式: [length:int][crc32c:int][timestamp:long][keyLength:short][key][payload]
+ * length和crc之后的内容先写入，length最后写入，读取方以length和CRC判断记录是否完整
+ * 启动时校验最后一段到第一条不完整的记录，从该位置继续写入
+ */
+@Component
+public class EventJournal implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(EventJournal.class);
+
+    static final int HEADER_SIZE = 8;
+    private static final String SUFFIX = ".journal";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final NavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private MappedByteBuffer writeBuffer;
+    private long writeSegment;
+    private int writePosition;
+
+    public EventJournal(@Value("${app.journal.enabled:true}") boolean enabled,
+                        @Value("${app.journal.dir:./data/journal}") String directory,
+                        @Value("${app.journal.segment-size:64MB}") DataSize segmentSize,
+                        @Value("${app.journal.max-segments:16}") int maxSegments,
+                        @Value("${app.journal.flush-interval-ms:1000}") long flushIntervalMillis) {
+        if (segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("app.journal.segment-size must be less than 2GB");
+        }
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.maxSegments = maxSegments;
+        if (!enabled) {
+            this.flusher = null;
+            return;
+        }
+        open();
+        // 写入只进入页缓存，定期刷盘；进程崩溃不丢数据，机器掉电最多丢失一个刷盘间隔
+        this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("journal-flusher").daemon().factory());
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                        .forEach(file -> segments.put(segmentNumber(file), file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal directory " + directory, e);
+        }
+        if (segments.isEmpty() || !resume(segments.lastKey())) {
+            createSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        }
+        logger.info("Event journal opened at {} with {} segments", directory.toAbsolutePath(), segments.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 追加一条记录
+     * @return 记录的位置
+     */
+    public synchronized long append(String key, byte[] payload, long timestampMillis) {
+        if (!enabled) {
+            return -1;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 2 + keyBytes.length + payload.length;
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes exceeds segment size");
+        }
+        if (writePosition + HEADER_SIZE + length > segmentSize) {
+            roll();
+        }
+
+        long offset = offset(writeSegment, writePosition);
+        ByteBuffer body = writeBuffer.duplicate();
+        body.position(writePosition + HEADER_SIZE);
+        body.putLong(timestampMillis)
+                .putShort((short) keyBytes.length)
+                .put(keyBytes)
+                .put(payload);
+        CRC32C crc = new CRC32C();
+        crc.update(writeBuffer.slice(writePosition + HEADER_SIZE, length));
+        writeBuffer.putInt(writePosition + 4, (int) crc.getValue());
+        writeBuffer.putInt(writePosition, length);
+        writePosition += HEADER_SIZE + length;
+        return offset;
+    }
+
+    /**
+     * 当前写入位置，新记录将写在该位置之后
+     */
+    public synchronized long getWriteOffset() {
+        return offset(writeSegment, writePosition);
+    }
+
+    public long getFirstOffset() {
+        return segments.isEmpty() ? 0 : offset(segments.firstKey(), 0);
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 从指定位置开始读取的游标，读到末尾后可以继续轮询新写入的记录
+     */
+    public JournalReader openReader(long fromOffset) {
+        return new JournalReader(this, fromOffset);
+    }
+
+    /**
+     * 按时间范围扫描记录
+     * 根据每段第一条记录的时间跳过更早的段，读到晚于结束时间的记录即停止
+     */
+    public long scan(Instant from, Instant to, Consumer<JournalRecord> action) {
+        long startSegment = segments.isEmpty() ? 0 : segments.firstKey();
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            JournalRecord first = readFirst(entry.getKey());
+            if (first == null || first.timestamp().isAfter(from)) {
+                break;
+            }
+            startSegment = entry.getKey();
+        }
+
+        long count = 0;
+        try (JournalReader reader = openReader(offset(startSegment, 0))) {
+            while (true) {
+                List<JournalRecord> records = reader.poll(1000);
+                if (records.isEmpty()) {
+                    return count;
+                }
+                for (JournalRecord record : records) {
+                    if (record.timestamp().isAfter(to)) {
+                        return count;
+                    }
+                    if (!record.timestamp().isBefore(from)) {
+                        action.accept(record);
+                        count++;
+                    }
+                }
+            }
+        }
+    }
+
+    private JournalRecord readFirst(long segment) {
+        MappedByteBuffer buffer = map(segment);
+        return buffer != null ? read(buffer, segment, 0) : null;
+    }
+
+    // ========== 供JournalReader使用 ==========
+
+    boolean hasSegment(long segment) {
+        return segments.containsKey(segment);
+    }
+
+    Long nextSegment(long segment) {
+        return segments.higherKey(segment);
+    }
+
+    /**
+     * 以只读方式映射段文件，段已被删除时返回null
+     */
+    MappedByteBuffer map(long segment) {
+        Path file = segments.get(segment);
+        if (file == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            // 段可能刚好被保留策略删除
+            logger.debug("Failed to map journal segment {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 读取指定位置的记录，记录不完整或校验失败时返回null
+     */
+    static JournalRecord read(ByteBuffer buffer, long segment, int position) {
+        if (position + HEADER_SIZE > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + HEADER_SIZE, length));
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(position + HEADER_SIZE, length);
+        long timestamp = body.getLong();
+        byte[] key = new byte[body.getShort()];
+        body.get(key);
+        byte[] payload = new byte[body.remaining()];
+        body.get(payload);
+        return new JournalRecord(offset(segment, position), Instant.ofEpochMilli(timestamp),
+                new String(key, StandardCharsets.UTF_8), payload);
+    }
+
+    static long offset(long segment, int position) {
+        return (segment << 32) | position;
+    }
+
+    static long segmentOf(long offset) {
+        return offset >>> 32;
+    }
+
+    static int positionOf(long offset) {
+        return (int) offset;
+    }
+
+    // ========== 段管理 ==========
+
+    private void roll() {
+        writeBuffer.force();
+        createSegment(writeSegment + 1);
+        while (segments.size() > maxSegments) {
+            Map.Entry<Long, Path> oldest = segments.pollFirstEntry();
+            try {
+                Files.deleteIfExists(oldest.getValue());
+            } catch (IOException e) {
+                logger.warn("Failed to delete journal segment {}: {}", oldest.getValue(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 继续写入上次的最后一段，从头按length和CRC扫描到末尾
+     * 末尾是写了一半的记录或段大小配置已改变时返回false，该段保持只读
+     */
+    private boolean resume(long segment) {
+        Path file = segments.get(segment);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() != segmentSize) {
+                return false;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            int position = 0;
+            while (read(buffer, segment, position) != null) {
+                position += HEADER_SIZE + buffer.getInt(position);
+            }
+            if (position + HEADER_SIZE <= segmentSize && buffer.getInt(position) != 0) {
+                logger.warn("Journal segment {} has a torn record at position {}, starting a new segment",
+                        file, position);
+                return false;
+            }
+            writeBuffer = buffer;
+            writeSegment = segment;
+            writePosition = position;
+            logger.info("Resuming journal segment {} at position {}", file, position);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to resume journal segment " + file, e);
+        }
+    }
+
+    private void createSegment(long segment) {
+        Path file = directory.resolve(String.format("%020d%s", segment, SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射区域超出文件长度时会扩展文件，未写入部分为0
+            writeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal segment " + file, e);
+        }
+        writeSegment = segment;
+        writePosition = 0;
+        segments.put(segment, file);
+    }
+
+    private synchronized void flush() {
+        writeBuffer.force();
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    @Override
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+}
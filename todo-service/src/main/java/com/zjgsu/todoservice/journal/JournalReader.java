@@ -0,0 +1,80 @@
+package com.zjgsu.todoservice.journal;
+
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 日志读取游标
+ * 顺序读取记录，读到当前写入位置后返回空列表，之后再次poll可以读到新追加的记录
+ * 非线程安全，每个消费者使用各自的游标
+ */
+public class JournalReader implements AutoCloseable {
+
+    private final EventJournal journal;
+    private long segment;
+    private int position;
+    private MappedByteBuffer buffer;
+
+    JournalReader(EventJournal journal, long fromOffset) {
+        this.journal = journal;
+        this.segment = EventJournal.segmentOf(fromOffset);
+        this.position = EventJournal.positionOf(fromOffset);
+    }
+
+    /**
+     * 读取最多maxRecords条记录
+     */
+    public List<JournalRecord> poll(int maxRecords) {
+        List<JournalRecord> records = new ArrayList<>();
+        while (records.size() < maxRecords) {
+            if (buffer == null && !openSegment()) {
+                break;
+            }
+            JournalRecord record = EventJournal.read(buffer, segment, position);
+            if (record == null) {
+                // 段内没有更多完整记录；只有存在下一段时当前段才不会再写入
+                Long next = journal.nextSegment(segment);
+                if (next == null) {
+                    break;
+                }
+                moveTo(next);
+                continue;
+            }
+            records.add(record);
+            position += EventJournal.HEADER_SIZE + buffer.getInt(position);
+        }
+        return records;
+    }
+
+    /**
+     * 下一条待读取记录的位置，可用于之后恢复读取
+     */
+    public long position() {
+        return EventJournal.offset(segment, position);
+    }
+
+    private boolean openSegment() {
+        if (!journal.hasSegment(segment)) {
+            // 请求的段已被删除或尚未创建，跳到其后第一个存在的段
+            Long next = journal.nextSegment(segment);
+            if (next == null) {
+                return false;
+            }
+            moveTo(next);
+        }
+        buffer = journal.map(segment);
+        return buffer != null;
+    }
+
+    private void moveTo(long next) {
+        segment = next;
+        position = 0;
+        buffer = null;
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.zjgsu.todoservice.journal;
+
+import java.time.Instant;
+
+/**
+ * 日志记录
+ * @param offset 记录在日志中的位置，高32位为段号，低32位为段内偏移
+ */
+public record JournalRecord(long offset, Instant timestamp, String key, byte[] payload) {
+}
@@ -0,0 +1,118 @@
+package com.zjgsu.todoservice.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import com.zjgsu.todoservice.messaging.TodoEventProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 事件日志服务
+ * 按位置分页读取日志中的todo事件，以及把指定时间范围内的事件重新发布到todo.event.exchange
+ * 重放只读取本地日志文件，不访问数据库
+ */
+@Service
+public class JournalService {
+    private static final Logger logger = LoggerFactory.getLogger(JournalService.class);
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    public record Entry(long offset, Instant timestamp, String routingKey, TodoEventMessage event) {
+    }
+
+    public record Page(List<Entry> entries, long nextOffset) {
+    }
+
+    public record Status(boolean enabled, int segments, long firstOffset, long writeOffset,
+                         State replayState, Instant replayFrom, Instant replayTo, long replayed, String replayError) {
+    }
+
+    private final EventJournal eventJournal;
+    private final TodoEventProducer todoEventProducer;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong replayed = new AtomicLong();
+    private volatile State replayState = State.IDLE;
+    private volatile Instant replayFrom;
+    private volatile Instant replayTo;
+    private volatile String replayError;
+
+    public JournalService(EventJournal eventJournal, TodoEventProducer todoEventProducer, ObjectMapper objectMapper) {
+        this.eventJournal = eventJournal;
+        this.todoEventProducer = todoEventProducer;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 从指定位置读取事件，返回下一页的起始位置
+     */
+    public Page read(long fromOffset, int limit) {
+        try (JournalReader reader = eventJournal.openReader(fromOffset)) {
+            List<Entry> entries = new ArrayList<>();
+            for (JournalRecord record : reader.poll(limit)) {
+                entries.add(new Entry(record.offset(), record.timestamp(), record.key(), decode(record)));
+            }
+            return new Page(entries, reader.position());
+        }
+    }
+
+    public Status getStatus() {
+        return new Status(eventJournal.isEnabled(), eventJournal.getSegmentCount(), eventJournal.getFirstOffset(),
+                eventJournal.getWriteOffset(), replayState, replayFrom, replayTo, replayed.get(), replayError);
+    }
+
+    /**
+     * 在后台重新发布[from, to]时间范围内的事件
+     */
+    public synchronized Status replay(Instant from, Instant to) {
+        if (!eventJournal.isEnabled()) {
+            throw new IllegalArgumentException("Event journal is not enabled");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        if (replayState == State.RUNNING) {
+            throw new IllegalArgumentException("Replay already in progress");
+        }
+        replayState = State.RUNNING;
+        replayFrom = from;
+        replayTo = to;
+        replayError = null;
+        replayed.set(0);
+        Thread.ofVirtual().name("journal-replay").start(() -> doReplay(from, to));
+        return getStatus();
+    }
+
+    private void doReplay(Instant from, Instant to) {
+        try {
+            long count = eventJournal.scan(from, to, record -> {
+                todoEventProducer.republish(record.key(), decode(record));
+                replayed.incrementAndGet();
+            });
+            replayState = State.COMPLETED;
+            logger.info("Replayed {} journal events between {} and {}", count, from, to);
+        } catch (RuntimeException e) {
+            logger.error("Journal replay failed: {}", e.getMessage(), e);
+            replayError = e.getMessage();
+            replayState = State.FAILED;
+        }
+    }
+
+    private TodoEventMessage decode(JournalRecord record) {
+        try {
+            return objectMapper.readValue(record.payload(), TodoEventMessage.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode journal record at " + record.offset(), e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.zjgsu.todoservice.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个实例的负载估计(Peak EWMA)
+ * 延迟高于当前估计时直接取该值，低于时按距上次更新的时间指数衰减地平滑，慢下来的实例立刻变贵，恢复后逐步变便宜
+ * 负载 = 延迟估计 × (在途请求数 + 1)；还没有延迟样本的实例在有在途请求时给一个大的惩罚值，一次只试探一个请求
+ */
+public class InstanceLoad {
+
+    private static final double UNSEEDED_PENALTY = 1e15;
+
+    private final double decayNanos;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    // 延迟估计(纳秒)和上次更新时间由this保护
+    private double cost;
+    private long stamp;
+
+    /**
+     * @param decayNanos 衰减时间常数，越大历史延迟的影响越久
+     */
+    public InstanceLoad(long decayNanos, long nowNanos) {
+        this.decayNanos = decayNanos;
+        this.stamp = nowNanos;
+    }
+
+    public void start() {
+        inflight.incrementAndGet();
+    }
+
+    /**
+     * 请求结束，记录延迟
+     */
+    public void complete(long latencyNanos, long nowNanos) {
+        inflight.decrementAndGet();
+        observe(latencyNanos, nowNanos);
+    }
+
+    /**
+     * 当前负载，越小越优先；空闲期间延迟估计向0衰减，使变慢过的实例之后重新得到试探
+     */
+    public double load(long nowNanos) {
+        double current = observe(0, nowNanos);
+        int pending = Math.max(inflight.get(), 0);
+        if (current == 0 && pending > 0) {
+            return UNSEEDED_PENALTY + pending;
+        }
+        return current * (pending + 1);
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    private synchronized double observe(double latencyNanos, long nowNanos) {
+        long elapsed = Math.max(nowNanos - stamp, 0);
+        double weight = Math.exp(-elapsed / decayNanos);
+        if (latencyNanos > cost) {
+            cost = latencyNanos;
+        } else {
+            cost = cost * weight + latencyNanos * (1 - weight);
+        }
+        stamp = Math.max(stamp, nowNanos);
+        return cost;
+    }
+}
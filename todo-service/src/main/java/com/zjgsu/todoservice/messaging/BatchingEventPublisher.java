@@ -0,0 +1,402 @@
+package com.zjgsu.todoservice.messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量事件发布器
+ * 事件先进入内存队列，由专用线程按数量/时间攒批后在独立的confirm模式通道上连续发布，
+ * 未确认的消息按发布序号记录，broker确认(可一次确认多条)后移除，nack或超时未确认的消息按指数退避延迟后重新发布
+ * 队列已满或发布器未运行时退回RabbitTemplate发送，按CorrelationData跟踪确认，计入同样的指标
+ */
+@Component
+public class BatchingEventPublisher implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(BatchingEventPublisher.class);
+
+    private record PendingEvent(String exchange, String routingKey, Message message, int attempt, long publishedAt) {
+
+        PendingEvent published(long nanoTime) {
+            return new PendingEvent(exchange, routingKey, message, attempt, nanoTime);
+        }
+
+        PendingEvent nextAttempt() {
+            return new PendingEvent(exchange, routingKey, message, attempt + 1, 0);
+        }
+    }
+
+    /**
+     * 等待退避结束的重试
+     */
+    private record DelayedRetry(PendingEvent event, long dueAt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((DelayedRetry) other).dueAt);
+        }
+    }
+
+    private final CachingConnectionFactory connectionFactory;
+    private final RabbitTemplate rabbitTemplate;
+    private final MessageConverter messageConverter;
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxAttempts;
+    private final long confirmTimeoutNanos;
+    private final long retryBackoffNanos;
+    private final long maxRetryBackoffNanos;
+
+    private final BlockingQueue<PendingEvent> queue;
+    private final ConcurrentNavigableMap<Long, PendingEvent> outstanding = new ConcurrentSkipListMap<>();
+    private final DelayQueue<DelayedRetry> retries = new DelayQueue<>();
+
+    private final Counter confirmedCounter;
+    private final Counter nackedCounter;
+    private final Counter timedOutCounter;
+    private final Counter failedCounter;
+    private final Counter fallbackCounter;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer confirmLatency;
+
+    private volatile boolean running;
+    private Thread worker;
+    // 只由发布线程访问
+    private Connection connection;
+    private Channel channel;
+
+    public BatchingEventPublisher(CachingConnectionFactory connectionFactory, RabbitTemplate rabbitTemplate,
+                                  MessageConverter messageConverter, MeterRegistry meterRegistry,
+                                  @Value("${app.messaging.batch.enabled:true}") boolean enabled,
+                                  @Value("${app.messaging.batch.size:100}") int batchSize,
+                                  @Value("${app.messaging.batch.linger-ms:5}") long lingerMillis,
+                                  @Value("${app.messaging.batch.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${app.messaging.batch.max-attempts:5}") int maxAttempts,
+                                  @Value("${app.messaging.batch.confirm-timeout-ms:10000}") long confirmTimeoutMillis,
+                                  @Value("${app.messaging.batch.retry-backoff-ms:200}") long retryBackoffMillis,
+                                  @Value("${app.messaging.batch.max-retry-backoff-ms:5000}") long maxRetryBackoffMillis) {
+        this.connectionFactory = connectionFactory;
+        this.rabbitTemplate = rabbitTemplate;
+        this.messageConverter = messageConverter;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.maxAttempts = maxAttempts;
+        this.confirmTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMillis);
+        this.retryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(retryBackoffMillis);
+        this.maxRetryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxRetryBackoffMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.meterRegistry = meterRegistry;
+        this.confirmedCounter = publishCounter(meterRegistry, "confirmed");
+        this.nackedCounter = publishCounter(meterRegistry, "nacked");
+        this.timedOutCounter = publishCounter(meterRegistry, "timeout");
+        this.failedCounter = publishCounter(meterRegistry, "failed");
+        this.fallbackCounter = publishCounter(meterRegistry, "fallback");
+        this.batchSizeSummary = DistributionSummary.builder("todo.events.publish.batch.size")
+                .register(meterRegistry);
+        this.confirmLatency = Timer.builder("todo.events.publish.confirm.latency")
+                .description("Time from publish to broker confirm")
+                .register(meterRegistry);
+        Gauge.builder("todo.events.publish.queued", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("todo.events.publish.outstanding", outstanding, Map::size).register(meterRegistry);
+        Gauge.builder("todo.events.publish.retrying", retries, DelayQueue::size).register(meterRegistry);
+    }
+
+    private static Counter publishCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("todo.events.publish").tag("result", result).register(meterRegistry);
+    }
+
+    /**
+     * 发布消息，立即返回，发布结果通过确认回调跟踪
+     */
+    public void publish(String exchange, String routingKey, Object payload, MessagePostProcessor postProcessor) {
+        Message message = messageConverter.toMessage(payload, new MessageProperties());
+        if (postProcessor != null) {
+            message = postProcessor.postProcessMessage(message);
+        }
+        enqueue(new PendingEvent(exchange, routingKey, message, 1, 0));
+    }
+
+    private void enqueue(PendingEvent event) {
+        if (running && queue.offer(event)) {
+            return;
+        }
+        // 队列已满或发布器已停止，退回RabbitTemplate发送
+        fallbackCounter.increment();
+        CorrelationData correlation = new CorrelationData();
+        long publishedAt = System.nanoTime();
+        correlation.getFuture().whenComplete((confirm, error) -> fallbackConfirmed(event, publishedAt,
+                error == null && confirm.isAck(), error != null ? error.getMessage() : confirm.getReason()));
+        rabbitTemplate.send(event.exchange(), event.routingKey(), event.message(), correlation);
+    }
+
+    /**
+     * 退回发送的确认结果，nack在发布器运行时同样按退避重试，否则只能从事件日志重放
+     */
+    private void fallbackConfirmed(PendingEvent event, long publishedAt, boolean ack, String cause) {
+        if (ack) {
+            confirmedCounter.increment();
+            confirmLatency.record(System.nanoTime() - publishedAt, TimeUnit.NANOSECONDS);
+            return;
+        }
+        nackedCounter.increment();
+        if (running) {
+            retry(event);
+            return;
+        }
+        failedCounter.increment();
+        logger.error("Event {} with id {} was nacked after the publisher stopped, replay it from the event journal: {}",
+                event.routingKey(), event.message().getMessageProperties().getMessageId(), cause);
+    }
+
+    // ========== 发布线程 ==========
+
+    private void run() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                expireUnconfirmed();
+                releaseRetries();
+                PendingEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingEvent next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in event publisher: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publishBatch(List<PendingEvent> batch) {
+        int published = 0;
+        try {
+            Channel ch = channel();
+            for (PendingEvent event : batch) {
+                MessageProperties properties = event.message().getMessageProperties();
+                AMQP.BasicProperties basicProperties = propertiesConverter.fromMessageProperties(
+                        properties, StandardCharsets.UTF_8.name());
+                // 先登记再发布，确认回调可能在basicPublish返回前到达
+                long sequence = ch.getNextPublishSeqNo();
+                outstanding.put(sequence, event.published(System.nanoTime()));
+                ch.basicPublish(event.exchange(), event.routingKey(), true, basicProperties, event.message().getBody());
+                published++;
+            }
+            batchSizeSummary.record(batch.size());
+        } catch (Exception e) {
+            logger.warn("Failed to publish batch, {} events will be retried: {}", batch.size() - published, e.getMessage());
+            // 通道异常时已发布但未确认的消息无法再确认，全部重新发布
+            closeChannel();
+            for (PendingEvent event : batch.subList(published, batch.size())) {
+                retry(event);
+            }
+        }
+    }
+
+    private Channel channel() throws Exception {
+        if (channel == null || !channel.isOpen()) {
+            closeChannel();
+            connection = connectionFactory.getRabbitConnectionFactory().newConnection("todo-event-publisher");
+            channel = connection.createChannel();
+            channel.confirmSelect();
+            // mandatory发布，没有任何队列匹配时broker退回消息，退回后仍会收到确认
+            channel.addReturnListener(returned -> {
+                meterRegistry.counter("todo.events.unroutable", "routingKey", returned.getRoutingKey()).increment();
+                logger.warn("Event not routed to any queue, routing key: {}", returned.getRoutingKey());
+            });
+            channel.addConfirmListener(
+                    (sequence, multiple) -> confirm(sequence, multiple, true),
+                    (sequence, multiple) -> confirm(sequence, multiple, false));
+        }
+        return channel;
+    }
+
+    /**
+     * 处理broker确认，multiple为true时确认该序号及之前的全部消息
+     */
+    private void confirm(long sequence, boolean multiple, boolean ack) {
+        List<PendingEvent> confirmed = new ArrayList<>();
+        if (multiple) {
+            // 逐条移除，与expireUnconfirmed并发时同一条消息只会被其中一方取走
+            for (Map.Entry<Long, PendingEvent> entry : outstanding.headMap(sequence, true).entrySet()) {
+                if (outstanding.remove(entry.getKey(), entry.getValue())) {
+                    confirmed.add(entry.getValue());
+                }
+            }
+        } else {
+            PendingEvent event = outstanding.remove(sequence);
+            if (event != null) {
+                confirmed.add(event);
+            }
+        }
+        long now = System.nanoTime();
+        for (PendingEvent event : confirmed) {
+            if (ack) {
+                confirmedCounter.increment();
+                confirmLatency.record(now - event.publishedAt(), TimeUnit.NANOSECONDS);
+            } else {
+                nackedCounter.increment();
+                retry(event);
+            }
+        }
+    }
+
+    /**
+     * 超时未确认的消息视为失败并重新发布，消费方需按版本号或事件ID容忍重复
+     */
+    private void expireUnconfirmed() {
+        long now = System.nanoTime();
+        Map.Entry<Long, PendingEvent> oldest;
+        while ((oldest = outstanding.firstEntry()) != null && now - oldest.getValue().publishedAt() > confirmTimeoutNanos) {
+            if (outstanding.remove(oldest.getKey(), oldest.getValue())) {
+                timedOutCounter.increment();
+                retry(oldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * 延迟重新发布，第n次重试等待retry-backoff * 2^(n-1)，不超过max-retry-backoff
+     * broker持续nack(如内存告警)时避免立即重发形成忙循环
+     */
+    private void retry(PendingEvent event) {
+        if (event.attempt() >= maxAttempts) {
+            failedCounter.increment();
+            logger.error("Giving up on event {} after {} attempts", event.routingKey(), event.attempt());
+            return;
+        }
+        long backoff = Math.min(maxRetryBackoffNanos, retryBackoffNanos << Math.min(event.attempt() - 1, 20));
+        retries.add(new DelayedRetry(event.nextAttempt(), System.nanoTime() + backoff));
+    }
+
+    /**
+     * 退避结束的重试放回发布队列
+     */
+    private void releaseRetries() {
+        DelayedRetry due;
+        while ((due = retries.poll()) != null) {
+            try {
+                enqueue(due.event());
+            } catch (RuntimeException e) {
+                failedCounter.increment();
+                logger.error("Failed to republish event {}: {}", due.event().routingKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void closeChannel() {
+        // 序号随通道重置，旧通道上未确认的消息必须先转移出去
+        List<PendingEvent> unconfirmed = new ArrayList<>(outstanding.values());
+        outstanding.clear();
+        unconfirmed.forEach(this::retry);
+        try {
+            if (connection != null && connection.isOpen()) {
+                connection.close();
+            }
+        } catch (Exception e) {
+            logger.debug("Failed to close publisher connection: {}", e.getMessage());
+        }
+        connection = null;
+        channel = null;
+    }
+
+    // ========== 生命周期 ==========
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform().name("todo-event-publisher").start(this::run);
+    }
+
+    /**
+     * 停止接收新事件，发布队列中剩余的事件并等待确认
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+            if (channel != null && channel.isOpen()) {
+                channel.waitForConfirms(TimeUnit.SECONDS.toMillis(5));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Not all events were confirmed before shutdown: {}", e.getMessage());
+        }
+        int unconfirmed = outstanding.size() + retries.size() + queue.size();
+        if (unconfirmed > 0) {
+            logger.warn("{} events were not confirmed before shutdown, replay them from the event journal",
+                    unconfirmed);
+        }
+        outstanding.clear();
+        closeChannel();
+        retries.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
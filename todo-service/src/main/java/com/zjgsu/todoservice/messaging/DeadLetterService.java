@@ -0,0 +1,409 @@
+package com.zjgsu.todoservice.messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.GetResponse;
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 死信队列服务
+ * 分页查看dlx.todo.queue中的消息、按x-death原因分组统计，以及按速率重放选中的消息
+ * 来自有消费者的队列(direct-replay-queues，如todo.user-deleted.queue)的消息经默认交换机直接投递回原队列；
+ * 其余来自todo.created.queue等无消费者队列的消息按x-death中的原路由键重新发布到todo.event.exchange，
+ * 由订阅方按message-id(eventId)去重。重新发布的副本会再次在这些队列中过期，
+ * 带x-replayed头的此类消息已经扇出过，重放时确认并计为skipped，不再循环
+ * 查看时用basicGet取出消息但不确认，关闭通道后消息回到队列，不会丢失
+ */
+@Service
+public class DeadLetterService {
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterService.class);
+
+    public static final String DEAD_LETTER_QUEUE = "dlx.todo.queue";
+    // 默认交换机按路由键投递到同名队列
+    private static final String DEFAULT_EXCHANGE = "";
+    private static final String EVENT_EXCHANGE = "todo.event.exchange";
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    public record Entry(String messageId, String reason, String queue, String routingKey, long deathCount,
+                        Instant deadLetteredAt, String contentType, TodoEventMessage event) {
+    }
+
+    public record Page(List<Entry> entries, long backlog) {
+    }
+
+    public record Group(String reason, String queue, long count, Instant oldest, Instant newest) {
+    }
+
+    public record Summary(List<Group> groups, long scanned, long backlog) {
+    }
+
+    /**
+     * 重放条件，reason和queue为空时不过滤
+     */
+    public record ReplayRequest(String reason, String queue, Integer limit, Integer ratePerSecond) {
+    }
+
+    public record Status(long backlog, State replayState, String reason, String queue, int ratePerSecond,
+                         long scanned, long replayed, long skipped, long failed,
+                         Instant startedAt, Instant finishedAt, String replayError) {
+    }
+
+    private final CachingConnectionFactory connectionFactory;
+    private final MessageConverter messageConverter;
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+    private final Set<String> directReplayQueues;
+
+    private final int browseLimit;
+    private final int scanLimit;
+    private final int defaultRate;
+    private final long confirmTimeoutMillis;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Counter replayedCounter;
+    private final Counter skippedCounter;
+    private final Counter failedCounter;
+
+    private volatile State replayState = State.IDLE;
+    private volatile ReplayRequest replayRequest;
+    private volatile int replayRate;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String replayError;
+
+    public DeadLetterService(CachingConnectionFactory connectionFactory, MessageConverter messageConverter,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.messaging.dlq.browse-limit:1000}") int browseLimit,
+                             @Value("${app.messaging.dlq.scan-limit:10000}") int scanLimit,
+                             @Value("${app.messaging.dlq.replay-rate:100}") int defaultRate,
+                             @Value("${app.messaging.dlq.confirm-timeout-ms:10000}") long confirmTimeoutMillis,
+                             @Value("${app.messaging.dlq.direct-replay-queues:todo.user-deleted.queue}")
+                             List<String> directReplayQueues) {
+        this.connectionFactory = connectionFactory;
+        this.messageConverter = messageConverter;
+        this.directReplayQueues = Set.copyOf(directReplayQueues);
+        this.browseLimit = browseLimit;
+        this.scanLimit = scanLimit;
+        this.defaultRate = defaultRate;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+
+        this.replayedCounter = replayCounter(meterRegistry, "replayed");
+        this.skippedCounter = replayCounter(meterRegistry, "skipped");
+        this.failedCounter = replayCounter(meterRegistry, "failed");
+        Gauge.builder("todo.dlq.backlog", backlog, AtomicLong::get)
+                .description("Messages in the dead-letter queue, as of the last inspection or replay step")
+                .register(meterRegistry);
+    }
+
+    private static Counter replayCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("todo.dlq.replay").tag("result", result).register(meterRegistry);
+    }
+
+    /**
+     * 按队列顺序跳过offset条后返回最多limit条消息
+     */
+    public Page browse(int offset, int limit) {
+        if (offset < 0 || limit <= 0 || offset + limit > browseLimit) {
+            throw new IllegalArgumentException("offset + limit must be between 1 and " + browseLimit);
+        }
+        requireNoReplay();
+        List<Entry> entries = new ArrayList<>();
+        withChannel(channel -> {
+            int position = 0;
+            GetResponse response;
+            while (position < offset + limit && (response = channel.basicGet(DEAD_LETTER_QUEUE, false)) != null) {
+                if (position++ >= offset) {
+                    entries.add(toEntry(toMessage(response)));
+                }
+            }
+            // 通道关闭时未确认的消息重新入队
+        });
+        return new Page(entries, refreshBacklog());
+    }
+
+    /**
+     * 按x-death原因和来源队列分组统计，最多扫描scan-limit条消息
+     */
+    public Summary summarize() {
+        requireNoReplay();
+        Map<String, Group> groups = new LinkedHashMap<>();
+        AtomicLong count = new AtomicLong();
+        withChannel(channel -> {
+            GetResponse response;
+            while (count.get() < scanLimit && (response = channel.basicGet(DEAD_LETTER_QUEUE, false)) != null) {
+                count.incrementAndGet();
+                Entry entry = toEntry(toMessage(response));
+                groups.merge(entry.reason() + "|" + entry.queue(),
+                        new Group(entry.reason(), entry.queue(), 1, entry.deadLetteredAt(), entry.deadLetteredAt()),
+                        DeadLetterService::mergeGroups);
+            }
+        });
+        List<Group> sorted = groups.values().stream()
+                .sorted(Comparator.comparingLong(Group::count).reversed())
+                .toList();
+        return new Summary(sorted, count.get(), refreshBacklog());
+    }
+
+    public Status getStatus() {
+        ReplayRequest request = replayRequest;
+        return new Status(refreshBacklog(), replayState,
+                request == null ? null : request.reason(), request == null ? null : request.queue(), replayRate,
+                scanned.get(), replayed.get(), skipped.get(), failed.get(), startedAt, finishedAt, replayError);
+    }
+
+    /**
+     * 在后台按速率重放匹配条件的死信消息
+     * 重放前记录的队列深度作为扫描上限，不匹配的消息在结束后重新入队
+     */
+    public synchronized Status replay(ReplayRequest request) {
+        int rate = request.ratePerSecond() == null ? defaultRate : request.ratePerSecond();
+        if (rate <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be positive");
+        }
+        if (request.limit() != null && request.limit() <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        requireNoReplay();
+        replayState = State.RUNNING;
+        replayRequest = request;
+        replayRate = rate;
+        replayError = null;
+        startedAt = Instant.now();
+        finishedAt = null;
+        scanned.set(0);
+        replayed.set(0);
+        skipped.set(0);
+        failed.set(0);
+        Thread.ofVirtual().name("dlq-replay").start(() -> doReplay(request, rate));
+        return getStatus();
+    }
+
+    private void doReplay(ReplayRequest request, int rate) {
+        long limit = request.limit() == null ? Long.MAX_VALUE : request.limit();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        try {
+            withChannel(channel -> {
+                channel.confirmSelect();
+                // 原队列已不存在或路由键没有匹配的队列时mandatory消息被退回，退回先于确认到达
+                AtomicLong returned = new AtomicLong();
+                channel.addReturnListener(message -> returned.incrementAndGet());
+                long depth = channel.queueDeclarePassive(DEAD_LETTER_QUEUE).getMessageCount();
+                long next = System.nanoTime();
+                GetResponse response;
+                while (scanned.get() < depth && replayed.get() < limit
+                        && (response = channel.basicGet(DEAD_LETTER_QUEUE, false)) != null) {
+                    scanned.incrementAndGet();
+                    Message message = toMessage(response);
+                    Entry entry = toEntry(message);
+                    if (!matches(entry, request)) {
+                        // 保持未确认，通道关闭时重新入队，本次扫描不会再次取到
+                        continue;
+                    }
+                    if (isFannedOutCopy(entry, message)) {
+                        channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                        skipped.incrementAndGet();
+                        skippedCounter.increment();
+                        continue;
+                    }
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    next = Math.max(next, System.nanoTime() - intervalNanos) + intervalNanos;
+                    republish(channel, entry, message, response.getEnvelope().getDeliveryTag(), returned);
+                    backlog.set(Math.max(0, depth - replayed.get()));
+                }
+            });
+            replayState = State.COMPLETED;
+            logger.info("Replayed {} dead-lettered events ({} skipped, {} failed, {} scanned)",
+                    replayed.get(), skipped.get(), failed.get(), scanned.get());
+        } catch (RuntimeException e) {
+            logger.error("Dead-letter replay failed: {}", e.getMessage(), e);
+            replayError = e.getMessage();
+            replayState = State.FAILED;
+        } finally {
+            finishedAt = Instant.now();
+            refreshBacklog();
+        }
+    }
+
+    /**
+     * 重新发布到todo.event.exchange的消息在无消费者的队列中再次过期
+     */
+    private boolean isFannedOutCopy(Entry entry, Message message) {
+        return !directReplayQueues.contains(entry.queue())
+                && Boolean.TRUE.equals(message.getMessageProperties().getHeader("x-replayed"));
+    }
+
+    /**
+     * 发布并等待broker确认后再确认死信消息
+     * 确认失败或无法路由而被退回的消息不确认，留在死信队列
+     */
+    private void republish(Channel channel, Entry entry, Message message, long deliveryTag, AtomicLong returned)
+            throws IOException {
+        boolean direct = directReplayQueues.contains(entry.queue());
+        String exchange = direct ? DEFAULT_EXCHANGE : EVENT_EXCHANGE;
+        String routingKey = direct ? entry.queue() : entry.routingKey();
+        if (routingKey == null) {
+            logger.warn("Message {} from {} has no original routing key, it stays in the dead-letter queue",
+                    entry.messageId(), entry.queue());
+            failed.incrementAndGet();
+            failedCounter.increment();
+            return;
+        }
+        MessageProperties properties = message.getMessageProperties();
+        if (properties.getMessageId() == null && entry.event() != null) {
+            // 订阅方按message-id去重
+            properties.setMessageId(entry.event().getEventId());
+        }
+        properties.getHeaders().keySet().removeIf(header -> header.startsWith("x-death")
+                || header.startsWith("x-first-death") || header.startsWith("x-last-death"));
+        properties.setHeader("x-replayed", true);
+        properties.setHeader("x-dead-letter-reason", entry.reason());
+        AMQP.BasicProperties basicProperties =
+                propertiesConverter.fromMessageProperties(properties, StandardCharsets.UTF_8.name());
+        try {
+            long returnedBefore = returned.get();
+            channel.basicPublish(exchange, routingKey, true, basicProperties, message.getBody());
+            channel.waitForConfirmsOrDie(confirmTimeoutMillis);
+            if (returned.get() != returnedBefore) {
+                logger.warn("Message {} could not be routed with {} on '{}', it stays in the dead-letter queue",
+                        entry.messageId(), routingKey, exchange);
+                failed.incrementAndGet();
+                failedCounter.increment();
+                return;
+            }
+            channel.basicAck(deliveryTag, false);
+            replayed.incrementAndGet();
+            replayedCounter.increment();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            failedCounter.increment();
+            if (e instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Broker did not confirm replayed message " + entry.messageId(), e);
+        }
+    }
+
+    private static boolean matches(Entry entry, ReplayRequest request) {
+        return (request.reason() == null || request.reason().equals(entry.reason()))
+                && (request.queue() == null || request.queue().equals(entry.queue()))
+                && entry.queue() != null;
+    }
+
+    private static Group mergeGroups(Group a, Group b) {
+        return new Group(a.reason(), a.queue(), a.count() + b.count(),
+                min(a.oldest(), b.oldest()), max(a.newest(), b.newest()));
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a == null ? b : b == null ? a : a.isBefore(b) ? a : b;
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a == null ? b : b == null ? a : a.isAfter(b) ? a : b;
+    }
+
+    private Message toMessage(GetResponse response) {
+        MessageProperties properties = propertiesConverter.toMessageProperties(
+                response.getProps(), response.getEnvelope(), StandardCharsets.UTF_8.name());
+        return new Message(response.getBody(), properties);
+    }
+
+    /**
+     * 从第一条x-death记录取死信原因、来源队列和原路由键
+     */
+    private Entry toEntry(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        List<Map<String, ?>> deaths = properties.getXDeathHeader();
+        Map<String, ?> death = deaths == null || deaths.isEmpty() ? Map.of() : deaths.getFirst();
+        Object routingKeys = death.get("routing-keys");
+        String routingKey = routingKeys instanceof List<?> keys && !keys.isEmpty()
+                ? Objects.toString(keys.getFirst()) : null;
+        Object count = death.get("count");
+        Object time = death.get("time");
+        return new Entry(properties.getMessageId(),
+                Objects.toString(death.get("reason"), null),
+                Objects.toString(death.get("queue"), null),
+                routingKey,
+                count instanceof Number number ? number.longValue() : 0,
+                time instanceof Date date ? date.toInstant() : null,
+                properties.getContentType(),
+                decode(message));
+    }
+
+    private TodoEventMessage decode(Message message) {
+        try {
+            return messageConverter.fromMessage(message) instanceof TodoEventMessage event ? event : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private long refreshBacklog() {
+        withChannel(channel -> backlog.set(channel.queueDeclarePassive(DEAD_LETTER_QUEUE).getMessageCount()));
+        return backlog.get();
+    }
+
+    private void requireNoReplay() {
+        if (replayState == State.RUNNING) {
+            throw new IllegalArgumentException("Dead-letter replay in progress");
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChannelCallback {
+        void doWith(Channel channel) throws IOException;
+    }
+
+    /**
+     * 在独立连接的通道上执行，关闭通道时未确认的消息全部重新入队
+     */
+    private void withChannel(ChannelCallback callback) {
+        try (Connection connection = connectionFactory.getRabbitConnectionFactory().newConnection("todo-dlq-admin");
+             Channel channel = connection.createChannel()) {
+            callback.doWith(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Dead-letter queue access failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,22 +1,64 @@
 package com.zjgsu.todoservice.messaging;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zjgsu.todoservice.dto.TodoEventMessage;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import com.zjgsu.todoservice.journal.EventJournal;
+import com.zjgsu.todoservice.readmodel.TodoReadModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Todo事件消息生产者
  * 负责发送todo相关事件到RabbitMQ
+ * 在事务中调用时推迟到提交之后发送，消费者不会看到未提交或已回滚的变更
+ * 发送的每条事件同时写入本地事件日志，由BatchingEventPublisher攒批发布并跟踪broker确认
+ * eventType和userId同时放入消息头，消费者可通过headers交换机按头选择性订阅
  */
 @Component
 public class TodoEventProducer {
+    private static final Logger logger = LoggerFactory.getLogger(TodoEventProducer.class);
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private BatchingEventPublisher eventPublisher;
+
+    @Autowired
+    private TodoReadModel todoReadModel;
+
+    @Autowired
+    private EventJournal eventJournal;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter journalFailedCounter;
+    private Counter readModelFailedCounter;
 
     private static final String EXCHANGE = "todo.event.exchange";
 
+    public static final String EVENT_TYPE_HEADER = "eventType";
+    public static final String USER_ID_HEADER = "userId";
+
+    @PostConstruct
+    void registerMetrics() {
+        journalFailedCounter = Counter.builder("todo.journal.append.failed")
+                .description("Events that could not be written to the local event journal")
+                .register(meterRegistry);
+        readModelFailedCounter = Counter.builder("todo.read_model.events")
+                .tag("result", "failed")
+                .register(meterRegistry);
+    }
+
     /**
      * 发送todo创建事件
      */
@@ -53,12 +95,80 @@ public class TodoEventProducer {
         System.out.println("发送Todo状态切换事件: " + message);
     }
 
+    /**
+     * 发送todo归档事件
+     */
+    public void sendTodoArchivedEvent(TodoEventMessage message) {
+        message.setEventType("archived");
+        sendMessage("todo.archived", message);
+    }
+
+    /**
+     * 发送todo到期提醒事件
+     */
+    public void sendTodoReminderEvent(TodoEventMessage message) {
+        message.setEventType("reminder");
+        sendMessage("todo.reminder", message);
+    }
+
+    /**
+     * 重新发布日志中的历史事件
+     * 带x-replayed头，不再写入日志和更新本地读模型
+     */
+    public void republish(String routingKey, TodoEventMessage message) {
+        eventPublisher.publish(EXCHANGE, routingKey, message, routingHeaders(message, true));
+    }
+
+    /**
+     * 设置路由消息头
+     */
+    private MessagePostProcessor routingHeaders(TodoEventMessage message, boolean replayed) {
+        return amqpMessage -> {
+            // eventId同时作为AMQP message-id，消费者无需解码消息体即可去重
+            amqpMessage.getMessageProperties().setMessageId(message.getEventId());
+            amqpMessage.getMessageProperties().setHeader(EVENT_TYPE_HEADER, message.getEventType());
+            if (message.getUserId() != null) {
+                amqpMessage.getMessageProperties().setHeader(USER_ID_HEADER, message.getUserId());
+            }
+            if (replayed) {
+                amqpMessage.getMessageProperties().setHeader("x-replayed", true);
+            }
+            return amqpMessage;
+        };
+    }
+
     /**
      * 通用消息发送方法
      */
     private void sendMessage(String routingKey, TodoEventMessage message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(routingKey, message);
+                }
+            });
+        } else {
+            publish(routingKey, message);
+        }
+    }
+
+    private void publish(String routingKey, TodoEventMessage message) {
+        try {
+            eventJournal.append(routingKey, objectMapper.writeValueAsBytes(message), System.currentTimeMillis());
+        } catch (Exception e) {
+            journalFailedCounter.increment();
+            logger.error("Failed to append event {} to journal: {}", message.getEventId(), e.getMessage(), e);
+        }
+        // 先更新本实例的读模型，写入后立即查询列表即可看到变更
+        try {
+            todoReadModel.apply(message);
+        } catch (Exception e) {
+            readModelFailedCounter.increment();
+            logger.warn("Failed to apply event {} to read model: {}", message.getEventId(), e.getMessage(), e);
+        }
         try {
-            rabbitTemplate.convertAndSend(EXCHANGE, routingKey, message);
+            eventPublisher.publish(EXCHANGE, routingKey, message, routingHeaders(message, false));
         } catch (Exception e) {
             System.err.println("发送消息失败: " + e.getMessage());
             e.printStackTrace();
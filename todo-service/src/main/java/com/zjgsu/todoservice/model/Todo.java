@@ -1,7 +1,10 @@
 package com.zjgsu.todoservice.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
 
 /**
  * Todo实体类
@@ -31,6 +34,20 @@ public class Todo {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version; // 乐观锁版本号
+
+    @Column(name = "due_at")
+    private LocalDateTime dueAt; // 截止时间，到期时发送提醒
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(nullable = false)
+    private Boolean reminded = false; // 到期提醒是否已发送
+
+    @Column(name = "change_seq")
+    private Long changeSeq; // 所属用户的变更序号，供增量同步使用
+
     public Todo() {
         this.completed = false;
         this.createdAt = LocalDateTime.now();
@@ -115,4 +132,43 @@ public class Todo {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getDueAt() {
+        return dueAt;
+    }
+
+    /**
+     * 截止时间精确到秒，与DATETIME列一致；截止时间改变后重新提醒
+     */
+    public void setDueAt(LocalDateTime dueAt) {
+        LocalDateTime truncated = dueAt != null ? dueAt.truncatedTo(ChronoUnit.SECONDS) : null;
+        if (!Objects.equals(this.dueAt, truncated)) {
+            this.reminded = false;
+        }
+        this.dueAt = truncated;
+    }
+
+    public Boolean getReminded() {
+        return reminded;
+    }
+
+    public void setReminded(Boolean reminded) {
+        this.reminded = reminded;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
 }
@@ -0,0 +1,73 @@
+package com.zjgsu.todoservice.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * 归档的Todo
+ * 主键沿用原Todo的ID，payload为gzip压缩的Todo JSON
+ */
+@Entity
+@Table(name = "todo_archive")
+public class TodoArchive implements Persistable<Long> {
+    @Id
+    private Long id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] payload;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    @Transient
+    private boolean isNew;
+
+    public TodoArchive() {
+    }
+
+    public TodoArchive(Long id, Long userId, byte[] payload, LocalDateTime updatedAt) {
+        this.id = id;
+        this.userId = userId;
+        this.payload = payload;
+        this.updatedAt = updatedAt;
+        this.archivedAt = LocalDateTime.now();
+        this.isNew = true;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 新归档的记录直接INSERT，save时不需要先查询是否存在
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+}
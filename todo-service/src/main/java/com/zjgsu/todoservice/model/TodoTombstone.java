@@ -0,0 +1,58 @@
+package com.zjgsu.todoservice.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Todo删除墓碑
+ * 记录被删除或转移给其他用户的Todo，供增量同步通知客户端移除
+ */
+@Entity
+@Table(name = "todo_tombstones")
+public class TodoTombstone {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "todo_id", nullable = false)
+    private Long todoId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    public TodoTombstone() {
+    }
+
+    public TodoTombstone(Long todoId, Long userId, Long changeSeq) {
+        this.todoId = todoId;
+        this.userId = userId;
+        this.changeSeq = changeSeq;
+        this.deletedAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getTodoId() {
+        return todoId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+}
@@ -0,0 +1,234 @@
+package com.zjgsu.todoservice.readmodel;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import com.zjgsu.todoservice.dto.TodoSummary;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Todo读模型
+ * 按用户组织的反范式Todo列表，连同用户名一起存放在服务内嵌的H2中，
+ * 由todo事件流维护，列表查询无需访问MySQL和user-service
+ * 每行带有版本号，乱序或重复到达的事件不会覆盖更新的数据
+ */
+@Component
+public class TodoReadModel implements DisposableBean {
+
+    public enum State {
+        EMPTY, REBUILDING, READY
+    }
+
+    private static final RowMapper<TodoSummary> SUMMARY_MAPPER = (rs, rowNum) -> new TodoSummary(
+            rs.getLong("id"),
+            rs.getString("title"),
+            rs.getBoolean("completed"),
+            rs.getObject("user_id", Long.class),
+            toLocalDateTime(rs.getTimestamp("updated_at")),
+            rs.getLong("version"));
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private volatile State state = State.EMPTY;
+
+    public TodoReadModel(@Value("${app.read-model.url:jdbc:h2:mem:todo_read_model;DB_CLOSE_DELAY=-1}") String url) {
+        // 内嵌库不注册为Bean，避免影响主数据源的自动配置
+        this.dataSource = new HikariDataSource();
+        dataSource.setPoolName("read-model");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(8);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        createSchema();
+    }
+
+    private void createSchema() {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS read_todos (
+                  id BIGINT PRIMARY KEY,
+                  user_id BIGINT,
+                  title VARCHAR(200),
+                  completed BOOLEAN,
+                  updated_at TIMESTAMP,
+                  version BIGINT NOT NULL,
+                  deleted BOOLEAN NOT NULL DEFAULT FALSE,
+                  deleted_at TIMESTAMP
+                )""");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_read_todos_user ON read_todos (user_id, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_read_todos_deleted_at ON read_todos (deleted_at)");
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS read_users (
+                  user_id BIGINT PRIMARY KEY,
+                  username VARCHAR(50)
+                )""");
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 读模型是否可以对外提供查询，重建期间查询应回退到数据库
+     */
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    /**
+     * 查询用户的Todo列表，与数据库查询一样按id排列
+     */
+    public List<TodoSummary> findByUserId(Long userId) {
+        return jdbcTemplate.query("""
+                SELECT id, title, completed, user_id, updated_at, version FROM read_todos
+                WHERE user_id = ? AND deleted = FALSE ORDER BY id""", SUMMARY_MAPPER, userId);
+    }
+
+    public Optional<String> findUsername(Long userId) {
+        return jdbcTemplate.queryForList("SELECT username FROM read_users WHERE user_id = ?", String.class, userId)
+                .stream()
+                .filter(username -> username != null)
+                .findFirst();
+    }
+
+    public void saveUsername(Long userId, String username) {
+        jdbcTemplate.update("MERGE INTO read_users (user_id, username) KEY (user_id) VALUES (?, ?)", userId, username);
+    }
+
+    public long countTodos() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM read_todos WHERE deleted = FALSE", Long.class);
+    }
+
+    public long countUsers() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM read_users", Long.class);
+    }
+
+    /**
+     * 应用todo事件
+     * @return false表示事件比已有数据旧（乱序或重复投递），被忽略
+     */
+    public boolean apply(TodoEventMessage event) {
+        if (event.getTodoId() == null || event.getVersion() == null) {
+            return false;
+        }
+        // 归档的Todo不再出现在用户列表中，与删除相同处理
+        if ("deleted".equals(event.getEventType()) || "archived".equals(event.getEventType())) {
+            return markDeleted(event.getTodoId(), event.getUserId(), event.getVersion());
+        }
+        return upsert(new TodoSummary(event.getTodoId(), event.getTitle(), event.getCompleted(),
+                event.getUserId(), event.getUpdatedAt(), event.getVersion()));
+    }
+
+    /**
+     * 写入Todo，仅当版本号比已有数据新时覆盖
+     */
+    public boolean upsert(TodoSummary todo) {
+        Object[] updateArgs = {todo.userId(), todo.title(), todo.completed(), toTimestamp(todo.updatedAt()),
+                todo.version(), todo.id(), todo.version()};
+        String updateSql = """
+                UPDATE read_todos SET user_id = ?, title = ?, completed = ?, updated_at = ?, version = ?,
+                  deleted = FALSE, deleted_at = NULL
+                WHERE id = ? AND version < ?""";
+        if (jdbcTemplate.update(updateSql, updateArgs) > 0) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO read_todos (id, user_id, title, completed, updated_at, version)
+                    VALUES (?, ?, ?, ?, ?, ?)""",
+                    todo.id(), todo.userId(), todo.title(), todo.completed(), toTimestamp(todo.updatedAt()),
+                    todo.version());
+            return true;
+        } catch (DuplicateKeyException e) {
+            // 并发写入同一行，以版本号较新的为准
+            return jdbcTemplate.update(updateSql, updateArgs) > 0;
+        }
+    }
+
+    /**
+     * 删除Todo，保留墓碑行防止迟到的旧事件重新写入
+     */
+    private boolean markDeleted(Long id, Long userId, Long version) {
+        String updateSql = """
+                UPDATE read_todos SET deleted = TRUE, deleted_at = CURRENT_TIMESTAMP, version = ?
+                WHERE id = ? AND version <= ?""";
+        if (jdbcTemplate.update(updateSql, version, id, version) > 0) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO read_todos (id, user_id, version, deleted, deleted_at)
+                    VALUES (?, ?, ?, TRUE, CURRENT_TIMESTAMP)""", id, userId, version);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return jdbcTemplate.update(updateSql, version, id, version) > 0;
+        }
+    }
+
+    /**
+     * 用户已删除，移除该用户的Todo和用户名
+     * Todo行保留为墓碑，防止迟到的旧事件重新写入
+     */
+    public int evictUser(Long userId) {
+        jdbcTemplate.update("DELETE FROM read_users WHERE user_id = ?", userId);
+        return jdbcTemplate.update("""
+                UPDATE read_todos SET deleted = TRUE, deleted_at = CURRENT_TIMESTAMP
+                WHERE user_id = ? AND deleted = FALSE""", userId);
+    }
+
+    /**
+     * 清除删除时间早于截止时间的墓碑
+     * 墓碑只用于挡住迟到的旧事件，保留时间应覆盖事件的最大投递延迟
+     * @return 清除的行数
+     */
+    public int purgeTombstones(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM read_todos WHERE deleted = TRUE AND deleted_at < ?",
+                Timestamp.valueOf(cutoff));
+    }
+
+    /**
+     * 开始重建：清空数据，重建完成前查询回退到数据库
+     * 重建期间到达的事件照常应用，版本号保证快照中较旧的数据不会覆盖它们
+     */
+    void beginRebuild() {
+        state = State.REBUILDING;
+        jdbcTemplate.execute("DELETE FROM read_todos");
+        jdbcTemplate.execute("DELETE FROM read_users");
+    }
+
+    void completeRebuild() {
+        state = State.READY;
+    }
+
+    void failRebuild() {
+        state = State.EMPTY;
+    }
+
+    /**
+     * 事件流中断后数据可能缺失，停止对外提供查询直到重建完成
+     */
+    void invalidate() {
+        state = State.EMPTY;
+    }
+
+    @Override
+    public void destroy() {
+        dataSource.close();
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
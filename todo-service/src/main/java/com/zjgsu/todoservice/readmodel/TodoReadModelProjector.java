@@ -0,0 +1,304 @@
+package com.zjgsu.todoservice.readmodel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.todoservice.client.UserClient;
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import com.zjgsu.todoservice.dto.TodoSummary;
+import com.zjgsu.todoservice.dto.UserEventMessage;
+import com.zjgsu.todoservice.dto.UserSummary;
+import com.zjgsu.todoservice.dto.UserTodoList;
+import com.zjgsu.todoservice.service.TodoService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.AsyncConsumerRestartedEvent;
+import org.springframework.amqp.rabbit.listener.ListenerContainerConsumerFailedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 读模型投影
+ * 每个实例通过独占的匿名队列订阅全部todo事件并更新本地读模型，
+ * 启动时以及通过管理接口从数据库全量重建
+ * 匿名队列随消费者或连接的断开被删除，其间的事件会丢失，消费者失败时读模型标记为未就绪，恢复后重新重建
+ * 已删除Todo的墓碑超过保留时间后定期清除
+ */
+@Component
+public class TodoReadModelProjector {
+    private static final Logger logger = LoggerFactory.getLogger(TodoReadModelProjector.class);
+
+    private static final String LISTENER_ID = "todo-read-model";
+
+    /**
+     * 读模型状态
+     */
+    public record Status(TodoReadModel.State state, boolean rebuilding, long todos, long users,
+                         Instant lastEventAt, long lastLagMillis, Instant lastRebuildAt, long lastRebuildTodos) {
+    }
+
+    private final TodoReadModel todoReadModel;
+    private final TodoService todoService;
+    private final UserClient userClient;
+    private final ObjectMapper objectMapper;
+    private final int rebuildBatchSize;
+    private final Duration tombstoneRetention;
+    private final Duration tombstonePurgeInterval;
+
+    private final Timer lagTimer;
+    private final Counter appliedCounter;
+    private final Counter skippedCounter;
+    private final Counter failedCounter;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+    private volatile Instant lastEventAt;
+    private volatile long lastLagMillis;
+    private volatile Instant lastRebuildAt;
+    private volatile long lastRebuildTodos;
+
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("read-model-purger").daemon().factory());
+
+    public TodoReadModelProjector(TodoReadModel todoReadModel, TodoService todoService, UserClient userClient,
+                                  ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${app.read-model.rebuild-batch-size:1000}") int rebuildBatchSize,
+                                  @Value("${app.read-model.tombstone-retention:PT1H}") Duration tombstoneRetention,
+                                  @Value("${app.read-model.tombstone-purge-interval:PT10M}")
+                                  Duration tombstonePurgeInterval) {
+        this.todoReadModel = todoReadModel;
+        this.todoService = todoService;
+        this.userClient = userClient;
+        this.objectMapper = objectMapper;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.tombstoneRetention = tombstoneRetention;
+        this.tombstonePurgeInterval = tombstonePurgeInterval;
+
+        this.lagTimer = Timer.builder("todo.read_model.lag")
+                .description("Delay between a todo change and its application to the read model")
+                .register(meterRegistry);
+        this.appliedCounter = Counter.builder("todo.read_model.events")
+                .tag("result", "applied")
+                .register(meterRegistry);
+        this.skippedCounter = Counter.builder("todo.read_model.events")
+                .tag("result", "skipped")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("todo.read_model.events")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        Gauge.builder("todo.read_model.ready", todoReadModel, model -> model.isReady() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 消费todo事件
+     * 读模型可随时重建，处理失败不需要重新投递，使用自动确认
+     */
+    @RabbitListener(id = LISTENER_ID, queues = "#{todoReadModelQueue.name}", ackMode = "AUTO")
+    public void onTodoEvent(TodoEventMessage event) {
+        // 本实例产生的事件已在发送时应用，这里会因版本号相同被忽略
+        try {
+            if (todoReadModel.apply(event)) {
+                appliedCounter.increment();
+            } else {
+                skippedCounter.increment();
+            }
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            logger.warn("Failed to apply event {} to read model: {}", event.getEventId(), e.getMessage(), e);
+            return;
+        }
+        if (event.getUserId() != null && !"deleted".equals(event.getEventType())
+                && !"archived".equals(event.getEventType())) {
+            resolveUsername(event.getUserId());
+        }
+        if (event.getTimestamp() != null) {
+            Duration lag = Duration.between(event.getTimestamp(), LocalDateTime.now());
+            if (!lag.isNegative()) {
+                lagTimer.record(lag);
+                lastLagMillis = lag.toMillis();
+            }
+        }
+        lastEventAt = Instant.now();
+    }
+
+    /**
+     * 消费用户删除事件，清除本实例读模型中该用户的数据
+     * 按JSON字段解码，不依赖user-service的类型头
+     */
+    @RabbitListener(queues = "#{userEvictionQueue.name}", ackMode = "AUTO")
+    public void onUserDeleted(Message message) throws IOException {
+        UserEventMessage event = objectMapper.readValue(message.getBody(), UserEventMessage.class);
+        if (event.userId() != null) {
+            int evicted = todoReadModel.evictUser(event.userId());
+            logger.info("Evicted {} read model todos of deleted user {}", evicted, event.userId());
+        }
+    }
+
+    /**
+     * 读模型消费者失败，匿名队列可能已随之删除，查询回退到数据库
+     */
+    @EventListener
+    public void onConsumerFailed(ListenerContainerConsumerFailedEvent event) {
+        if (!isReadModelContainer(event.getSource())) {
+            return;
+        }
+        todoReadModel.invalidate();
+        if (event.isFatal()) {
+            logger.error("Read model consumer stopped, serving user todos from database: {}", event.getReason());
+        } else {
+            logger.warn("Read model consumer failed, serving user todos from database until rebuilt: {}",
+                    event.getReason());
+        }
+    }
+
+    /**
+     * 消费者重新订阅后重建，重新订阅之后的事件照常应用
+     */
+    @EventListener
+    public void onConsumerRestarted(AsyncConsumerRestartedEvent event) {
+        if (isReadModelContainer(event.getSource())) {
+            logger.info("Read model consumer restarted, rebuilding read model");
+            todoReadModel.invalidate();
+            rebuildRequested.set(true);
+            rebuild();
+        }
+    }
+
+    private static boolean isReadModelContainer(Object source) {
+        return source instanceof AbstractMessageListenerContainer container
+                && LISTENER_ID.equals(container.getListenerId());
+    }
+
+    /**
+     * 查询用户的Todo列表及用户名
+     * 读模型未就绪时回退到数据库
+     */
+    public UserTodoList getUserTodos(Long userId) {
+        List<TodoSummary> todos = todoReadModel.isReady()
+                ? todoReadModel.findByUserId(userId)
+                : todoService.findByUserId(userId, TodoSummary.class);
+        return new UserTodoList(userId, resolveUsername(userId), todos);
+    }
+
+    public Status getStatus() {
+        return new Status(todoReadModel.getState(), rebuilding.get(), todoReadModel.countTodos(),
+                todoReadModel.countUsers(), lastEventAt, lastLagMillis, lastRebuildAt, lastRebuildTodos);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+        purger.scheduleWithFixedDelay(this::purgeTombstones,
+                tombstonePurgeInterval.toMillis(), tombstonePurgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * 在后台从数据库全量重建读模型
+     * @return false表示已有重建任务在执行
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofVirtual().name("read-model-rebuild").start(this::doRebuild);
+        return true;
+    }
+
+    /**
+     * 消费者重启时可能已有重建在执行，其快照可能早于重新订阅，完成后再重建一次
+     */
+    private void doRebuild() {
+        try {
+            do {
+                rebuildRequested.set(false);
+                rebuildOnce();
+            } while (rebuildRequested.get());
+        } finally {
+            rebuilding.set(false);
+        }
+        if (rebuildRequested.get()) {
+            rebuild();
+        }
+    }
+
+    private void rebuildOnce() {
+        long startTime = System.currentTimeMillis();
+        try {
+            todoReadModel.beginRebuild();
+            long count = todoService.forEachTodo(rebuildBatchSize, page -> page.forEach(todoReadModel::upsert));
+            if (rebuildRequested.get()) {
+                return;
+            }
+            todoReadModel.completeRebuild();
+            lastRebuildAt = Instant.now();
+            lastRebuildTodos = count;
+            logger.info("Read model rebuilt with {} todos in {} ms", count, System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            logger.error("Failed to rebuild read model: {}", e.getMessage(), e);
+            todoReadModel.failRebuild();
+        }
+    }
+
+    private void purgeTombstones() {
+        try {
+            int purged = todoReadModel.purgeTombstones(LocalDateTime.now().minus(tombstoneRetention));
+            if (purged > 0) {
+                logger.info("Purged {} read model tombstones", purged);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to purge read model tombstones: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取用户名，读模型中没有时调用user-service并保存
+     * user-service降级时返回null，下次再尝试
+     */
+    private String resolveUsername(Long userId) {
+        return todoReadModel.findUsername(userId).orElseGet(() -> {
+            String username = fetchUsername(userId);
+            if (username != null) {
+                todoReadModel.saveUsername(userId, username);
+            }
+            return username;
+        });
+    }
+
+    private String fetchUsername(Long userId) {
+        try {
+            ApiResponse<UserSummary> response = userClient.getUserSummary(userId);
+            if (response == null || response.getCode() != 200 || response.getData() == null) {
+                return null;
+            }
+            return response.getData().username();
+        } catch (Exception e) {
+            logger.warn("Failed to fetch username for user {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+}
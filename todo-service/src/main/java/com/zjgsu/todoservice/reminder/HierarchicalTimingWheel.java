@@ -0,0 +1,200 @@
+package com.zjgsu.todoservice.reminder;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ * 每层有2^bits个槽，第0层每槽一个tick，第L层每槽2^(bits*L)个tick；到期较远的定时器放在高层，
+ * 时间推进到该槽时下沉到低层，第0层的槽到期即触发
+ * 槽内是双向链表，添加和取消都是O(1)，推进的开销只与经过的tick数和实际到期的定时器数有关
+ * 非线程安全，由调用方加锁
+ */
+public class HierarchicalTimingWheel<T> {
+
+    /**
+     * 定时器句柄，用于取消
+     */
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineTick;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public boolean isPending() {
+            return bucket != null;
+        }
+    }
+
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        /**
+         * 取出槽内全部定时器
+         */
+        Timeout<T> drain() {
+            Timeout<T> first = head;
+            head = null;
+            return first;
+        }
+    }
+
+    private final long tickMillis;
+    private final long originMillis;
+    private final int bits;
+    private final int mask;
+    private final Bucket<T>[][] levels;
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis   每个tick的毫秒数，也是定时精度
+     * @param bits         每层槽数的位数，每层2^bits个槽
+     * @param levelCount   层数，可调度的最远时间约为2^(bits*levelCount)个tick
+     * @param startMillis  时间轮的起始时间
+     */
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMillis, int bits, int levelCount, long startMillis) {
+        if (tickMillis <= 0 || bits <= 0 || levelCount <= 0 || (long) bits * levelCount > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel configuration");
+        }
+        this.tickMillis = tickMillis;
+        this.originMillis = startMillis;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.levels = new Bucket[levelCount][];
+        for (int level = 0; level < levelCount; level++) {
+            levels[level] = new Bucket[1 << bits];
+            for (int slot = 0; slot <= mask; slot++) {
+                levels[level][slot] = new Bucket<>();
+            }
+        }
+    }
+
+    /**
+     * 添加定时器，到期时间向上取整到tick，不会提前触发；已过期的在下一个tick触发
+     * @throws IllegalArgumentException 到期时间超出时间轮范围
+     */
+    public Timeout<T> schedule(long deadlineMillis, T payload) {
+        long deadlineTick = Math.max(Math.ceilDiv(deadlineMillis - originMillis, tickMillis), currentTick + 1);
+        int topShift = bits * (levels.length - 1);
+        if ((deadlineTick >>> topShift) - (currentTick >>> topShift) > mask) {
+            throw new IllegalArgumentException("Deadline " + deadlineMillis + " is beyond the timing wheel range");
+        }
+        Timeout<T> timeout = new Timeout<>(payload, deadlineTick);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * 取消定时器
+     * @return false表示已经触发或已取消
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket == null) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * 推进到指定时间，依次触发到期的定时器
+     */
+    public void advanceTo(long nowMillis, Consumer<T> expired) {
+        long targetTick = Math.floorDiv(nowMillis - originMillis, tickMillis);
+        if (size == 0 && targetTick > currentTick) {
+            // 没有定时器时直接跳到目标tick
+            currentTick = targetTick;
+            return;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            // 从高层到低层，把进入当前槽的定时器下沉
+            for (int level = levels.length - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                    Bucket<T> bucket = levels[level][(int) (currentTick >>> (bits * level)) & mask];
+                    for (Timeout<T> timeout = bucket.drain(); timeout != null; ) {
+                        Timeout<T> next = timeout.next;
+                        place(timeout);
+                        timeout = next;
+                    }
+                }
+            }
+            Bucket<T> bucket = levels[0][(int) currentTick & mask];
+            for (Timeout<T> timeout = bucket.drain(); timeout != null; ) {
+                Timeout<T> next = timeout.next;
+                timeout.bucket = null;
+                timeout.prev = null;
+                timeout.next = null;
+                size--;
+                expired.accept(timeout.payload);
+                timeout = next;
+            }
+            if (size == 0) {
+                currentTick = targetTick;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 当前tick对应的时间
+     */
+    public long currentMillis() {
+        return originMillis + currentTick * tickMillis;
+    }
+
+    /**
+     * 选择层：距当前tick在该层相差不足一圈的最低层，保证在槽被再次复用之前下沉
+     */
+    private void place(Timeout<T> timeout) {
+        for (int level = 0; level < levels.length; level++) {
+            int shift = bits * level;
+            if ((timeout.deadlineTick >>> shift) - (currentTick >>> shift) <= mask) {
+                levels[level][(int) (timeout.deadlineTick >>> shift) & mask].add(timeout);
+                return;
+            }
+        }
+        throw new IllegalStateException("Deadline tick " + timeout.deadlineTick + " out of range");
+    }
+}
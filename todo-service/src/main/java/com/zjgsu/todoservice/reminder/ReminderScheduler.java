@@ -0,0 +1,287 @@
+package com.zjgsu.todoservice.reminder;
+
+import com.zjgsu.todoservice.dto.TodoDue;
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import com.zjgsu.todoservice.messaging.TodoEventProducer;
+import com.zjgsu.todoservice.model.Todo;
+import com.zjgsu.todoservice.repository.TodoRepository;
+import com.zjgsu.todoservice.service.TodoChangeTracker;
+import com.zjgsu.todoservice.service.TodoService;
+import com.zjgsu.todoservice.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Todo到期提醒调度
+ * 只把未来lookahead时间内到期的Todo按due_at索引分片加载到内存中的分层时间轮，不轮询整表
+ * 加载之后截止时间的变化通过每个实例独占的事件队列跟踪
+ * 每个实例都会调度同一批提醒，到期时通过条件UPDATE认领，只有一个实例发送todo.reminder事件
+ */
+@Service
+public class ReminderScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ReminderScheduler.class);
+
+    // 每层256个槽，3层，1秒一个tick时可调度约194天
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_LEVELS = 3;
+
+    private static final Set<String> REMOVING_EVENTS = Set.of("deleted", "archived", "reminder");
+
+    private record Reminder(Long todoId, LocalDateTime dueAt) {
+    }
+
+    private enum Outcome {
+        SENT, STALE, RESCHEDULED
+    }
+
+    private final TodoRepository todoRepository;
+    private final TodoEventProducer todoEventProducer;
+    private final TodoChangeTracker todoChangeTracker;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final boolean enabled;
+    private final Duration tick;
+    private final Duration lookahead;
+    private final Duration slice;
+    private final Duration catchUp;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // 时间轮、按Todo索引的定时器和已加载的时间窗口由同一把锁保护
+    private final HierarchicalTimingWheel<Reminder> wheel;
+    private final Map<Long, HierarchicalTimingWheel.Timeout<Reminder>> timers = new HashMap<>();
+    private LocalDateTime loadedUntil;
+
+    private final Counter sentCounter;
+    private final Counter staleCounter;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+            Thread.ofPlatform().name("todo-reminder-", 0).daemon().factory());
+
+    public ReminderScheduler(TodoRepository todoRepository, TodoEventProducer todoEventProducer,
+                             TodoChangeTracker todoChangeTracker,
+                             ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.reminder.enabled:true}") boolean enabled,
+                             @Value("${app.reminder.tick:PT1S}") Duration tick,
+                             @Value("${app.reminder.lookahead:PT10M}") Duration lookahead,
+                             @Value("${app.reminder.slice:PT1M}") Duration slice,
+                             @Value("${app.reminder.catch-up:PT1H}") Duration catchUp) {
+        this.todoRepository = todoRepository;
+        this.todoEventProducer = todoEventProducer;
+        this.todoChangeTracker = todoChangeTracker;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.tick = tick;
+        this.lookahead = lookahead;
+        this.slice = slice;
+        this.catchUp = catchUp;
+        this.wheel = new HierarchicalTimingWheel<>(tick.toMillis(), WHEEL_BITS, WHEEL_LEVELS,
+                System.currentTimeMillis());
+
+        this.sentCounter = Counter.builder("todo.reminders").tag("result", "sent").register(meterRegistry);
+        this.staleCounter = Counter.builder("todo.reminders").tag("result", "stale").register(meterRegistry);
+        Gauge.builder("todo.reminders.pending", this, ReminderScheduler::getPendingCount).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (wheel) {
+            // 从catch-up之前开始加载，补发停机期间错过的提醒，已发送的由reminded标记排除
+            loadedUntil = LocalDateTime.now().minus(catchUp);
+        }
+        scheduler.scheduleAtFixedRate(this::tickSafely, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::loadSafely, 0, slice.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 消费todo事件，跟踪已加载窗口内截止时间的变化
+     * 调度允许滞后，到期时会重新校验，使用自动确认
+     */
+    @RabbitListener(queues = "#{todoReminderQueue.name}", ackMode = "AUTO")
+    public void onTodoEvent(TodoEventMessage event) {
+        if (!enabled || event.getTodoId() == null) {
+            return;
+        }
+        if (REMOVING_EVENTS.contains(event.getEventType()) || Boolean.TRUE.equals(event.getCompleted())
+                || event.getDueAt() == null) {
+            cancel(event.getTodoId());
+        } else {
+            track(event.getTodoId(), event.getDueAt());
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    /**
+     * 截止时间在lookahead之内时直接调度，之后的由窗口加载负责
+     * 按当前时间而不是loadedUntil判断，避免与正在加载的时间段之间出现遗漏
+     */
+    private void track(Long todoId, LocalDateTime dueAt) {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (wheel) {
+            if (loadedUntil != null && dueAt.isBefore(now.plus(lookahead)) && dueAt.isAfter(now.minus(catchUp))) {
+                schedule(todoId, dueAt);
+            } else {
+                cancel(todoId);
+            }
+        }
+    }
+
+    private void schedule(Long todoId, LocalDateTime dueAt) {
+        synchronized (wheel) {
+            HierarchicalTimingWheel.Timeout<Reminder> previous = timers.get(todoId);
+            if (previous != null) {
+                if (previous.getPayload().dueAt().equals(dueAt) && previous.isPending()) {
+                    return;
+                }
+                wheel.cancel(previous);
+            }
+            Reminder reminder = new Reminder(todoId, dueAt);
+            timers.put(todoId, wheel.schedule(dueAt.atZone(zone).toInstant().toEpochMilli(), reminder));
+        }
+    }
+
+    private void cancel(Long todoId) {
+        synchronized (wheel) {
+            HierarchicalTimingWheel.Timeout<Reminder> timeout = timers.remove(todoId);
+            if (timeout != null) {
+                wheel.cancel(timeout);
+            }
+        }
+    }
+
+    /**
+     * 把窗口推进到now + lookahead，按slice分段查询，每段在各分片上走due_at索引范围扫描
+     */
+    private void loadWindow() {
+        LocalDateTime until = LocalDateTime.now().plus(lookahead);
+        while (true) {
+            LocalDateTime from;
+            synchronized (wheel) {
+                from = loadedUntil;
+            }
+            if (!from.isBefore(until)) {
+                return;
+            }
+            LocalDateTime to = from.plus(slice).isBefore(until) ? from.plus(slice) : until;
+            List<TodoDue> due = shardRouter.scatter(() -> readOnlyTransactionTemplate.execute(status ->
+                    todoRepository.findByDueAtGreaterThanEqualAndDueAtLessThan(from, to, TodoDue.class)));
+            synchronized (wheel) {
+                for (TodoDue todo : due) {
+                    if (!Boolean.TRUE.equals(todo.completed()) && !Boolean.TRUE.equals(todo.reminded())) {
+                        schedule(todo.id(), todo.dueAt());
+                    }
+                }
+                loadedUntil = to;
+            }
+        }
+    }
+
+    private void loadSafely() {
+        try {
+            loadWindow();
+        } catch (RuntimeException e) {
+            logger.error("Failed to load due todos: {}", e.getMessage(), e);
+        }
+    }
+
+    private void tickSafely() {
+        List<Reminder> expired = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advanceTo(System.currentTimeMillis(), reminder -> {
+                HierarchicalTimingWheel.Timeout<Reminder> current = timers.get(reminder.todoId());
+                if (current != null && current.getPayload() == reminder) {
+                    timers.remove(reminder.todoId());
+                }
+                expired.add(reminder);
+            });
+        }
+        for (Reminder reminder : expired) {
+            try {
+                fire(reminder);
+            } catch (RuntimeException e) {
+                logger.error("Failed to send reminder for todo {}: {}", reminder.todoId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 认领并发送提醒；截止时间已被修改时按数据库中的最新值重新调度
+     * 与其他写事务一样先锁用户的变更计数器再更新Todo行，认领失败时回滚，不留下未使用的序号
+     */
+    private void fire(Reminder reminder) {
+        Outcome outcome = shardRouter.onOwnerOf(reminder.todoId(), () -> Optional.ofNullable(
+                transactionTemplate.execute(status -> {
+                    Optional<Todo> candidate = todoRepository.findById(reminder.todoId())
+                            .filter(todo -> reminder.dueAt().equals(todo.getDueAt())
+                                    && !Boolean.TRUE.equals(todo.getCompleted())
+                                    && !Boolean.TRUE.equals(todo.getReminded()));
+                    if (candidate.isPresent()) {
+                        Long changeSeq = todoChangeTracker.nextChangeSeq(candidate.get().getUserId());
+                        if (todoRepository.claimReminder(reminder.todoId(), reminder.dueAt(), changeSeq) == 1) {
+                            Optional<Todo> todo = todoRepository.findById(reminder.todoId());
+                            todo.ifPresent(claimed -> todoEventProducer.sendTodoReminderEvent(
+                                    TodoService.toEventMessage(claimed, "reminder")));
+                            return Outcome.SENT;
+                        }
+                        // 其他实例已认领或Todo刚被修改
+                        status.setRollbackOnly();
+                        return Outcome.STALE;
+                    }
+                    return todoRepository.findById(reminder.todoId())
+                            .filter(todo -> todo.getDueAt() != null && !todo.getDueAt().equals(reminder.dueAt())
+                                    && !Boolean.TRUE.equals(todo.getCompleted())
+                                    && !Boolean.TRUE.equals(todo.getReminded()))
+                            .map(todo -> {
+                                track(todo.getId(), todo.getDueAt());
+                                return Outcome.RESCHEDULED;
+                            })
+                            .orElse(Outcome.STALE);
+                }))).orElse(Outcome.STALE);
+        if (outcome == Outcome.SENT) {
+            sentCounter.increment();
+        } else if (outcome == Outcome.STALE) {
+            staleCounter.increment();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.zjgsu.todoservice.repository;
+
+import com.zjgsu.todoservice.model.TodoArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 归档Todo数据访问层
+ */
+@Repository
+public interface TodoArchiveRepository extends JpaRepository<TodoArchive, Long> {
+    /**
+     * 根据用户ID查找归档的Todo
+     */
+    List<TodoArchive> findByUserId(Long userId);
+
+    /**
+     * 删除用户的一批归档Todo
+     * @return 删除的行数，小于limit表示已删完
+     */
+    @Modifying
+    @Query(value = "DELETE FROM todo_archive WHERE user_id = :userId LIMIT :limit", nativeQuery = true)
+    int deleteBatchByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+}
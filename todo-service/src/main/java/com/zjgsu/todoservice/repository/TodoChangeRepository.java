@@ -0,0 +1,72 @@
+package com.zjgsu.todoservice.repository;
+
+import com.zjgsu.todoservice.model.TodoTombstone;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Todo变更跟踪数据访问层
+ * 维护按用户递增的变更序号和删除墓碑
+ */
+@Repository
+public interface TodoChangeRepository extends JpaRepository<TodoTombstone, Long> {
+    /**
+     * 递增用户的变更序号，并持有计数器行锁直至事务结束
+     */
+    @Modifying
+    @Query(value = "INSERT INTO todo_change_seq (user_id, seq) VALUES (:userId, 1) "
+            + "ON DUPLICATE KEY UPDATE seq = seq + 1", nativeQuery = true)
+    void incrementChangeSeq(@Param("userId") Long userId);
+
+    /**
+     * 查询用户当前的变更序号
+     */
+    @Query(value = "SELECT seq FROM todo_change_seq WHERE user_id = :userId", nativeQuery = true)
+    Long findChangeSeq(@Param("userId") Long userId);
+
+    /**
+     * 查询用户已清除墓碑的最大序号，无计数器时返回null
+     */
+    @Query(value = "SELECT purged_seq FROM todo_change_seq WHERE user_id = :userId", nativeQuery = true)
+    Long findPurgedSeq(@Param("userId") Long userId);
+
+    /**
+     * 提高用户已清除墓碑的最大序号，持有计数器行锁直至事务结束
+     */
+    @Modifying
+    @Query(value = "UPDATE todo_change_seq SET purged_seq = GREATEST(purged_seq, :seq) WHERE user_id = :userId",
+            nativeQuery = true)
+    void raisePurgedSeq(@Param("userId") Long userId, @Param("seq") Long seq);
+
+    /**
+     * 删除用户的变更序号计数器
+     */
+    @Modifying
+    @Query(value = "DELETE FROM todo_change_seq WHERE user_id = :userId", nativeQuery = true)
+    void deleteChangeSeq(@Param("userId") Long userId);
+
+    /**
+     * 删除用户的一批墓碑
+     * @return 删除的行数，小于limit表示已删完
+     */
+    @Modifying
+    @Query(value = "DELETE FROM todo_tombstones WHERE user_id = :userId LIMIT :limit", nativeQuery = true)
+    int deleteTombstoneBatchByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+
+    /**
+     * 查询删除时间早于cutoff的墓碑，按删除时间升序
+     */
+    List<TodoTombstone> findByDeletedAtBeforeOrderByDeletedAtAsc(LocalDateTime cutoff, Limit limit);
+
+    /**
+     * 查询序号之后的墓碑，按序号升序
+     */
+    List<TodoTombstone> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(Long userId, Long changeSeq, Limit limit);
+}
@@ -1,9 +1,14 @@
 package com.zjgsu.todoservice.repository;
 
 import com.zjgsu.todoservice.model.Todo;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -16,6 +21,26 @@ public interface TodoRepository extends JpaRepository<Todo, Long> {
      */
     List<Todo> findByUserId(Long userId);
 
+    /**
+     * 根据用户ID查找Todo，只查询投影类型包含的列
+     */
+    <T> List<T> findByUserId(Long userId, Class<T> type);
+
+    /**
+     * 查找所有Todo，只查询投影类型包含的列
+     */
+    <T> List<T> findAllProjectedBy(Class<T> type);
+
+    /**
+     * 按主键分页遍历Todo，只查询投影类型包含的列
+     */
+    <T> List<T> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit, Class<T> type);
+
+    /**
+     * 查找用户变更序号之后的Todo，按序号升序，供增量同步使用
+     */
+    List<Todo> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(Long userId, Long changeSeq, Limit limit);
+
     /**
      * 根据用户ID和完成状态查找Todo
      */
@@ -26,6 +51,47 @@ public interface TodoRepository extends JpaRepository<Todo, Long> {
      */
     List<Todo> findByCompleted(Boolean completed);
 
+    /**
+     * 查找更新时间早于指定时间的Todo，归档时按批读取
+     */
+    List<Todo> findByCompletedAndUpdatedAtLessThan(Boolean completed, LocalDateTime updatedAt, Limit limit);
+
+    /**
+     * 查找截止时间在[from, to)内的Todo，提醒调度按时间窗口加载，只查询投影类型包含的列
+     */
+    <T> List<T> findByDueAtGreaterThanEqualAndDueAtLessThan(LocalDateTime from, LocalDateTime to, Class<T> type);
+
+    /**
+     * 认领到期提醒：只有截止时间未变且尚未提醒的未完成Todo会被更新，多个实例中只有一个成功
+     * 同时递增版本号，持有旧版本的并发修改按乐观锁冲突处理，不会覆盖reminded；
+     * 变更序号一并更新，增量同步能拉取到新版本。changeSeq为null(未关联用户)时保持原值
+     * 执行后清空持久化上下文，之后读取的是认领后的数据
+     * @return 1表示认领成功
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE todos SET reminded = TRUE, version = version + 1, "
+            + "change_seq = COALESCE(:changeSeq, change_seq) WHERE id = :id AND due_at = :dueAt "
+            + "AND reminded = FALSE AND completed = FALSE", nativeQuery = true)
+    int claimReminder(@Param("id") Long id, @Param("dueAt") LocalDateTime dueAt, @Param("changeSeq") Long changeSeq);
+
+    /**
+     * 根据用户ID和完成状态查找Todo，只查询投影类型包含的列
+     */
+    <T> List<T> findByUserIdAndCompleted(Long userId, Boolean completed, Class<T> type);
+
+    /**
+     * 根据完成状态查找Todo，只查询投影类型包含的列
+     */
+    <T> List<T> findByCompleted(Boolean completed, Class<T> type);
+
+    /**
+     * 删除用户的一批Todo，用户删除后分批清理
+     * @return 删除的行数，小于limit表示已删完
+     */
+    @Modifying
+    @Query(value = "DELETE FROM todos WHERE user_id = :userId LIMIT :limit", nativeQuery = true)
+    int deleteBatchByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+
     /**
      * 根据标题模糊查询
      */
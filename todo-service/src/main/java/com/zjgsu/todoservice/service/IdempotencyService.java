@@ -0,0 +1,259 @@
+package com.zjgsu.todoservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.exception.IdempotencyKeyException;
+import com.zjgsu.todoservice.model.IdempotencyRecord;
+import com.zjgsu.todoservice.repository.IdempotencyRecordRepository;
+import com.zjgsu.todoservice.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key支持
+ * 带key的写请求与一条幂等记录在同一事务中提交，记录保存原始的ApiResponse
+ * 重复请求直接重放保存的响应，不再调用用户校验、写库和发送事件
+ * 并发的重复请求在主键上等待首个请求的事务结束：首个请求提交则重放，回滚则由重复请求正常执行
+ * 记录存放在作用域用户所在的分片，超过TTL后定期删除；最近完成的响应同时缓存在本地
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private record Stored(String requestHash, int statusCode, String responseBody, LocalDateTime expiresAt) {
+    }
+
+    private final IdempotencyRecordRepository repository;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration ttl;
+    private final int cacheSize;
+    private final Duration purgeInterval;
+    private final int purgeBatchSize;
+
+    private final Counter executedCounter;
+    private final Counter replayedCounter;
+    // 已完成的响应，按访问顺序淘汰
+    private final Map<String, Stored> cache;
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("idempotency-purger").daemon().factory());
+
+    public IdempotencyService(IdempotencyRecordRepository repository, ShardRouter shardRouter,
+                              ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.idempotency.ttl:P1D}") Duration ttl,
+                              @Value("${app.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${app.idempotency.purge-interval:PT10M}") Duration purgeInterval,
+                              @Value("${app.idempotency.purge-batch-size:1000}") int purgeBatchSize) {
+        this.repository = repository;
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.cacheSize = cacheSize;
+        this.purgeInterval = purgeInterval;
+        this.purgeBatchSize = purgeBatchSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stored> eldest) {
+                return size() > IdempotencyService.this.cacheSize;
+            }
+        };
+
+        this.executedCounter = Counter.builder("idempotency.requests").tag("result", "executed").register(meterRegistry);
+        this.replayedCounter = Counter.builder("idempotency.requests").tag("result", "replayed").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        purger.scheduleWithFixedDelay(this::purgeSafely,
+                purgeInterval.toMillis(), purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * 按Idempotency-Key执行写操作
+     * @param operation 操作名，不同接口的相同key互不影响
+     * @param userId    作用域用户，决定记录所在分片
+     * @param key       客户端提供的key，为null时直接执行
+     * @param request   请求中决定结果的字段，同一key的请求内容不同时返回422
+     * @param dataType  响应中data的类型，重放时据此反序列化
+     */
+    public <T> ResponseEntity<ApiResponse<T>> execute(String operation, Long userId, String key, Object request,
+                                                      Class<T> dataType,
+                                                      Supplier<ResponseEntity<ApiResponse<T>>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+        String id = sha256(operation + "\n" + userId + "\n" + key);
+        String requestHash = sha256(toJson(request));
+
+        Optional<Stored> cached = cached(id);
+        if (cached.isPresent()) {
+            return replay(cached.get(), requestHash, dataType);
+        }
+        return shardRouter.onUser(userId, () -> {
+            Optional<Stored> stored = load(id);
+            if (stored.isPresent()) {
+                return replay(stored.get(), requestHash, dataType);
+            }
+            IdempotencyRecord record = new IdempotencyRecord(id, requestHash, LocalDateTime.now().plus(ttl));
+            try {
+                ResponseEntity<ApiResponse<T>> response = transactionTemplate.execute(status -> {
+                    // 先插入记录占住主键，并发的重复请求在这里等待本事务结束
+                    repository.saveAndFlush(record);
+                    ResponseEntity<ApiResponse<T>> result = action.get();
+                    // 记录已受管理，响应随事务提交时一起UPDATE
+                    record.complete(result.getStatusCode().value(), toJson(result.getBody()));
+                    return result;
+                });
+                executedCounter.increment();
+                synchronized (cache) {
+                    cache.put(id, new Stored(requestHash, record.getStatusCode(), record.getResponseBody(),
+                            record.getExpiresAt()));
+                }
+                return response;
+            } catch (DataIntegrityViolationException e) {
+                // 并发的重复请求已提交，重放它的响应
+                Stored winner = load(id).orElseThrow(() -> e);
+                return replay(winner, requestHash, dataType);
+            }
+        });
+    }
+
+    private Optional<Stored> cached(String id) {
+        synchronized (cache) {
+            Stored stored = cache.get(id);
+            if (stored != null && stored.expiresAt().isBefore(LocalDateTime.now())) {
+                cache.remove(id);
+                return Optional.empty();
+            }
+            return Optional.ofNullable(stored);
+        }
+    }
+
+    /**
+     * 读取未过期的记录；已过期但尚未删除的记录当场删除，使该key可以重新使用
+     * 使用读写事务在主库读取，刚提交的记录不受副本延迟影响
+     */
+    private Optional<Stored> load(String id) {
+        Optional<IdempotencyRecord> record = transactionTemplate.execute(status -> repository.findById(id));
+        if (record.isEmpty()) {
+            return Optional.empty();
+        }
+        if (record.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+            transactionTemplate.executeWithoutResult(status -> repository.deleteById(id));
+            return Optional.empty();
+        }
+        Stored stored = new Stored(record.get().getRequestHash(), record.get().getStatusCode(),
+                record.get().getResponseBody(), record.get().getExpiresAt());
+        synchronized (cache) {
+            cache.put(id, stored);
+        }
+        return Optional.of(stored);
+    }
+
+    private <T> ResponseEntity<ApiResponse<T>> replay(Stored stored, String requestHash, Class<T> dataType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyException(HEADER + " was already used for a different request");
+        }
+        JavaType type = objectMapper.getTypeFactory().constructParametricType(ApiResponse.class, dataType);
+        ApiResponse<T> body;
+        try {
+            body = objectMapper.readValue(stored.responseBody(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response is not readable", e);
+        }
+        replayedCounter.increment();
+        return ResponseEntity.status(stored.statusCode())
+                .header(REPLAYED_HEADER, "true")
+                .body(body);
+    }
+
+    /**
+     * 各分片分批删除过期记录
+     */
+    public long purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        return shardRouter.scatter(() -> {
+            long count = 0;
+            while (true) {
+                Integer deleted = transactionTemplate.execute(status -> repository.deleteExpiredBatch(now, purgeBatchSize));
+                count += deleted;
+                if (deleted < purgeBatchSize) {
+                    return List.of(count);
+                }
+            }
+        }).stream().mapToLong(Long::longValue).sum();
+    }
+
+    private void purgeSafely() {
+        try {
+            long purged = purgeExpired();
+            if (purged > 0) {
+                logger.info("Purged {} expired idempotency keys", purged);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to purge idempotency keys: {}", e.getMessage(), e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body is not serializable", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.zjgsu.todoservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.todoservice.dto.TodoDetail;
+import com.zjgsu.todoservice.dto.TodoSummary;
+import com.zjgsu.todoservice.messaging.TodoEventProducer;
+import com.zjgsu.todoservice.model.Todo;
+import com.zjgsu.todoservice.model.TodoArchive;
+import com.zjgsu.todoservice.repository.TodoArchiveRepository;
+import com.zjgsu.todoservice.repository.TodoRepository;
+import com.zjgsu.todoservice.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Todo归档服务
+ * 后台定期把完成超过指定天数的Todo分批移入todo_archive表(gzip压缩的JSON)，使todos表只保留活跃数据
+ * 归档的Todo离开用户列表：写入墓碑并发送archived事件，只能通过includeArchived显式查询
+ */
+@Service
+public class TodoArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(TodoArchiveService.class);
+
+    private final TodoRepository todoRepository;
+    private final TodoArchiveRepository todoArchiveRepository;
+    private final TodoChangeTracker changeTracker;
+    private final TodoEventProducer todoEventProducer;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final boolean enabled;
+    private final Duration archiveAfter;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration interval;
+
+    private final Counter archivedCounter;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("todo-archiver").daemon().factory());
+
+    public TodoArchiveService(TodoRepository todoRepository, TodoArchiveRepository todoArchiveRepository,
+                              TodoChangeTracker changeTracker, TodoEventProducer todoEventProducer,
+                              ShardRouter shardRouter, ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                              @Value("${app.archive.enabled:true}") boolean enabled,
+                              @Value("${app.archive.after:P30D}") Duration archiveAfter,
+                              @Value("${app.archive.batch-size:500}") int batchSize,
+                              @Value("${app.archive.max-batches-per-run:100}") int maxBatchesPerRun,
+                              @Value("${app.archive.interval:PT1H}") Duration interval) {
+        this.todoRepository = todoRepository;
+        this.todoArchiveRepository = todoArchiveRepository;
+        this.changeTracker = changeTracker;
+        this.todoEventProducer = todoEventProducer;
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.archiveAfter = archiveAfter;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.interval = interval;
+        this.archivedCounter = Counter.builder("todo.archive.archived").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::runSafely,
+                    interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void runSafely() {
+        try {
+            archiveCompleted();
+        } catch (RuntimeException e) {
+            logger.error("Todo archiving failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 归档updated_at早于截止时间的已完成Todo，各分片并行，每个分片最多处理max-batches-per-run批
+     * @return 本次归档的数量
+     */
+    public long archiveCompleted() {
+        if (shardRouter.getTargetRing() != null) {
+            // 重新分片期间行在分片间复制，暂停归档避免删除正在复制的数据
+            logger.info("Skipping todo archiving while resharding is in progress");
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(archiveAfter);
+        long archived = shardRouter.scatter(() -> {
+            long count = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                int moved;
+                try {
+                    moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                } catch (OptimisticLockingFailureException e) {
+                    // 批内有Todo被并发修改，整批回滚，下次运行重新选择
+                    logger.debug("Archive batch conflicted with a concurrent update: {}", e.getMessage());
+                    break;
+                }
+                count += moved;
+                if (moved < batchSize) {
+                    break;
+                }
+            }
+            return List.of(count);
+        }).stream().mapToLong(Long::longValue).sum();
+        if (archived > 0) {
+            logger.info("Archived {} todos completed before {}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Todo> todos = todoRepository.findByCompletedAndUpdatedAtLessThan(true, cutoff, Limit.of(batchSize));
+        if (todos.isEmpty()) {
+            return 0;
+        }
+        for (Todo todo : todos) {
+            todoArchiveRepository.save(new TodoArchive(todo.getId(), todo.getUserId(), compress(todo),
+                    todo.getUpdatedAt()));
+        }
+        // 按实体删除，DELETE语句带版本条件，批内任一Todo被并发修改时整批回滚
+        todoRepository.deleteAll(todos);
+        todoRepository.flush();
+        // 计数器行按userId升序加锁，与转移等同时锁定多个用户的事务保持一致的加锁顺序
+        List<Todo> byUser = todos.stream()
+                .sorted(Comparator.comparing(Todo::getUserId, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+        for (Todo todo : byUser) {
+            changeTracker.addTombstone(todo);
+            todoEventProducer.sendTodoArchivedEvent(TodoService.toEventMessage(todo, "archived"));
+        }
+        archivedCounter.increment(todos.size());
+        return todos.size();
+    }
+
+    /**
+     * 查询用户已归档的Todo，按视图类型返回
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> findByUserId(Long userId, Class<T> view) {
+        List<TodoArchive> archives = shardRouter.onUser(userId,
+                () -> readOnlyTransactionTemplate.execute(status -> todoArchiveRepository.findByUserId(userId)));
+        return archives.stream()
+                .map(archive -> (T) toView(decompress(archive.getPayload()), view))
+                .toList();
+    }
+
+    private static Object toView(Todo todo, Class<?> view) {
+        if (view == TodoSummary.class) {
+            return new TodoSummary(todo.getId(), todo.getTitle(), todo.getCompleted(), todo.getUserId(),
+                    todo.getUpdatedAt(), todo.getVersion());
+        }
+        if (view == TodoDetail.class) {
+            return new TodoDetail(todo.getId(), todo.getTitle(), todo.getDescription(), todo.getCompleted(),
+                    todo.getUserId(), todo.getCreatedAt(), todo.getUpdatedAt(), todo.getVersion(),
+                    todo.getDueAt());
+        }
+        return todo;
+    }
+
+    private byte[] compress(Todo todo) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(out, todo);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress todo " + todo.getId(), e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private Todo decompress(byte[] payload) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(in, Todo.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decompress archived todo", e);
+        }
+    }
+}
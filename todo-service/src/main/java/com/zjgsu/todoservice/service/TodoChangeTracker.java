@@ -0,0 +1,56 @@
+package com.zjgsu.todoservice.service;
+
+import com.zjgsu.todoservice.model.Todo;
+import com.zjgsu.todoservice.model.TodoTombstone;
+import com.zjgsu.todoservice.repository.TodoChangeRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * 变更跟踪
+ * 为写操作分配所属用户的变更序号，为离开用户列表的Todo写入墓碑，需在写事务内调用
+ */
+@Component
+public class TodoChangeTracker {
+
+    private final TodoChangeRepository todoChangeRepository;
+
+    public TodoChangeTracker(TodoChangeRepository todoChangeRepository) {
+        this.todoChangeRepository = todoChangeRepository;
+    }
+
+    /**
+     * 分配用户的下一个变更序号，计数器行锁保证同一用户的变更按序号顺序提交
+     * 未关联用户的Todo不参与增量同步
+     */
+    public Long nextChangeSeq(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        todoChangeRepository.incrementChangeSeq(userId);
+        return todoChangeRepository.findChangeSeq(userId);
+    }
+
+    /**
+     * 将Todo转移给其他用户：为原用户写入墓碑，并返回新用户的变更序号
+     * 两个用户的计数器行按userId升序加锁，相向转移的事务不会互相等待
+     */
+    public Long transfer(Todo todo, Long toUserId) {
+        Long fromUserId = todo.getUserId();
+        if (fromUserId == null || toUserId == null || fromUserId < toUserId) {
+            addTombstone(todo);
+            return nextChangeSeq(toUserId);
+        }
+        Long seq = nextChangeSeq(toUserId);
+        addTombstone(todo);
+        return seq;
+    }
+
+    /**
+     * 记录Todo从用户列表中移除(删除、转移或归档)
+     */
+    public void addTombstone(Todo todo) {
+        if (todo.getUserId() != null) {
+            todoChangeRepository.save(new TodoTombstone(todo.getId(), todo.getUserId(), nextChangeSeq(todo.getUserId())));
+        }
+    }
+}
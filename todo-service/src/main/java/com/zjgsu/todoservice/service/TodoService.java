@@ -1,39 +1,79 @@
 package com.zjgsu.todoservice.service;
 
 import com.zjgsu.todoservice.client.UserClient;
+import com.zjgsu.todoservice.common.ApiResponse;
+import com.zjgsu.todoservice.dto.TodoChanges;
 import com.zjgsu.todoservice.dto.TodoEventMessage;
+import com.zjgsu.todoservice.dto.TodoSummary;
+import com.zjgsu.todoservice.exception.ChangesExpiredException;
+import com.zjgsu.todoservice.exception.PreconditionFailedException;
 import com.zjgsu.todoservice.exception.ResourceNotFoundException;
 import com.zjgsu.todoservice.messaging.TodoEventProducer;
 import com.zjgsu.todoservice.model.Todo;
+import com.zjgsu.todoservice.model.TodoTombstone;
+import com.zjgsu.todoservice.readmodel.TodoReadModel;
+import com.zjgsu.todoservice.repository.TodoChangeRepository;
 import com.zjgsu.todoservice.repository.TodoRepository;
+import com.zjgsu.todoservice.sharding.ShardRouter;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Todo服务层
  * 使用数据库存储，通过OpenFeign调用user-service验证用户
  * 通过RabbitMQ发送todo事件消息
+ * 启用分片时按user_id路由到分片，事务在选定分片之后开启
+ * 按用户查询的摘要列表由事件流维护的读模型提供
+ * 每次写操作为所属用户分配递增的变更序号，删除留下墓碑，供增量同步使用
  */
 @Service
 public class TodoService {
     private static final Logger logger = LoggerFactory.getLogger(TodoService.class);
 
     private final TodoRepository todoRepository;
+    private final TodoChangeRepository todoChangeRepository;
+    private final TodoChangeTracker changeTracker;
+    private final TodoArchiveService todoArchiveService;
     private final UserClient userClient;
     private final TodoEventProducer todoEventProducer;
+    private final ShardRouter shardRouter;
+    private final TodoReadModel todoReadModel;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int optimisticLockMaxAttempts;
 
-    public TodoService(TodoRepository todoRepository, UserClient userClient, TodoEventProducer todoEventProducer) {
+    public TodoService(TodoRepository todoRepository, TodoChangeRepository todoChangeRepository,
+                       TodoChangeTracker changeTracker, TodoArchiveService todoArchiveService,
+                       UserClient userClient, TodoEventProducer todoEventProducer,
+                       ShardRouter shardRouter, TodoReadModel todoReadModel,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.optimistic-lock.max-attempts:3}") int optimisticLockMaxAttempts) {
         this.todoRepository = todoRepository;
+        this.todoChangeRepository = todoChangeRepository;
+        this.changeTracker = changeTracker;
+        this.todoArchiveService = todoArchiveService;
         this.userClient = userClient;
         this.todoEventProducer = todoEventProducer;
+        this.shardRouter = shardRouter;
+        this.todoReadModel = todoReadModel;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.optimisticLockMaxAttempts = optimisticLockMaxAttempts;
     }
 
     /**
@@ -42,7 +82,10 @@ public class TodoService {
     @PostConstruct
     public void init() {
         // 只在数据库为空时初始化测试数据
-        if (todoRepository.count() == 0) {
+        long total = shardRouter.scatter(() -> List.of(todoRepository.count())).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+        if (total == 0) {
             createTodo(new Todo(null, "学习Spring Boot", "完成基础教程", 1L));
             createTodo(new Todo(null, "实现微服务", "拆分单体应用", 1L));
         }
@@ -50,44 +93,139 @@ public class TodoService {
 
     /**
      * 获取所有Todo
+     * @param view 列表投影类型，只查询该类型包含的列
      */
-    public List<Todo> findAll() {
-        return todoRepository.findAll();
+    public <T> List<T> findAll(Class<T> view) {
+        return shardRouter.scatter(() -> readOnly(() -> todoRepository.findAllProjectedBy(view)));
+    }
+
+    /**
+     * 根据完成状态获取Todo列表，跨分片并行查询
+     * @param view 列表投影类型，只查询该类型包含的列
+     */
+    public <T> List<T> findByCompleted(Boolean completed, Class<T> view) {
+        return shardRouter.scatter(() -> readOnly(() -> todoRepository.findByCompleted(completed, view)));
     }
 
     /**
      * 根据用户ID获取Todo列表
+     * 摘要视图在读模型就绪时直接由读模型提供，否则查询数据库
+     * @param view 列表投影类型，只查询该类型包含的列
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> findByUserId(Long userId, Class<T> view) {
+        if (view == TodoSummary.class && todoReadModel.isReady()) {
+            return (List<T>) todoReadModel.findByUserId(userId);
+        }
+        return shardRouter.onUser(userId, () -> readOnly(() -> todoRepository.findByUserId(userId, view)));
+    }
+
+    /**
+     * 根据用户ID获取Todo列表，包含已归档的Todo
+     * 归档数据只在显式请求时读取，活跃列表之后追加归档列表
+     */
+    public <T> List<T> findByUserIdIncludingArchived(Long userId, Class<T> view) {
+        List<T> todos = new ArrayList<>(findByUserId(userId, view));
+        todos.addAll(todoArchiveService.findByUserId(userId, view));
+        return todos;
+    }
+
+    /**
+     * 根据用户ID和完成状态获取Todo列表
+     * @param view 列表投影类型，只查询该类型包含的列
+     */
+    public <T> List<T> findByUserIdAndCompleted(Long userId, Boolean completed, Class<T> view) {
+        return shardRouter.onUser(userId,
+                () -> readOnly(() -> todoRepository.findByUserIdAndCompleted(userId, completed, view)));
+    }
+
+    /**
+     * 查询用户在since序号之后的变更
+     * Todo与墓碑共用同一序号空间，各取limit条后按序号归并，返回的next不会跳过未返回的变更
+     * @throws ChangesExpiredException since之后的墓碑已被清除
+     */
+    public TodoChanges findChanges(Long userId, long since, int limit) {
+        return shardRouter.onUser(userId, () -> readOnly(() -> {
+            // 墓碑超过保留期限后被删除，早于清除位置的since可能漏掉删除，只能全量同步
+            Long purgedSeq = todoChangeRepository.findPurgedSeq(userId);
+            if (since > 0 && purgedSeq != null && since < purgedSeq) {
+                throw new ChangesExpiredException(userId, since, purgedSeq);
+            }
+            List<Todo> todos = todoRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(
+                    userId, since, Limit.of(limit + 1));
+            List<TodoTombstone> tombstones = todoChangeRepository
+                    .findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(userId, since, Limit.of(limit + 1));
+
+            List<Todo> changed = new ArrayList<>();
+            List<Long> deleted = new ArrayList<>();
+            long next = since;
+            int t = 0;
+            int d = 0;
+            while (changed.size() + deleted.size() < limit && (t < todos.size() || d < tombstones.size())) {
+                boolean takeTodo = d >= tombstones.size() || (t < todos.size()
+                        && todos.get(t).getChangeSeq() < tombstones.get(d).getChangeSeq());
+                if (takeTodo) {
+                    Todo todo = todos.get(t++);
+                    changed.add(todo);
+                    next = todo.getChangeSeq();
+                } else {
+                    TodoTombstone tombstone = tombstones.get(d++);
+                    deleted.add(tombstone.getTodoId());
+                    next = tombstone.getChangeSeq();
+                }
+            }
+            boolean hasMore = t < todos.size() || d < tombstones.size();
+            return new TodoChanges(changed, deleted, next, hasMore);
+        }));
+    }
+
+    /**
+     * 按主键分页遍历全部Todo摘要，启用分片时各分片并行遍历
+     * @return 遍历的Todo数量
      */
-    public List<Todo> findByUserId(Long userId) {
-        return todoRepository.findByUserId(userId);
+    public long forEachTodo(int batchSize, Consumer<List<TodoSummary>> action) {
+        return shardRouter.scatter(() -> {
+            long count = 0;
+            long afterId = 0;
+            while (true) {
+                long lastId = afterId;
+                List<TodoSummary> page = readOnly(() -> todoRepository.findByIdGreaterThanOrderByIdAsc(
+                        lastId, Limit.of(batchSize), TodoSummary.class));
+                if (page.isEmpty()) {
+                    return List.of(count);
+                }
+                action.accept(page);
+                count += page.size();
+                afterId = page.get(page.size() - 1).id();
+            }
+        }).stream().mapToLong(Long::longValue).sum();
     }
 
     /**
      * 根据ID查找Todo
      */
     public Optional<Todo> findById(Long id) {
-        return todoRepository.findById(id);
+        return shardRouter.onOwnerOf(id, () -> readOnly(() -> todoRepository.findById(id)));
     }
 
     /**
      * 创建Todo
      */
-    @Transactional
     public Todo createTodo(Todo todo) {
+        return shardRouter.onUser(todo.getUserId(),
+                () -> transactionTemplate.execute(status -> doCreateTodo(todo)));
+    }
+
+    private Todo doCreateTodo(Todo todo) {
         // 调用用户服务验证用户是否存在
         if (todo.getUserId() != null) {
             verifyUserExists(todo.getUserId());
         }
+        todo.setChangeSeq(changeTracker.nextChangeSeq(todo.getUserId()));
         Todo savedTodo = todoRepository.save(todo);
 
         // 发送todo创建事件
-        TodoEventMessage message = new TodoEventMessage(
-            savedTodo.getId(),
-            savedTodo.getTitle(),
-            savedTodo.getDescription(),
-            savedTodo.getUserId(),
-            "created"
-        );
+        TodoEventMessage message = toEventMessage(savedTodo, "created");
         todoEventProducer.sendTodoCreatedEvent(message);
 
         return savedTodo;
@@ -95,11 +233,26 @@ public class TodoService {
 
     /**
      * 更新Todo
+     * @param expectedVersion If-Match携带的版本号，为null时不做前置条件校验
      */
-    @Transactional
-    public Todo updateTodo(Long id, Todo todo) {
+    public Todo updateTodo(Long id, Todo todo, Long expectedVersion) {
+        return onTodo(id, () -> {
+            if (expectedVersion != null) {
+                // 客户端声明了期望版本，冲突时直接交由客户端处理
+                return transactionTemplate.execute(status -> doUpdateTodo(id, todo, expectedVersion));
+            }
+            // PUT为全量替换，属于幂等操作，版本冲突时基于最新数据自动重试
+            return retryOnConflict(() -> transactionTemplate.execute(status -> doUpdateTodo(id, todo, null)));
+        });
+    }
+
+    private Todo doUpdateTodo(Long id, Todo todo, Long expectedVersion) {
         Todo existingTodo = todoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo", id));
+        checkVersion(existingTodo, expectedVersion);
+        if (!shardRouter.isSameShard(existingTodo.getUserId(), todo.getUserId())) {
+            throw new IllegalArgumentException("Cannot move todo " + id + " to a user on another shard");
+        }
 
         // 验证用户存在
         if (todo.getUserId() != null) {
@@ -110,18 +263,20 @@ public class TodoService {
         existingTodo.setTitle(todo.getTitle());
         existingTodo.setDescription(todo.getDescription());
         existingTodo.setCompleted(todo.getCompleted());
+        existingTodo.setDueAt(todo.getDueAt());
+        if (!Objects.equals(existingTodo.getUserId(), todo.getUserId())) {
+            // 转移给其他用户，原用户的客户端需要移除该Todo
+            existingTodo.setChangeSeq(changeTracker.transfer(existingTodo, todo.getUserId()));
+        } else {
+            existingTodo.setChangeSeq(changeTracker.nextChangeSeq(todo.getUserId()));
+        }
         existingTodo.setUserId(todo.getUserId());
 
-        Todo updatedTodo = todoRepository.save(existingTodo);
+        // 立即flush，使版本冲突在发送事件之前暴露
+        Todo updatedTodo = todoRepository.saveAndFlush(existingTodo);
 
         // 发送todo更新事件
-        TodoEventMessage message = new TodoEventMessage(
-            updatedTodo.getId(),
-            updatedTodo.getTitle(),
-            updatedTodo.getDescription(),
-            updatedTodo.getUserId(),
-            "updated"
-        );
+        TodoEventMessage message = toEventMessage(updatedTodo, "updated");
         todoEventProducer.sendTodoUpdatedEvent(message);
 
         return updatedTodo;
@@ -130,25 +285,23 @@ public class TodoService {
     /**
      * 删除Todo
      */
-    @Transactional
-    public boolean deleteTodo(Long id) {
-        if (!todoRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Todo", id);
-        }
+    public boolean deleteTodo(Long id, Long expectedVersion) {
+        return onTodo(id, () -> transactionTemplate.execute(status -> doDeleteTodo(id, expectedVersion)));
+    }
 
+    private boolean doDeleteTodo(Long id, Long expectedVersion) {
         // 在删除前获取todo信息用于发送消息
-        Todo todo = todoRepository.findById(id).orElseThrow();
+        Todo todo = todoRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Todo", id));
+        checkVersion(todo, expectedVersion);
 
-        todoRepository.deleteById(id);
+        // 按实体删除，DELETE语句会带上版本条件
+        todoRepository.delete(todo);
+        todoRepository.flush();
+        changeTracker.addTombstone(todo);
 
         // 发送todo删除事件
-        TodoEventMessage message = new TodoEventMessage(
-            todo.getId(),
-            todo.getTitle(),
-            todo.getDescription(),
-            todo.getUserId(),
-            "deleted"
-        );
+        TodoEventMessage message = toEventMessage(todo, "deleted");
         todoEventProducer.sendTodoDeletedEvent(message);
 
         return true;
@@ -157,43 +310,106 @@ public class TodoService {
     /**
      * 切换Todo完成状态
      */
-    @Transactional
-    public Todo toggleComplete(Long id) {
+    public Todo toggleComplete(Long id, Long expectedVersion) {
+        return onTodo(id, () -> transactionTemplate.execute(status -> doToggleComplete(id, expectedVersion)));
+    }
+
+    private Todo doToggleComplete(Long id, Long expectedVersion) {
         Todo todo = todoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Todo", id));
+        checkVersion(todo, expectedVersion);
+        // 切换不是幂等操作，冲突时不自动重试，返回409由客户端决定
         todo.setCompleted(!todo.getCompleted());
-        Todo toggledTodo = todoRepository.save(todo);
+        todo.setChangeSeq(changeTracker.nextChangeSeq(todo.getUserId()));
+        Todo toggledTodo = todoRepository.saveAndFlush(todo);
 
         // 发送todo状态切换事件
-        TodoEventMessage message = new TodoEventMessage(
-            toggledTodo.getId(),
-            toggledTodo.getTitle(),
-            toggledTodo.getDescription(),
-            toggledTodo.getUserId(),
-            "toggled"
-        );
+        TodoEventMessage message = toEventMessage(toggledTodo, "toggled");
         todoEventProducer.sendTodoToggledEvent(message);
 
         return toggledTodo;
     }
 
+    /**
+     * 构造事件消息，携带读模型所需的完成状态、版本号和更新时间
+     */
+    public static TodoEventMessage toEventMessage(Todo todo, String eventType) {
+        TodoEventMessage message = new TodoEventMessage(
+            todo.getId(),
+            todo.getTitle(),
+            todo.getDescription(),
+            todo.getUserId(),
+            eventType
+        );
+        message.setCompleted(todo.getCompleted());
+        message.setVersion(todo.getVersion());
+        message.setUpdatedAt(todo.getUpdatedAt());
+        message.setDueAt(todo.getDueAt());
+        return message;
+    }
+
+    /**
+     * 在Todo所在分片上执行操作，Todo不存在时抛出ResourceNotFoundException
+     */
+    private <T> T onTodo(Long id, Supplier<T> action) {
+        return shardRouter.onOwnerOf(id, () -> Optional.ofNullable(action.get()))
+                .orElseThrow(() -> new ResourceNotFoundException("Todo", id));
+    }
+
+    /**
+     * 在只读事务中执行查询
+     */
+    private <T> T readOnly(Supplier<T> action) {
+        return readOnlyTransactionTemplate.execute(status -> action.get());
+    }
+
+    /**
+     * 校验If-Match版本号
+     */
+    private void checkVersion(Todo todo, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(todo.getVersion())) {
+            throw new PreconditionFailedException("Todo", todo.getId(), expectedVersion, todo.getVersion());
+        }
+    }
+
+    /**
+     * 乐观锁冲突时自动重试
+     * 仅用于幂等操作，每次重试都在新事务中重新读取最新版本
+     */
+    private <T> T retryOnConflict(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= optimisticLockMaxAttempts) {
+                    throw e;
+                }
+                logger.debug("Optimistic lock conflict, retrying (attempt {}/{})", attempt, optimisticLockMaxAttempts);
+            }
+        }
+    }
+
     /**
      * 通过OpenFeign调用用户服务验证用户是否存在
      * 集成了负载均衡、熔断和重试机制
+     * 使用轻量级的exists接口，只传输布尔值
      */
     private void verifyUserExists(Long userId) {
+        ApiResponse<Boolean> response;
         try {
-            Map<String, Object> user = userClient.getUser(userId);
-
-            // 检查是否是降级响应
-            if (user.containsKey("fallback") && Boolean.TRUE.equals(user.get("fallback"))) {
-                logger.warn("User service is unavailable, using fallback data for user ID: {}", userId);
-            }
-        } catch (HttpClientErrorException.NotFound e) {
-            throw new ResourceNotFoundException("User", userId);
+            response = userClient.existsUser(userId);
         } catch (Exception e) {
             logger.error("Failed to verify user: {}", e.getMessage());
             throw new RuntimeException("Failed to verify user: " + e.getMessage());
         }
+
+        // 检查是否是降级响应
+        if (response.getCode() == 503) {
+            logger.warn("User service is unavailable, skipping verification for user ID: {}", userId);
+            return;
+        }
+        if (!Boolean.TRUE.equals(response.getData())) {
+            throw new ResourceNotFoundException("User", userId);
+        }
     }
 }
@@ -0,0 +1,119 @@
+package com.zjgsu.todoservice.service;
+
+import com.zjgsu.todoservice.model.TodoTombstone;
+import com.zjgsu.todoservice.repository.TodoChangeRepository;
+import com.zjgsu.todoservice.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 墓碑清理
+ * 定期分批删除超过保留期限的todo_tombstones，并把各用户计数器的purged_seq提高到删除的最大序号
+ * since早于purged_seq的增量同步返回410，由客户端全量同步
+ */
+@Service
+public class TodoTombstonePurger {
+    private static final Logger logger = LoggerFactory.getLogger(TodoTombstonePurger.class);
+
+    private final TodoChangeRepository todoChangeRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration retention;
+    private final Duration purgeInterval;
+    private final int purgeBatchSize;
+
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tombstone-purger").daemon().factory());
+
+    public TodoTombstonePurger(TodoChangeRepository todoChangeRepository, ShardRouter shardRouter,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.change-tracking.tombstone-retention:P30D}") Duration retention,
+                               @Value("${app.change-tracking.purge-interval:PT1H}") Duration purgeInterval,
+                               @Value("${app.change-tracking.purge-batch-size:1000}") int purgeBatchSize) {
+        this.todoChangeRepository = todoChangeRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.purgeInterval = purgeInterval;
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        purger.scheduleWithFixedDelay(this::purgeSafely,
+                purgeInterval.toMillis(), purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * 删除deleted_at早于保留期限的墓碑，各分片并行
+     * @return 删除的墓碑数量
+     */
+    public long purgeExpired() {
+        if (shardRouter.getTargetRing() != null) {
+            // 重新分片期间墓碑随用户在分片间复制，暂停清理
+            logger.info("Skipping tombstone purge while resharding is in progress");
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        return shardRouter.scatter(() -> {
+            long count = 0;
+            while (true) {
+                Integer deleted = transactionTemplate.execute(status -> purgeBatch(cutoff));
+                count += deleted;
+                if (deleted < purgeBatchSize) {
+                    return List.of(count);
+                }
+            }
+        }).stream().mapToLong(Long::longValue).sum();
+    }
+
+    private int purgeBatch(LocalDateTime cutoff) {
+        List<TodoTombstone> tombstones = todoChangeRepository.findByDeletedAtBeforeOrderByDeletedAtAsc(
+                cutoff, Limit.of(purgeBatchSize));
+        if (tombstones.isEmpty()) {
+            return 0;
+        }
+        // 先提高清除位置再删除，同一事务内提交；计数器行按userId升序加锁，与写事务的加锁顺序一致
+        Map<Long, Long> purgedSeqs = new TreeMap<>();
+        for (TodoTombstone tombstone : tombstones) {
+            purgedSeqs.merge(tombstone.getUserId(), tombstone.getChangeSeq(), Math::max);
+        }
+        purgedSeqs.forEach(todoChangeRepository::raisePurgedSeq);
+        todoChangeRepository.deleteAllInBatch(tombstones);
+        return tombstones.size();
+    }
+
+    private void purgeSafely() {
+        try {
+            long purged = purgeExpired();
+            if (purged > 0) {
+                logger.info("Purged {} expired tombstones", purged);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to purge tombstones: {}", e.getMessage(), e);
+        }
+    }
+}
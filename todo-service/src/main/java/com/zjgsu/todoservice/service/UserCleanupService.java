@@ -0,0 +1,195 @@
+package com.zjgsu.todoservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.zjgsu.todoservice.dto.UserEventMessage;
+import com.zjgsu.todoservice.repository.TodoArchiveRepository;
+import com.zjgsu.todoservice.repository.TodoChangeRepository;
+import com.zjgsu.todoservice.repository.TodoRepository;
+import com.zjgsu.todoservice.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongConsumer;
+
+/**
+ * 用户数据清理服务
+ * 消费user-service的user.deleted事件，分批删除该用户的Todo、归档和变更跟踪数据
+ * 每批一个短事务，批间暂停以限制对主库的压力；清理是幂等的，中断后重新投递会继续删除剩余数据
+ */
+@Service
+public class UserCleanupService {
+    private static final Logger logger = LoggerFactory.getLogger(UserCleanupService.class);
+
+    private static final int MAX_TRACKED_JOBS = 100;
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    public record Status(Long userId, State state, long deletedTodos, long deletedArchived,
+                         Instant startedAt, Instant finishedAt, String error) {
+    }
+
+    private final TodoRepository todoRepository;
+    private final TodoArchiveRepository todoArchiveRepository;
+    private final TodoChangeRepository todoChangeRepository;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private final Counter deletedCounter;
+    private final AtomicInteger activeJobs = new AtomicInteger();
+    // 最近的清理任务，按开始顺序保留
+    private final Map<Long, Status> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Status> eldest) {
+            return size() > MAX_TRACKED_JOBS;
+        }
+    };
+
+    public UserCleanupService(TodoRepository todoRepository, TodoArchiveRepository todoArchiveRepository,
+                              TodoChangeRepository todoChangeRepository, ShardRouter shardRouter,
+                              ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.user-cleanup.batch-size:500}") int batchSize,
+                              @Value("${app.user-cleanup.pause-ms:100}") long pauseMillis) {
+        this.todoRepository = todoRepository;
+        this.todoArchiveRepository = todoArchiveRepository;
+        this.todoChangeRepository = todoChangeRepository;
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+
+        this.deletedCounter = Counter.builder("todo.user_cleanup.deleted").register(meterRegistry);
+        Gauge.builder("todo.user_cleanup.active", activeJobs, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * 消费用户删除事件
+     * 清理完成后才确认，实例中途下线时消息重新投递给其他实例继续清理
+     * 每个消费者预取1条，同时清理的用户数由app.user-cleanup.concurrency限制
+     */
+    @RabbitListener(queues = "todo.user-deleted.queue", containerFactory = "userCleanupContainerFactory")
+    public void onUserDeleted(Message message, Channel channel) throws IOException {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        UserEventMessage event;
+        try {
+            event = objectMapper.readValue(message.getBody(), UserEventMessage.class);
+        } catch (IOException e) {
+            logger.error("Discarding undecodable user event: {}", e.getMessage());
+            channel.basicReject(deliveryTag, false);
+            return;
+        }
+        if (event.userId() == null) {
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+        try {
+            cleanup(event.userId());
+            channel.basicAck(deliveryTag, false);
+        } catch (RuntimeException e) {
+            // 进入死信队列，可通过死信管理接口按queue=todo.user-deleted.queue重放
+            channel.basicReject(deliveryTag, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            channel.basicNack(deliveryTag, false, true);
+        }
+    }
+
+    /**
+     * 分批删除用户的全部数据
+     */
+    public Status cleanup(Long userId) throws InterruptedException {
+        Instant startedAt = Instant.now();
+        track(new Status(userId, State.RUNNING, 0, 0, startedAt, null, null));
+        activeJobs.incrementAndGet();
+        long deletedTodos = 0;
+        long deletedArchived = 0;
+        try {
+            deletedTodos = deleteInBatches(userId, limit -> todoRepository.deleteBatchByUserId(userId, limit),
+                    deleted -> track(new Status(userId, State.RUNNING, deleted, 0, startedAt, null, null)));
+            long todos = deletedTodos;
+            deletedArchived = deleteInBatches(userId, limit -> todoArchiveRepository.deleteBatchByUserId(userId, limit),
+                    deleted -> track(new Status(userId, State.RUNNING, todos, deleted, startedAt, null, null)));
+            deleteInBatches(userId, limit -> todoChangeRepository.deleteTombstoneBatchByUserId(userId, limit),
+                    deleted -> { });
+            shardRouter.onUser(userId, () -> transactionTemplate.execute(status -> {
+                todoChangeRepository.deleteChangeSeq(userId);
+                return null;
+            }));
+            logger.info("Cleaned up user {}: {} todos, {} archived todos", userId, deletedTodos, deletedArchived);
+            return track(new Status(userId, State.COMPLETED, deletedTodos, deletedArchived,
+                    startedAt, Instant.now(), null));
+        } catch (RuntimeException e) {
+            logger.error("Cleanup of user {} failed: {}", userId, e.getMessage(), e);
+            track(new Status(userId, State.FAILED, deletedTodos, deletedArchived, startedAt, Instant.now(),
+                    e.getMessage()));
+            throw e;
+        } finally {
+            activeJobs.decrementAndGet();
+        }
+    }
+
+    public List<Status> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    public Optional<Status> getJob(Long userId) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(userId));
+        }
+    }
+
+    /**
+     * 每批在用户所在分片上单独提交，批间暂停，锁持有时间与批大小成正比
+     */
+    private long deleteInBatches(Long userId, IntUnaryOperator deleteBatch,
+                                 LongConsumer progress) throws InterruptedException {
+        long total = 0;
+        while (true) {
+            Integer deleted = shardRouter.onUser(userId,
+                    () -> transactionTemplate.execute(status -> deleteBatch.applyAsInt(batchSize)));
+            total += deleted;
+            deletedCounter.increment(deleted);
+            progress.accept(total);
+            if (deleted < batchSize) {
+                return total;
+            }
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    private Status track(Status status) {
+        synchronized (jobs) {
+            jobs.remove(status.userId());
+            jobs.put(status.userId(), status);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,67 @@
+package com.zjgsu.todoservice.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希环
+ * 每个分片映射为多个虚拟节点，增删分片时只有相邻区间的用户需要迁移
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> shards;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        for (String shard : this.shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(nodeHash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    /**
+     * 根据分片键计算所属分片
+     */
+    public String shardFor(long key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(mix(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * SplitMix64终结函数，将连续的用户ID打散到整个哈希空间
+     */
+    private static long mix(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long nodeHash(String node) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(node.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
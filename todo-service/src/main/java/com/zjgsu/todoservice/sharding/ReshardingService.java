@@ -0,0 +1,256 @@
+package com.zjgsu.todoservice.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在线重新分片
+ * 按用户逐个迁移数据：迁移某个用户时持有该用户的写锁，迁移完成后该用户立即路由到新分片，
+ * 其他用户的读写不受影响。多轮扫描后在全局锁下处理迁移期间新出现的用户，最后切换哈希环。
+ */
+@Service
+public class ReshardingService {
+    private static final Logger logger = LoggerFactory.getLogger(ReshardingService.class);
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * 重新分片进度
+     */
+    public record Status(State state, List<String> currentShards, List<String> targetShards,
+                         long usersMoved, long todosMoved, Instant startedAt, Instant finishedAt, String error) {
+    }
+
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+    private final int maxSweeps;
+
+    private final AtomicLong usersMoved = new AtomicLong();
+    private final AtomicLong todosMoved = new AtomicLong();
+    private volatile State state = State.IDLE;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public ReshardingService(ShardRouter shardRouter,
+                             @Value("${app.sharding.resharding.batch-size:500}") int batchSize,
+                             @Value("${app.sharding.resharding.max-sweeps:3}") int maxSweeps) {
+        this.shardRouter = shardRouter;
+        this.batchSize = batchSize;
+        this.maxSweeps = maxSweeps;
+    }
+
+    public Status getStatus() {
+        if (!shardRouter.isEnabled()) {
+            return new Status(State.IDLE, List.of(), List.of(), 0, 0, null, null, null);
+        }
+        ConsistentHashRing target = shardRouter.getTargetRing();
+        return new Status(state, shardRouter.getRing().getShards(),
+                target != null ? target.getShards() : List.of(),
+                usersMoved.get(), todosMoved.get(), startedAt, finishedAt, error);
+    }
+
+    /**
+     * 以新的分片列表重建哈希环并在后台迁移数据
+     * 上一次迁移失败时，使用相同的分片列表再次调用会从中断处继续
+     */
+    public synchronized Status rebalance(List<String> targetShards) {
+        if (!shardRouter.isEnabled()) {
+            throw new IllegalArgumentException("Sharding is not enabled");
+        }
+        if (targetShards == null || targetShards.isEmpty()) {
+            throw new IllegalArgumentException("Target shards must not be empty");
+        }
+        for (String shard : targetShards) {
+            if (!shardRouter.getDataSources().containsKey(shard)) {
+                throw new IllegalArgumentException("Unknown shard: " + shard);
+            }
+        }
+        if (!targetShards.contains(shardRouter.getDefaultShard())) {
+            throw new IllegalArgumentException("Target shards must include the default shard: " + shardRouter.getDefaultShard());
+        }
+        if (state == State.RUNNING) {
+            throw new IllegalArgumentException("Resharding already in progress");
+        }
+
+        ConsistentHashRing pending = shardRouter.getTargetRing();
+        ConsistentHashRing target;
+        if (pending != null) {
+            // 上一次迁移中断，只允许以相同的目标继续
+            if (!pending.getShards().equals(targetShards)) {
+                throw new IllegalArgumentException("Unfinished resharding to " + pending.getShards()
+                        + " must be resumed before changing the target");
+            }
+            target = pending;
+        } else {
+            target = new ConsistentHashRing(targetShards, shardRouter.getVirtualNodes());
+            shardRouter.beginResharding(target);
+            usersMoved.set(0);
+            todosMoved.set(0);
+        }
+
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        Thread.ofPlatform().name("resharding").daemon().start(() -> run(target));
+        return getStatus();
+    }
+
+    private void run(ConsistentHashRing target) {
+        logger.info("Resharding {} -> {}", shardRouter.getRing().getShards(), target.getShards());
+        try {
+            for (int sweep = 1; sweep <= maxSweeps; sweep++) {
+                long moved = sweep(target);
+                logger.info("Resharding sweep {} moved {} users", sweep, moved);
+                if (moved == 0) {
+                    break;
+                }
+            }
+            // 最终切换：阻塞所有用户的读写，迁移扫描期间新出现的用户后切换哈希环
+            shardRouter.withAllUsersLocked(() -> {
+                sweep(target);
+                shardRouter.completeResharding();
+            });
+            state = State.COMPLETED;
+            logger.info("Resharding completed: {} users, {} todos moved", usersMoved.get(), todosMoved.get());
+        } catch (RuntimeException e) {
+            logger.error("Resharding failed: {}", e.getMessage(), e);
+            error = e.getMessage();
+            state = State.FAILED;
+        } finally {
+            finishedAt = Instant.now();
+        }
+    }
+
+    /**
+     * 扫描当前哈希环上的所有分片，迁移目标分片发生变化的用户
+     * @return 本轮迁移的用户数
+     */
+    private long sweep(ConsistentHashRing target) {
+        long moved = 0;
+        for (String source : shardRouter.getRing().getShards()) {
+            JdbcTemplate jdbcTemplate = shardRouter.jdbcTemplate(source);
+            long after = Long.MIN_VALUE;
+            while (true) {
+                List<Long> userIds = jdbcTemplate.queryForList(
+                        "SELECT user_id FROM (SELECT user_id FROM todos UNION SELECT user_id FROM todo_archive) u "
+                                + "WHERE user_id > ? ORDER BY user_id LIMIT ?",
+                        Long.class, after, batchSize);
+                for (Long userId : userIds) {
+                    String destination = target.shardFor(userId);
+                    if (!destination.equals(source) && moveUser(userId, source, destination)) {
+                        moved++;
+                    }
+                }
+                if (userIds.size() < batchSize) {
+                    break;
+                }
+                after = userIds.get(userIds.size() - 1);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * 在用户写锁内迁移单个用户的全部Todo
+     */
+    private boolean moveUser(Long userId, String source, String destination) {
+        boolean[] moved = {false};
+        shardRouter.withUserMoveLock(userId, () -> {
+            if (!shardRouter.shardForUser(userId).equals(source)) {
+                // 已在之前的扫描中迁移
+                return;
+            }
+            long count = copyRows("todos", userId, source, destination);
+            // 归档在重新分片期间暂停，归档数据不会并发变化
+            copyRows("todo_archive", userId, source, destination);
+            copyChangeTracking(userId, source, destination);
+            shardRouter.markMigrated(userId);
+            usersMoved.incrementAndGet();
+            todosMoved.addAndGet(count);
+            moved[0] = true;
+        });
+        return moved[0];
+    }
+
+    /**
+     * 分批复制行：先在目标分片覆盖写入，再从源分片删除，中断后重新执行是安全的
+     * 使用SELECT *按结果集列名生成INSERT，表结构变更时无需修改
+     */
+    private long copyRows(String table, Long userId, String source, String destination) {
+        JdbcTemplate sourceJdbc = shardRouter.jdbcTemplate(source);
+        JdbcTemplate destinationJdbc = shardRouter.jdbcTemplate(destination);
+        TransactionTemplate destinationTx = new TransactionTemplate(
+                new DataSourceTransactionManager(shardRouter.getDataSources().get(destination)));
+
+        long copied = 0;
+        while (true) {
+            // 已复制的行随即从源分片删除，每次都从头读取
+            List<Map<String, Object>> rows = sourceJdbc.queryForList(
+                    "SELECT * FROM " + table + " WHERE user_id = ? ORDER BY id LIMIT ?", userId, batchSize);
+            if (rows.isEmpty()) {
+                return copied;
+            }
+            List<String> columns = new ArrayList<>(rows.get(0).keySet());
+            List<Object> ids = rows.stream().map(row -> row.get("id")).toList();
+            String idPlaceholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+            String insertSql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+            List<Object[]> values = rows.stream()
+                    .map(row -> columns.stream().map(row::get).toArray())
+                    .toList();
+
+            destinationTx.executeWithoutResult(status -> {
+                destinationJdbc.update("DELETE FROM " + table + " WHERE id IN (" + idPlaceholders + ")", ids.toArray());
+                destinationJdbc.batchUpdate(insertSql, values);
+            });
+            sourceJdbc.update("DELETE FROM " + table + " WHERE id IN (" + idPlaceholders + ")", ids.toArray());
+            copied += rows.size();
+        }
+    }
+
+    /**
+     * 迁移增量同步状态：目标分片的序号计数器不小于源分片，墓碑随用户迁移
+     * 否则迁移后分配的序号可能小于客户端持有的since，导致变更被跳过
+     */
+    private void copyChangeTracking(Long userId, String source, String destination) {
+        JdbcTemplate sourceJdbc = shardRouter.jdbcTemplate(source);
+        JdbcTemplate destinationJdbc = shardRouter.jdbcTemplate(destination);
+
+        List<Object[]> seq = sourceJdbc.query(
+                "SELECT seq, purged_seq FROM todo_change_seq WHERE user_id = ?",
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2)}, userId);
+        if (!seq.isEmpty()) {
+            destinationJdbc.update("INSERT INTO todo_change_seq (user_id, seq, purged_seq) VALUES (?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE seq = GREATEST(seq, VALUES(seq)), "
+                    + "purged_seq = GREATEST(purged_seq, VALUES(purged_seq))",
+                    userId, seq.get(0)[0], seq.get(0)[1]);
+        }
+        List<Object[]> tombstones = sourceJdbc.query(
+                "SELECT todo_id, user_id, change_seq, deleted_at FROM todo_tombstones WHERE user_id = ?",
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getTimestamp(4)},
+                userId);
+        if (!tombstones.isEmpty()) {
+            // 墓碑只追加不修改，重复执行时先清理目标分片上已复制的部分
+            destinationJdbc.update("DELETE FROM todo_tombstones WHERE user_id = ?", userId);
+            destinationJdbc.batchUpdate("INSERT INTO todo_tombstones (todo_id, user_id, change_seq, deleted_at) "
+                    + "VALUES (?, ?, ?, ?)", tombstones);
+            sourceJdbc.update("DELETE FROM todo_tombstones WHERE user_id = ?", userId);
+        }
+    }
+}
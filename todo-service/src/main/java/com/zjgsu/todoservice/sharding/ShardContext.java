@@ -0,0 +1,39 @@
+package com.zjgsu.todoservice.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的目标分片
+ * 必须在事务开始之前设置，ShardRoutingDataSource在获取物理连接时读取
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * 获取当前分片，未设置时返回null（使用默认分片）
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在指定分片上执行操作，结束后恢复之前的分片
+     */
+    static <T> T callOn(String shard, Supplier<T> action) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
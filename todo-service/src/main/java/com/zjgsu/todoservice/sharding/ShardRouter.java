@@ -0,0 +1,352 @@
+package com.zjgsu.todoservice.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 分片路由器
+ * 按user_id一致性哈希选择分片，提供单用户分片执行、按Todo ID定位分片和跨分片并行查询
+ * 未启用分片时所有操作直接在唯一的数据源上执行
+ */
+public class ShardRouter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+
+    private static final int LOCK_STRIPES = 256;
+    private static final int OWNER_LOOKUP_ATTEMPTS = 3;
+    private static final String USER_ID_HEADER = "X-User-Id";
+
+    private final boolean enabled;
+    private final Map<String, DataSource> dataSources;
+    private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+    private final List<AutoCloseable> resources;
+    private final String defaultShard;
+    private final int virtualNodes;
+    private final ReentrantReadWriteLock[] userLocks;
+    private final ExecutorService scatterExecutor;
+
+    // 重新分片期间已迁移到目标哈希环的用户
+    private final Set<Long> migratedUsers = ConcurrentHashMap.newKeySet();
+
+    private volatile ConsistentHashRing ring;
+    private volatile ConsistentHashRing targetRing;
+
+    private ShardRouter() {
+        this.enabled = false;
+        this.dataSources = Map.of();
+        this.resources = List.of();
+        this.defaultShard = null;
+        this.virtualNodes = 0;
+        this.userLocks = new ReentrantReadWriteLock[0];
+        this.scatterExecutor = null;
+    }
+
+    public ShardRouter(Map<String, DataSource> dataSources, List<String> active, String defaultShard,
+                       int virtualNodes, List<AutoCloseable> resources) {
+        this.enabled = true;
+        this.dataSources = Map.copyOf(dataSources);
+        this.resources = List.copyOf(resources);
+        this.defaultShard = defaultShard;
+        this.virtualNodes = virtualNodes;
+        this.ring = new ConsistentHashRing(active, virtualNodes);
+        this.userLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            userLocks[i] = new ReentrantReadWriteLock();
+        }
+        dataSources.forEach((shard, dataSource) -> jdbcTemplates.put(shard, new JdbcTemplate(dataSource)));
+        this.scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * 未启用分片时使用的路由器
+     */
+    public static ShardRouter disabled() {
+        return new ShardRouter();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    public String getDefaultShard() {
+        return defaultShard;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public ConsistentHashRing getTargetRing() {
+        return targetRing;
+    }
+
+    JdbcTemplate jdbcTemplate(String shard) {
+        return jdbcTemplates.get(shard);
+    }
+
+    /**
+     * 计算用户所在分片；重新分片期间已迁移的用户使用目标哈希环
+     */
+    public String shardForUser(Long userId) {
+        if (userId == null) {
+            return defaultShard;
+        }
+        ConsistentHashRing target = targetRing;
+        if (target != null && migratedUsers.contains(userId)) {
+            return target.shardFor(userId);
+        }
+        return ring.shardFor(userId);
+    }
+
+    /**
+     * 判断两个用户是否位于同一分片
+     */
+    public boolean isSameShard(Long userId, Long otherUserId) {
+        return !enabled || shardForUser(userId).equals(shardForUser(otherUserId));
+    }
+
+    /**
+     * 在用户所在分片上执行操作
+     * 持有该用户的读锁，保证执行期间用户不会被迁移
+     */
+    public <T> T onUser(Long userId, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        if (userId == null) {
+            return ShardContext.callOn(defaultShard, action);
+        }
+        Lock lock = lockFor(userId).readLock();
+        lock.lock();
+        try {
+            return ShardContext.callOn(shardForUser(userId), action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在Todo所属用户的分片上执行操作
+     * 定位到所属用户后持有其读锁，在用户当前分片上确认Todo仍归该用户再执行；
+     * 定位与加锁之间用户被迁移或Todo被转移时重新定位
+     * @return Todo不存在时返回Optional.empty()
+     */
+    public <T> Optional<T> onOwnerOf(Long todoId, Supplier<Optional<T>> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        for (int attempt = 0; attempt < OWNER_LOOKUP_ATTEMPTS; attempt++) {
+            Optional<Owner> owner = locateOwner(todoId);
+            if (owner.isEmpty()) {
+                return Optional.empty();
+            }
+            Long userId = owner.get().userId();
+            Lock lock = lockFor(userId).readLock();
+            lock.lock();
+            try {
+                String shard = shardForUser(userId);
+                if (findOwner(shard, todoId).filter(owner.get()::equals).isPresent()) {
+                    return ShardContext.callOn(shard, action);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        throw new IllegalStateException("Owner of todo " + todoId + " changed during lookup");
+    }
+
+    /**
+     * 在所有分片上并行执行查询并合并结果(scatter-gather)
+     */
+    public <T> List<T> scatter(Supplier<List<T>> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        List<String> shards = readableShards();
+        if (shards.size() == 1) {
+            return ShardContext.callOn(shards.get(0), action);
+        }
+        List<Future<List<T>>> futures = new ArrayList<>(shards.size());
+        for (String shard : shards) {
+            futures.add(scatterExecutor.submit(() -> ShardContext.callOn(shard, action)));
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<List<T>> future : futures) {
+            results.addAll(await(future));
+        }
+        return results;
+    }
+
+    /**
+     * 可能存放数据的分片：重新分片期间包括新旧两个哈希环的分片
+     */
+    public List<String> readableShards() {
+        Set<String> shards = new LinkedHashSet<>(ring.getShards());
+        ConsistentHashRing target = targetRing;
+        if (target != null) {
+            shards.addAll(target.getShards());
+        }
+        return new ArrayList<>(shards);
+    }
+
+    /**
+     * 定位Todo所属用户
+     * 优先查询调用者所在分片，绝大多数请求操作的是自己的Todo；未命中时并行查询其余分片
+     */
+    private Optional<Owner> locateOwner(Long todoId) {
+        List<String> candidates = readableShards();
+        String callerShard = callerShard();
+        if (callerShard != null && candidates.remove(callerShard)) {
+            Optional<Owner> owner = findOwner(callerShard, todoId);
+            if (owner.isPresent()) {
+                return owner;
+            }
+        }
+        List<Future<Optional<Owner>>> futures = new ArrayList<>(candidates.size());
+        for (String shard : candidates) {
+            futures.add(scatterExecutor.submit(() -> findOwner(shard, todoId)));
+        }
+        Optional<Owner> located = Optional.empty();
+        for (Future<Optional<Owner>> future : futures) {
+            Optional<Owner> owner = await(future);
+            if (located.isEmpty()) {
+                located = owner;
+            }
+        }
+        return located;
+    }
+
+    private Optional<Owner> findOwner(String shard, Long todoId) {
+        return jdbcTemplates.get(shard)
+                .query("SELECT user_id FROM todos WHERE id = ?",
+                        (rs, rowNum) -> new Owner(rs.getObject("user_id", Long.class)), todoId)
+                .stream()
+                .findFirst();
+    }
+
+    private String callerShard() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            String userId = servletAttributes.getRequest().getHeader(USER_ID_HEADER);
+            try {
+                return userId != null ? shardForUser(Long.valueOf(userId)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // ========== 重新分片支持 ==========
+
+    synchronized void beginResharding(ConsistentHashRing target) {
+        if (targetRing != null) {
+            throw new IllegalStateException("Resharding already in progress");
+        }
+        migratedUsers.clear();
+        targetRing = target;
+    }
+
+    void markMigrated(Long userId) {
+        migratedUsers.add(userId);
+    }
+
+    synchronized void completeResharding() {
+        ring = targetRing;
+        targetRing = null;
+        migratedUsers.clear();
+    }
+
+    /**
+     * 持有用户写锁执行迁移，期间该用户的读写请求等待
+     */
+    void withUserMoveLock(Long userId, Runnable action) {
+        Lock lock = lockFor(userId).writeLock();
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 持有全部用户写锁执行操作，用于重新分片最后的切换
+     */
+    void withAllUsersLocked(Runnable action) {
+        for (ReentrantReadWriteLock userLock : userLocks) {
+            userLock.writeLock().lock();
+        }
+        try {
+            action.run();
+        } finally {
+            for (int i = userLocks.length - 1; i >= 0; i--) {
+                userLocks[i].writeLock().unlock();
+            }
+        }
+    }
+
+    private ReentrantReadWriteLock lockFor(Long userId) {
+        return userLocks[Long.hashCode(userId) & (LOCK_STRIPES - 1)];
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Shard query failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdown();
+        }
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close shard resource: {}", e.getMessage());
+            }
+        }
+    }
+
+    private record Owner(Long userId) {
+    }
+}
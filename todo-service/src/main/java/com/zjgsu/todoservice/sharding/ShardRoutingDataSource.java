@@ -0,0 +1,25 @@
+package com.zjgsu.todoservice.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+
+/**
+ * 分片路由数据源
+ * 根据ShardContext选择分片，未设置时使用默认分片
+ * 分片在获取物理连接时确定，依赖application.yml中事务结束即归还连接的设置，请求内的每个事务才会重新选择分片
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(ShardRouter shardRouter) {
+        setTargetDataSources(new HashMap<>(shardRouter.getDataSources()));
+        setDefaultTargetDataSource(shardRouter.getDataSources().get(shardRouter.getDefaultShard()));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
@@ -0,0 +1,131 @@
+package com.zjgsu.todoservice.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片配置
+ * app.sharding.*
+ */
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    // 一致性哈希每个分片的虚拟节点数
+    private int virtualNodes = 64;
+
+    // 未指定用户的数据所在分片，默认取第一个分片
+    private String defaultShard;
+
+    // 参与哈希环的分片，默认全部；重新分片时通过管理接口调整
+    private List<String> active = new ArrayList<>();
+
+    // 分片数据源，key为分片名
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public String getDefaultShard() {
+        return defaultShard;
+    }
+
+    public void setDefaultShard(String defaultShard) {
+        this.defaultShard = defaultShard;
+    }
+
+    public List<String> getActive() {
+        return active;
+    }
+
+    public void setActive(List<String> active) {
+        this.active = active;
+    }
+
+    public Map<String, Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(Map<String, Shard> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * 单个分片的数据源配置，未配置的用户名/密码沿用spring.datasource
+     */
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private String replicaUrl;
+        // 连接初始化SQL，MySQL可设置auto_increment_increment/offset保证各分片ID不冲突
+        private String connectionInitSql;
+        private int maximumPoolSize = 10;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getReplicaUrl() {
+            return replicaUrl;
+        }
+
+        public void setReplicaUrl(String replicaUrl) {
+            this.replicaUrl = replicaUrl;
+        }
+
+        public String getConnectionInitSql() {
+            return connectionInitSql;
+        }
+
+        public void setConnectionInitSql(String connectionInitSql) {
+            this.connectionInitSql = connectionInitSql;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+}
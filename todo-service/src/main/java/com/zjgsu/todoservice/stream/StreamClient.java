@@ -0,0 +1,98 @@
+package com.zjgsu.todoservice.stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单个SSE连接
+ * 待发送事件放入有界队列，由共享执行器异步写出，慢客户端不会阻塞事件分发
+ * 队列写满说明客户端跟不上，断开连接，客户端携带Last-Event-ID重连后从回放缓冲区补齐
+ */
+class StreamClient {
+
+    private final Long userId;
+    private final SseEmitter emitter;
+    private final BlockingQueue<SseEmitter.SseEventBuilder> pending;
+    private final Executor executor;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile long lastSentAt = System.nanoTime();
+
+    StreamClient(Long userId, SseEmitter emitter, int capacity, Executor executor) {
+        this.userId = userId;
+        this.emitter = emitter;
+        this.pending = new ArrayBlockingQueue<>(capacity);
+        this.executor = executor;
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    long getLastSentAt() {
+        return lastSentAt;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * 加入发送队列，队列已满时返回false，由调用方断开连接
+     */
+    boolean offer(SseEmitter.SseEventBuilder event) {
+        if (closed.get() || !pending.offer(event)) {
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * 结束连接，返回是否由本次调用关闭
+     */
+    boolean close() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        pending.clear();
+        emitter.complete();
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!closed.get() && (event = pending.poll()) != null) {
+                emitter.send(event);
+                lastSentAt = System.nanoTime();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开，由emitter的完成回调注销连接
+            closed.set(true);
+            pending.clear();
+            emitter.completeWithError(e);
+        } finally {
+            draining.set(false);
+        }
+        // 释放标记后可能有新事件入队
+        if (!closed.get() && !pending.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.zjgsu.todoservice.stream;
+
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Todo事件推送
+ * 每个实例通过独占的匿名队列订阅一次全部todo事件，按userId分发给已连接的SSE客户端
+ * 最近的事件保存在回放缓冲区中，客户端断线重连时根据Last-Event-ID补发错过的事件
+ */
+@Service
+public class TodoEventStream {
+    private static final Logger logger = LoggerFactory.getLogger(TodoEventStream.class);
+
+    /**
+     * Last-Event-ID已不在回放缓冲区时发送，客户端应重新拉取完整列表
+     * 事件ID为当前最新的事件，之后重连从这里补发，不会再次收到reset
+     */
+    static final String RESET_EVENT = "reset";
+
+    private record StreamEvent(String id, Long userId, TodoEventMessage payload) {
+
+        SseEmitter.SseEventBuilder toSse() {
+            return SseEmitter.event()
+                    .id(id)
+                    .name(payload.getEventType())
+                    .data(payload, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final Map<Long, Set<StreamClient>> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger clientCount = new AtomicInteger();
+    // 回放缓冲区和分发共用同一把锁，保证新连接的补发与实时事件之间没有缺口或重复
+    private final ArrayDeque<StreamEvent> replayBuffer = new ArrayDeque<>();
+
+    private final int replayBufferSize;
+    private final int clientQueueCapacity;
+    private final long timeoutMillis;
+    private final long heartbeatNanos;
+
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("todo-stream-heartbeat").daemon().factory());
+
+    private final Counter queuedCounter;
+    private final Counter overflowCounter;
+    private final Counter resetCounter;
+
+    public TodoEventStream(MeterRegistry meterRegistry,
+                           @Value("${app.stream.replay-buffer-size:10000}") int replayBufferSize,
+                           @Value("${app.stream.client-queue-capacity:32}") int clientQueueCapacity,
+                           @Value("${app.stream.timeout:PT30M}") Duration timeout,
+                           @Value("${app.stream.heartbeat-interval:PT15S}") Duration heartbeatInterval) {
+        this.replayBufferSize = replayBufferSize;
+        this.clientQueueCapacity = clientQueueCapacity;
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeatNanos = heartbeatInterval.toNanos();
+
+        this.queuedCounter = Counter.builder("todo.stream.events").tag("result", "queued").register(meterRegistry);
+        this.overflowCounter = Counter.builder("todo.stream.events").tag("result", "overflow").register(meterRegistry);
+        this.resetCounter = Counter.builder("todo.stream.resets").register(meterRegistry);
+        Gauge.builder("todo.stream.clients", clientCount, AtomicInteger::get).register(meterRegistry);
+
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats,
+                heartbeatNanos, heartbeatNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 建立SSE连接
+     * @param lastEventId 客户端最后收到的事件ID，为null时只接收之后的新事件
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        return subscribe(userId, lastEventId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(Long userId, String lastEventId, SseEmitter emitter) {
+        StreamClient client = new StreamClient(userId, emitter, clientQueueCapacity, sender);
+        emitter.onCompletion(() -> unregister(client));
+        emitter.onTimeout(() -> unregister(client));
+        emitter.onError(e -> unregister(client));
+
+        // 先发送注释行，让代理和客户端立即收到响应头
+        client.offer(SseEmitter.event().comment("connected"));
+        synchronized (replayBuffer) {
+            if (lastEventId != null) {
+                replay(client, lastEventId);
+            }
+            if (!client.isClosed()) {
+                clients.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(client);
+                clientCount.incrementAndGet();
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * 消费todo事件
+     * 推送允许丢失，断线客户端通过回放或重新拉取补齐，使用自动确认
+     */
+    @RabbitListener(queues = "#{todoStreamQueue.name}", ackMode = "AUTO")
+    public void onTodoEvent(TodoEventMessage event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        String id = event.getEventId() != null ? event.getEventId()
+                : event.getTodoId() + "-" + event.getVersion() + "-" + event.getEventType();
+        StreamEvent streamEvent = new StreamEvent(id, event.getUserId(), event);
+        synchronized (replayBuffer) {
+            replayBuffer.addLast(streamEvent);
+            if (replayBuffer.size() > replayBufferSize) {
+                replayBuffer.removeFirst();
+            }
+            Set<StreamClient> subscribers = clients.get(event.getUserId());
+            if (subscribers != null) {
+                for (StreamClient client : subscribers) {
+                    deliver(client, streamEvent.toSse());
+                }
+            }
+        }
+    }
+
+    public int getClientCount() {
+        return clientCount.get();
+    }
+
+    /**
+     * 补发lastEventId之后属于该用户的事件，找不到时通知客户端重新拉取
+     */
+    private void replay(StreamClient client, String lastEventId) {
+        List<StreamEvent> missed = new ArrayList<>();
+        boolean found = false;
+        Iterator<StreamEvent> iterator = replayBuffer.descendingIterator();
+        while (iterator.hasNext()) {
+            StreamEvent event = iterator.next();
+            if (event.id().equals(lastEventId)) {
+                found = true;
+                break;
+            }
+            if (client.getUserId().equals(event.userId())) {
+                missed.add(event);
+            }
+        }
+        if (!found) {
+            resetCounter.increment();
+            // 缓冲区为空时发送空ID，客户端清除Last-Event-ID
+            StreamEvent head = replayBuffer.peekLast();
+            deliver(client, SseEmitter.event()
+                    .id(head != null ? head.id() : "")
+                    .name(RESET_EVENT)
+                    .data("{}", MediaType.APPLICATION_JSON));
+            return;
+        }
+        for (int i = missed.size() - 1; i >= 0; i--) {
+            deliver(client, missed.get(i).toSse());
+        }
+    }
+
+    private void deliver(StreamClient client, SseEmitter.SseEventBuilder event) {
+        if (client.offer(event)) {
+            queuedCounter.increment();
+        } else if (!client.isClosed()) {
+            overflowCounter.increment();
+            logger.debug("SSE client of user {} fell behind, closing connection", client.getUserId());
+            client.close();
+        }
+    }
+
+    private void unregister(StreamClient client) {
+        client.close();
+        Set<StreamClient> subscribers = clients.get(client.getUserId());
+        if (subscribers != null && subscribers.remove(client)) {
+            clientCount.decrementAndGet();
+            if (subscribers.isEmpty()) {
+                clients.remove(client.getUserId(), subscribers);
+            }
+        }
+    }
+
+    /**
+     * 向空闲连接发送注释行，防止代理因空闲关闭连接，同时及时发现已断开的客户端
+     */
+    private void sendHeartbeats() {
+        long idleBefore = System.nanoTime() - heartbeatNanos;
+        try {
+            for (Set<StreamClient> subscribers : clients.values()) {
+                for (StreamClient client : subscribers) {
+                    if (client.isClosed()) {
+                        unregister(client);
+                    } else if (client.getLastSentAt() - idleBefore <= 0) {
+                        client.offer(SseEmitter.event().comment("heartbeat"));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("SSE heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        for (Set<StreamClient> subscribers : clients.values()) {
+            subscribers.forEach(StreamClient::close);
+        }
+        sender.shutdown();
+    }
+}
@@ -0,0 +1,14 @@
+-- Todo表基线结构
+-- 只使用MySQL与H2(MySQL模式)都支持的语法，字符集沿用数据库默认的utf8mb4
+CREATE TABLE IF NOT EXISTS todos (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  title VARCHAR(200) NOT NULL,
+  description TEXT,
+  completed BOOLEAN NOT NULL DEFAULT FALSE,
+  user_id BIGINT,
+  created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  version BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE INDEX idx_completed ON todos (completed);
@@ -0,0 +1,8 @@
+-- 与TodoRepository查询方法对应的组合索引
+
+-- findByUserIdAndCompleted：user_id、completed等值匹配，结果按id有序
+-- findByUserId只用到user_id前缀，结果按(completed, id)顺序返回，不按id有序
+CREATE INDEX idx_todos_user_completed ON todos (user_id, completed, id);
+
+-- 用户Todo按最近更新排序(WHERE user_id = ? ORDER BY updated_at DESC)时无需filesort
+CREATE INDEX idx_todos_user_updated ON todos (user_id, updated_at);
@@ -0,0 +1,29 @@
+-- 增量同步：按用户单调递增的变更序号和删除墓碑
+
+-- 每个用户一行计数器，写事务持有该行锁直至提交，同一用户的变更按序号顺序提交
+CREATE TABLE IF NOT EXISTS todo_change_seq (
+  user_id BIGINT NOT NULL PRIMARY KEY,
+  seq BIGINT NOT NULL
+);
+
+-- 最近一次变更分配的序号
+ALTER TABLE todos ADD COLUMN change_seq BIGINT;
+
+-- 已有数据以id作为初始序号，id全局唯一，计数器从各用户最大id继续
+UPDATE todos SET change_seq = id WHERE user_id IS NOT NULL;
+INSERT INTO todo_change_seq (user_id, seq)
+SELECT user_id, MAX(id) FROM todos WHERE user_id IS NOT NULL GROUP BY user_id;
+
+-- findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc：按序号范围扫描，无需filesort
+CREATE INDEX idx_todos_user_change_seq ON todos (user_id, change_seq);
+
+-- 删除(或转移给其他用户)的Todo留下墓碑，序号与todos共用同一计数器
+CREATE TABLE IF NOT EXISTS todo_tombstones (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  todo_id BIGINT NOT NULL,
+  user_id BIGINT NOT NULL,
+  change_seq BIGINT NOT NULL,
+  deleted_at DATETIME NOT NULL
+);
+
+CREATE INDEX idx_tombstones_user_change_seq ON todo_tombstones (user_id, change_seq);
@@ -0,0 +1,15 @@
+-- 已完成Todo的归档层
+
+-- 归档扫描：completed=TRUE且updated_at早于截止时间，按范围扫描
+CREATE INDEX idx_todos_completed_updated ON todos (completed, updated_at);
+
+-- 归档的Todo以gzip压缩的JSON保存，只有显式请求includeArchived时读取
+CREATE TABLE IF NOT EXISTS todo_archive (
+  id BIGINT NOT NULL PRIMARY KEY,
+  user_id BIGINT,
+  payload MEDIUMBLOB NOT NULL,
+  updated_at DATETIME NOT NULL,
+  archived_at DATETIME NOT NULL
+);
+
+CREATE INDEX idx_todo_archive_user_id ON todo_archive (user_id);
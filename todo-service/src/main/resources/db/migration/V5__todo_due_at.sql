@@ -0,0 +1,9 @@
+-- 截止时间和到期提醒
+
+ALTER TABLE todos ADD COLUMN due_at DATETIME;
+
+-- 提醒已发送，防止多个实例或重启后重复提醒；修改截止时间时重置
+ALTER TABLE todos ADD COLUMN reminded BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- 提醒调度按时间窗口范围扫描即将到期的Todo
+CREATE INDEX idx_todos_due_at ON todos (due_at);
@@ -0,0 +1,7 @@
+-- 墓碑保留期限：过期墓碑定期删除，计数器记录已删除墓碑的最大序号
+
+-- since小于该序号的客户端可能错过已删除的墓碑，需要全量同步
+ALTER TABLE todo_change_seq ADD COLUMN purged_seq BIGINT NOT NULL DEFAULT 0;
+
+-- findByDeletedAtBeforeOrderByDeletedAtAsc：按删除时间范围扫描过期墓碑
+CREATE INDEX idx_tombstones_deleted_at ON todo_tombstones (deleted_at);
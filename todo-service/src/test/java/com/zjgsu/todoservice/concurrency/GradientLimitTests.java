@@ -0,0 +1,66 @@
+package com.zjgsu.todoservice.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 自适应并发限制测试
+ * 使用合成的样本序列，每个窗口10个样本，不设最短窗口时长
+ */
+class GradientLimitTests {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private long now;
+
+    @Test
+    void growsWhileLatencyStaysFlat() {
+        GradientLimit limit = limit(20);
+        feed(limit, 50, 10 * MILLIS, 20);
+        assertTrue(limit.getLimit() > 20, "limit: " + limit.getLimit());
+        feed(limit, 1000, 10 * MILLIS, 400);
+        assertEquals(200, limit.getLimit());
+    }
+
+    @Test
+    void shrinksWhenLatencyRisesUnderLoad() {
+        GradientLimit limit = limit(100);
+        feed(limit, 20, 10 * MILLIS, 100);
+        int before = limit.getLimit();
+        // 过载：并发用满，延迟升到基线的4倍
+        feed(limit, 30, 40 * MILLIS, 200);
+        assertTrue(limit.getLimit() < before / 2, "before " + before + ", after " + limit.getLimit());
+    }
+
+    @Test
+    void neverDropsBelowTheMinimum() {
+        GradientLimit limit = limit(50);
+        feed(limit, 5, 10 * MILLIS, 50);
+        feed(limit, 100, 500 * MILLIS, 500);
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void ignoresWindowsThatDoNotUseHalfTheLimit() {
+        GradientLimit limit = limit(100);
+        feed(limit, 50, 10 * MILLIS, 10);
+        feed(limit, 50, 80 * MILLIS, 10);
+        assertEquals(100, limit.getLimit());
+    }
+
+    private static GradientLimit limit(int initial) {
+        return new GradientLimit(initial, 5, 200, 0.2, 1.5, 0, 10);
+    }
+
+    /**
+     * 输入若干个窗口的样本，每个样本的延迟和并发数相同
+     */
+    private void feed(GradientLimit limit, int windows, long rttNanos, int inflight) {
+        for (int i = 0; i < windows * 10; i++) {
+            now += MILLIS;
+            limit.onSample(now, rttNanos, Math.min(inflight, limit.getLimit()));
+        }
+    }
+}
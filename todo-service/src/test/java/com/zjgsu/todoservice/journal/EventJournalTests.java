@@ -0,0 +1,128 @@
+package com.zjgsu.todoservice.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 事件日志读写测试
+ */
+class EventJournalTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readerFollowsAppendsAcrossSegments() {
+        EventJournal journal = journal();
+        try (JournalReader reader = journal.openReader(0)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append("todo.created", payload(i), 1000L + i);
+            }
+            List<JournalRecord> records = reader.poll(1000);
+            assertEquals(100, records.size());
+            assertTrue(journal.getSegmentCount() > 1);
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals("todo.created", records.get(i).key());
+                assertEquals("event-" + i, new String(records.get(i).payload(), StandardCharsets.UTF_8));
+            }
+
+            assertTrue(reader.poll(10).isEmpty());
+            journal.append("todo.deleted", payload(100), 2000L);
+            assertEquals("todo.deleted", reader.poll(10).get(0).key());
+        } finally {
+            journal.destroy();
+        }
+    }
+
+    @Test
+    void reopenedJournalKeepsRecordsAndScansTimeRange() {
+        EventJournal journal = journal();
+        for (int i = 0; i < 50; i++) {
+            journal.append("todo.updated", payload(i), 1000L + i);
+        }
+        journal.destroy();
+
+        EventJournal reopened = journal();
+        try {
+            reopened.append("todo.updated", payload(50), 1050L);
+            List<JournalRecord> records = new ArrayList<>();
+            long count = reopened.scan(Instant.ofEpochMilli(1020), Instant.ofEpochMilli(1050), records::add);
+            assertEquals(31, count);
+            assertEquals("event-20", new String(records.get(0).payload(), StandardCharsets.UTF_8));
+            assertEquals("event-50", new String(records.get(30).payload(), StandardCharsets.UTF_8));
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    @Test
+    void reopenedJournalResumesLastSegment() {
+        EventJournal journal = journal();
+        for (int i = 0; i < 20; i++) {
+            journal.append("todo.updated", payload(i), 1000L + i);
+        }
+        long writeOffset = journal.getWriteOffset();
+        int segmentCount = journal.getSegmentCount();
+        journal.destroy();
+
+        EventJournal reopened = journal();
+        try {
+            assertEquals(writeOffset, reopened.getWriteOffset());
+            assertEquals(segmentCount, reopened.getSegmentCount());
+            assertEquals(writeOffset, reopened.append("todo.updated", payload(20), 1020L));
+
+            List<JournalRecord> records = new ArrayList<>();
+            reopened.scan(Instant.ofEpochMilli(1000), Instant.ofEpochMilli(1020), records::add);
+            assertEquals(21, records.size());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    @Test
+    void tornRecordStartsNewSegment() throws IOException {
+        EventJournal journal = journal();
+        for (int i = 0; i < 5; i++) {
+            journal.append("todo.updated", payload(i), 1000L + i);
+        }
+        long writeOffset = journal.getWriteOffset();
+        journal.destroy();
+        // 模拟length已落盘而内容未写完的记录
+        Path segment = directory.resolve(String.format("%020d.journal", EventJournal.segmentOf(writeOffset)));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(EventJournal.positionOf(writeOffset));
+            file.writeInt(30);
+        }
+
+        EventJournal reopened = journal();
+        try {
+            assertEquals(EventJournal.offset(EventJournal.segmentOf(writeOffset) + 1, 0), reopened.getWriteOffset());
+            reopened.append("todo.updated", payload(5), 1005L);
+            List<JournalRecord> records = new ArrayList<>();
+            reopened.scan(Instant.ofEpochMilli(1000), Instant.ofEpochMilli(1005), records::add);
+            assertEquals(6, records.size());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    private EventJournal journal() {
+        return new EventJournal(true, directory.toString(), DataSize.ofBytes(512), 1000, 60000);
+    }
+
+    private static byte[] payload(int i) {
+        return ("event-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
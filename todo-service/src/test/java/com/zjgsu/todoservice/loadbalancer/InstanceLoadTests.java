@@ -0,0 +1,81 @@
+package com.zjgsu.todoservice.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 实例负载估计测试
+ */
+class InstanceLoadTests {
+
+    private static final long MS = 1_000_000L;
+    private static final long DECAY = 10_000 * MS;
+
+    @Test
+    void latencySpikeIsTakenImmediatelyAndRecoversGradually() {
+        InstanceLoad load = new InstanceLoad(DECAY, 0);
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            now += 10 * MS;
+            load.start();
+            load.complete(10 * MS, now);
+        }
+        assertEquals(10 * MS, load.load(now), MS);
+
+        // 一次慢请求立刻把估计拉到该延迟
+        load.start();
+        load.complete(500 * MS, now);
+        assertEquals(500 * MS, load.load(now), MS);
+
+        // 之后的快请求按衰减时间常数逐步拉低估计，一个时间常数后仍明显偏高
+        for (int i = 0; i < 1000; i++) {
+            now += 10 * MS;
+            load.start();
+            load.complete(10 * MS, now);
+        }
+        assertTrue(load.load(now) > 100 * MS);
+        for (int i = 0; i < 9000; i++) {
+            now += 10 * MS;
+            load.start();
+            load.complete(10 * MS, now);
+        }
+        assertTrue(load.load(now) < 20 * MS, "estimate did not recover: " + load.load(now));
+    }
+
+    @Test
+    void inflightRequestsMultiplyTheCost() {
+        InstanceLoad load = new InstanceLoad(DECAY, 0);
+        load.start();
+        load.complete(20 * MS, 0);
+        double idle = load.load(0);
+
+        load.start();
+        load.start();
+        assertEquals(2, load.getInflight());
+        assertEquals(idle * 3, load.load(0), 1);
+    }
+
+    @Test
+    void unseededInstanceTakesOneProbeAtATime() {
+        InstanceLoad fresh = new InstanceLoad(DECAY, 0);
+        InstanceLoad slow = new InstanceLoad(DECAY, 0);
+        slow.start();
+        slow.complete(2000 * MS, 0);
+
+        // 没有样本且空闲的实例优先得到请求
+        assertTrue(fresh.load(0) < slow.load(0));
+        // 第一个请求还没返回时，不再继续向它发送
+        fresh.start();
+        assertTrue(fresh.load(0) > slow.load(0));
+    }
+
+    @Test
+    void idleInstanceDecaysTowardsZero() {
+        InstanceLoad load = new InstanceLoad(DECAY, 0);
+        load.start();
+        load.complete(1000 * MS, 0);
+        assertTrue(load.load(DECAY * 5) < 10 * MS);
+    }
+}
@@ -0,0 +1,50 @@
+package com.zjgsu.todoservice.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 实例负载记录清理测试
+ */
+class InstanceLoadTrackerTests {
+
+    private final InstanceLoadTracker tracker = new InstanceLoadTracker(Duration.ofSeconds(10), Duration.ofSeconds(1));
+
+    private final ServiceInstance a = instance("user-service", "10.0.0.1");
+    private final ServiceInstance b = instance("user-service", "10.0.0.2");
+    private final ServiceInstance other = instance("order-service", "10.0.0.3");
+
+    @Test
+    void dropsInstancesMissingFromTheList() {
+        InstanceLoad loadA = tracker.get(a);
+        InstanceLoad loadB = tracker.get(b);
+        InstanceLoad loadOther = tracker.get(other);
+
+        tracker.retain(List.of(a));
+
+        assertSame(loadA, tracker.get(a));
+        assertNotSame(loadB, tracker.get(b));
+        // 只清理同一服务的实例
+        assertSame(loadOther, tracker.get(other));
+    }
+
+    @Test
+    void keepsRecordsWhenListIsEmpty() {
+        InstanceLoad loadA = tracker.get(a);
+
+        tracker.retain(List.of());
+
+        assertSame(loadA, tracker.get(a));
+    }
+
+    private static ServiceInstance instance(String serviceId, String host) {
+        return new DefaultServiceInstance(serviceId + "-" + host, serviceId, host, 8080, false);
+    }
+}
@@ -0,0 +1,64 @@
+package com.zjgsu.todoservice.readmodel;
+
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import com.zjgsu.todoservice.dto.TodoSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 读模型墓碑测试
+ */
+class TodoReadModelTests {
+
+    private TodoReadModel todoReadModel;
+
+    @BeforeEach
+    void setUp() {
+        todoReadModel = new TodoReadModel("jdbc:h2:mem:read_model_tests;DB_CLOSE_DELAY=-1");
+        todoReadModel.beginRebuild();
+        todoReadModel.completeRebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        todoReadModel.beginRebuild();
+        todoReadModel.destroy();
+    }
+
+    @Test
+    void tombstoneRejectsStaleEventsUntilPurged() {
+        todoReadModel.upsert(new TodoSummary(1L, "a", false, 7L, LocalDateTime.now(), 1L));
+        assertTrue(todoReadModel.apply(event(1L, "deleted", 2L)));
+
+        assertFalse(todoReadModel.apply(event(1L, "updated", 1L)));
+        assertEquals(0, todoReadModel.findByUserId(7L).size());
+
+        // 保留时间内的墓碑不会被清除
+        assertEquals(0, todoReadModel.purgeTombstones(LocalDateTime.now().minusHours(1)));
+        assertEquals(1, todoReadModel.purgeTombstones(LocalDateTime.now().plusSeconds(1)));
+    }
+
+    @Test
+    void purgeKeepsLiveRows() {
+        todoReadModel.upsert(new TodoSummary(1L, "a", false, 7L, LocalDateTime.now(), 1L));
+        todoReadModel.upsert(new TodoSummary(2L, "b", false, 7L, LocalDateTime.now(), 1L));
+        todoReadModel.apply(event(2L, "deleted", 2L));
+
+        assertEquals(1, todoReadModel.purgeTombstones(LocalDateTime.now().plusSeconds(1)));
+        assertEquals(1, todoReadModel.findByUserId(7L).size());
+        assertEquals(1, todoReadModel.countTodos());
+    }
+
+    private static TodoEventMessage event(Long todoId, String eventType, Long version) {
+        TodoEventMessage event = new TodoEventMessage(todoId, "a", null, 7L, eventType);
+        event.setVersion(version);
+        return event;
+    }
+}
@@ -0,0 +1,133 @@
+package com.zjgsu.todoservice.reminder;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层时间轮测试
+ */
+class HierarchicalTimingWheelTests {
+
+    private static final long TICK = 1000;
+
+    @Test
+    void firesEachTimerInTheTickOfItsDeadlineAcrossLevels() {
+        // 每层16个槽，覆盖第0层到第3层
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK, 4, 4, 0);
+        Random random = new Random(42);
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            long deadline = TICK + random.nextLong(60_000L * TICK);
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = 0; now <= 60_001L * TICK; now += 7 * TICK) {
+            long current = now;
+            wheel.advanceTo(now, deadline -> {
+                assertTrue(deadline <= current, "fired early: " + deadline + " at " + current);
+                assertTrue(deadline > current - 8 * TICK, "fired late: " + deadline + " at " + current);
+                fired.add(deadline);
+            });
+        }
+        assertEquals(count, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledTimersDoNotFire() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 8, 3, 0);
+        HierarchicalTimingWheel.Timeout<String> kept = wheel.schedule(5 * TICK, "kept");
+        HierarchicalTimingWheel.Timeout<String> cancelled = wheel.schedule(5 * TICK, "cancelled");
+        HierarchicalTimingWheel.Timeout<String> far = wheel.schedule(100_000 * TICK, "far");
+
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+        assertTrue(wheel.cancel(far));
+        assertEquals(1, wheel.size());
+
+        List<String> fired = new ArrayList<>();
+        wheel.advanceTo(200_000 * TICK, fired::add);
+        assertEquals(List.of("kept"), fired);
+        assertFalse(kept.isPending());
+        assertFalse(wheel.cancel(kept));
+    }
+
+    @Test
+    void overdueTimersFireOnTheNextTickAndFarTimersAreRejected() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 4, 2, 0);
+        wheel.advanceTo(10 * TICK, value -> { });
+        wheel.schedule(0, "overdue");
+
+        List<String> fired = new ArrayList<>();
+        wheel.advanceTo(11 * TICK, fired::add);
+        assertEquals(List.of("overdue"), fired);
+
+        assertThrows(IllegalArgumentException.class, () -> wheel.schedule(1000 * TICK, "too far"));
+    }
+
+    /**
+     * 100万个待触发定时器下的调度和取消开销
+     * 提醒调度的配置：1秒tick，每层256个槽，3层，到期时间分布在未来一小时内
+     * 默认不执行，通过mvn test -Dgroups=benchmark -DexcludedGroups=运行，结果写入测试报告
+     */
+    @Test
+    @Tag("benchmark")
+    void scheduleAndCancelCostWithOneMillionPendingTimers(TestReporter reporter) {
+        int count = 1_000_000;
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK, 8, 3, 0);
+        Random random = new Random(7);
+        long[] deadlines = new long[count];
+        for (int i = 0; i < count; i++) {
+            deadlines[i] = random.nextLong(3600 * TICK);
+        }
+        List<HierarchicalTimingWheel.Timeout<Integer>> timeouts = new ArrayList<>(count);
+
+        // 预热
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < count; i++) {
+                timeouts.add(wheel.schedule(deadlines[i], i));
+            }
+            for (HierarchicalTimingWheel.Timeout<Integer> timeout : timeouts) {
+                wheel.cancel(timeout);
+            }
+            timeouts.clear();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            timeouts.add(wheel.schedule(deadlines[i], i));
+        }
+        long scheduleNanos = System.nanoTime() - start;
+        assertEquals(count, wheel.size());
+
+        // 在100万个定时器都在轮中时取消其中一半
+        start = System.nanoTime();
+        for (int i = 0; i < count; i += 2) {
+            wheel.cancel(timeouts.get(i));
+        }
+        long cancelNanos = System.nanoTime() - start;
+
+        int[] fired = new int[1];
+        start = System.nanoTime();
+        wheel.advanceTo(3600 * TICK, value -> fired[0]++);
+        long advanceNanos = System.nanoTime() - start;
+
+        assertEquals(count / 2, fired[0]);
+        assertEquals(0, wheel.size());
+        reporter.publishEntry("timing wheel", String.format("%d pending: schedule %.1f ns/op, cancel %.1f ns/op, "
+                        + "advance 3600 ticks %.1f ms (%.1f ns per fired timer)",
+                count, (double) scheduleNanos / count, (double) cancelNanos / (count / 2),
+                advanceNanos / 1e6, (double) advanceNanos / fired[0]));
+    }
+}
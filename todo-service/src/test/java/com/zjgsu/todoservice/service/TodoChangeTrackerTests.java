@@ -0,0 +1,47 @@
+package com.zjgsu.todoservice.service;
+
+import com.zjgsu.todoservice.model.Todo;
+import com.zjgsu.todoservice.repository.TodoChangeRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 变更跟踪测试
+ * 用动态代理记录计数器行的加锁顺序
+ */
+class TodoChangeTrackerTests {
+
+    private final List<Long> locked = new ArrayList<>();
+    private final TodoChangeRepository repository = (TodoChangeRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{TodoChangeRepository.class}, (proxy, method, args) ->
+                    switch (method.getName()) {
+                        case "incrementChangeSeq" -> {
+                            locked.add((Long) args[0]);
+                            yield null;
+                        }
+                        case "findChangeSeq" -> (Long) args[0] * 100;
+                        case "save" -> args[0];
+                        default -> null;
+                    });
+    private final TodoChangeTracker tracker = new TodoChangeTracker(repository);
+
+    @Test
+    void transferLocksCountersInAscendingUserOrder() {
+        assertEquals(300L, tracker.transfer(todo(7L), 3L));
+        assertEquals(700L, tracker.transfer(todo(3L), 7L));
+
+        assertEquals(List.of(3L, 7L, 3L, 7L), locked);
+    }
+
+    private static Todo todo(Long userId) {
+        Todo todo = new Todo();
+        todo.setId(1L);
+        todo.setUserId(userId);
+        return todo;
+    }
+}
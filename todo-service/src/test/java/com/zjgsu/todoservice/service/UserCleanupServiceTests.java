@@ -0,0 +1,122 @@
+package com.zjgsu.todoservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rabbitmq.client.Channel;
+import com.zjgsu.todoservice.repository.TodoArchiveRepository;
+import com.zjgsu.todoservice.repository.TodoChangeRepository;
+import com.zjgsu.todoservice.repository.TodoRepository;
+import com.zjgsu.todoservice.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 用户清理消费测试
+ * 用动态代理代替仓库、事务管理器和通道，记录删除批次与确认操作
+ */
+class UserCleanupServiceTests {
+
+    private static final int BATCH_SIZE = 2;
+
+    private final List<String> operations = new ArrayList<>();
+    // 各次deleteBatchByUserId的返回值，用完后返回0
+    private final Deque<Integer> todoBatches = new ArrayDeque<>();
+    private RuntimeException failure;
+
+    private final TodoRepository todoRepository = proxy(TodoRepository.class, (method, args) -> {
+        if (method.equals("deleteBatchByUserId")) {
+            if (failure != null) {
+                throw failure;
+            }
+            operations.add("todos:" + args[0]);
+            return todoBatches.isEmpty() ? 0 : todoBatches.poll();
+        }
+        return null;
+    });
+    private final TodoArchiveRepository todoArchiveRepository = proxy(TodoArchiveRepository.class,
+            (method, args) -> method.equals("deleteBatchByUserId") ? 0 : null);
+    private final TodoChangeRepository todoChangeRepository = proxy(TodoChangeRepository.class, (method, args) -> {
+        if (method.equals("deleteChangeSeq")) {
+            operations.add("changeSeq:" + args[0]);
+        }
+        return method.equals("deleteTombstoneBatchByUserId") ? 0 : null;
+    });
+    private final PlatformTransactionManager transactionManager =
+            proxy(PlatformTransactionManager.class, (method, args) -> null);
+    private final Channel channel = proxy(Channel.class, (method, args) -> {
+        if (method.startsWith("basic")) {
+            operations.add(method + ":" + args[0]);
+        }
+        return null;
+    });
+
+    private final UserCleanupService service = new UserCleanupService(todoRepository, todoArchiveRepository,
+            todoChangeRepository, ShardRouter.disabled(), new ObjectMapper().registerModule(new JavaTimeModule()),
+            transactionManager, new SimpleMeterRegistry(), BATCH_SIZE, 0);
+
+    @Test
+    void deletesInBatchesAndAcksAfterCleanup() throws Exception {
+        todoBatches.addAll(List.of(2, 2, 1));
+
+        service.onUserDeleted(message("{\"userId\":7,\"eventType\":\"deleted\"}"), channel);
+
+        // 不足一批时停止，之后删除计数器，最后确认
+        assertEquals(List.of("todos:7", "todos:7", "todos:7", "changeSeq:7", "basicAck:1"), operations);
+        assertEquals(5, service.getJob(7L).orElseThrow().deletedTodos());
+        assertEquals(UserCleanupService.State.COMPLETED, service.getJob(7L).orElseThrow().state());
+    }
+
+    @Test
+    void failedCleanupIsRejectedToDeadLetterQueue() throws Exception {
+        failure = new IllegalStateException("database unavailable");
+
+        service.onUserDeleted(message("{\"userId\":7,\"eventType\":\"deleted\"}"), channel);
+
+        assertEquals(List.of("basicReject:1"), operations);
+        assertEquals(UserCleanupService.State.FAILED, service.getJob(7L).orElseThrow().state());
+    }
+
+    @Test
+    void undecodableEventIsRejected() throws Exception {
+        service.onUserDeleted(message("not json"), channel);
+
+        assertEquals(List.of("basicReject:1"), operations);
+    }
+
+    @Test
+    void eventWithoutUserIsAcked() throws Exception {
+        service.onUserDeleted(message("{\"eventType\":\"deleted\"}"), channel);
+
+        assertEquals(List.of("basicAck:1"), operations);
+    }
+
+    private static Message message(String body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(1);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(UserCleanupServiceTests.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method.getName(), args));
+    }
+}
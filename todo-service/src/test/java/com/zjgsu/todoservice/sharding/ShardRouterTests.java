@@ -0,0 +1,145 @@
+package com.zjgsu.todoservice.sharding;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分片路由测试
+ * 使用两个H2内存库模拟分片
+ */
+class ShardRouterTests {
+
+    private ShardRouter shardRouter;
+    private Long userA;
+    private Long userB;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        dataSources.put("shard-a", shard("shard-a"));
+        dataSources.put("shard-b", shard("shard-b"));
+        shardRouter = new ShardRouter(dataSources, List.of("shard-a", "shard-b"), "shard-a", 16, List.of());
+
+        // 取两个位于不同分片的用户
+        userA = 1L;
+        userB = 2L;
+        while (shardRouter.isSameShard(userA, userB)) {
+            userB++;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardRouter.getDataSources().values().forEach(dataSource -> {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("DROP TABLE todos");
+            jdbcTemplate.execute("DROP TABLE node");
+        });
+        shardRouter.close();
+    }
+
+    @Test
+    void runsOnShardOfTodoOwner() {
+        insertTodo(10L, userB);
+
+        assertEquals(Optional.of(shardRouter.shardForUser(userB)),
+                shardRouter.onOwnerOf(10L, () -> Optional.of(ShardContext.current())));
+        assertTrue(shardRouter.onOwnerOf(11L, () -> Optional.of(ShardContext.current())).isEmpty());
+    }
+
+    /**
+     * 已迁走的用户在旧分片上残留副本时，操作仍在用户当前分片上执行
+     */
+    @Test
+    void ignoresCopyLeftOnPreviousShard() {
+        insertTodo(10L, userB);
+        new JdbcTemplate(shardRouter.getDataSources().get(shardRouter.shardForUser(userA)))
+                .update("INSERT INTO todos (id, user_id) VALUES (?, ?)", 10L, userB);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Optional.of(shardRouter.shardForUser(userB)),
+                    shardRouter.onOwnerOf(10L, () -> Optional.of(ShardContext.current())));
+        }
+    }
+
+    /**
+     * 请求内共用同一个EntityManager时，按application.yml中的连接处理方式，每个事务都按当时的ShardContext选择分片
+     */
+    @Test
+    void transactionsInOneRequestFollowTheirOwnShard() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties properties = yaml.getObject();
+        String handlingMode = properties.getProperty("spring.jpa.properties.hibernate.connection.handling_mode");
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shardRouter)));
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setPackagesToScan(ShardRouterTests.class.getPackageName());
+        factoryBean.setJpaPropertyMap(Map.of("hibernate.connection.handling_mode", handlingMode));
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+        TransactionTemplate transactionTemplate =
+                new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            String first = shardRouter.onUser(userA,
+                    () -> transactionTemplate.execute(status -> currentShard(entityManager)));
+            String second = shardRouter.onUser(userB,
+                    () -> transactionTemplate.execute(status -> currentShard(entityManager)));
+
+            assertEquals(shardRouter.shardForUser(userA), first);
+            assertEquals(shardRouter.shardForUser(userB), second);
+            assertNotEquals(first, second);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+            factoryBean.destroy();
+        }
+    }
+
+    private void insertTodo(Long id, Long userId) {
+        new JdbcTemplate(shardRouter.getDataSources().get(shardRouter.shardForUser(userId)))
+                .update("INSERT INTO todos (id, user_id) VALUES (?, ?)", id, userId);
+    }
+
+    private static String currentShard(EntityManager entityManager) {
+        return (String) entityManager.createNativeQuery("SELECT name FROM node").getSingleResult();
+    }
+
+    private static DataSource shard(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE todos (id BIGINT, user_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,113 @@
+package com.zjgsu.todoservice.stream;
+
+import com.zjgsu.todoservice.dto.TodoEventMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 事件推送回放测试
+ * 用记录写出内容的SseEmitter代替真实连接
+ */
+class TodoEventStreamTests {
+
+    private final TodoEventStream stream = new TodoEventStream(new SimpleMeterRegistry(), 100, 32,
+            Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    @AfterEach
+    void tearDown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void replaysMissedEventsOfUser() throws InterruptedException {
+        publish("e1", 7L);
+        publish("e2", 7L);
+        publish("e3", 8L);
+        publish("e4", 7L);
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.subscribe(7L, "e1", emitter);
+
+        List<String> events = emitter.await(3);
+        assertTrue(events.get(1).startsWith("id:e2\n"));
+        assertTrue(events.get(2).startsWith("id:e4\n"));
+    }
+
+    @Test
+    void resetCarriesCurrentHead() throws InterruptedException {
+        publish("e1", 7L);
+        publish("e2", 8L);
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.subscribe(7L, "evicted", emitter);
+
+        List<String> events = emitter.await(2);
+        assertTrue(events.get(1).startsWith("id:e2\nevent:" + TodoEventStream.RESET_EVENT + "\n"));
+    }
+
+    @Test
+    void resetOnEmptyBufferClearsLastEventId() throws InterruptedException {
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.subscribe(7L, "evicted", emitter);
+
+        List<String> events = emitter.await(2);
+        assertTrue(events.get(1).startsWith("id:\nevent:" + TodoEventStream.RESET_EVENT + "\n"));
+    }
+
+    @Test
+    void liveEventsFollowReplayWithoutGap() throws InterruptedException {
+        publish("e1", 7L);
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.subscribe(7L, "e1", emitter);
+        publish("e2", 7L);
+
+        List<String> events = emitter.await(2);
+        assertEquals(2, events.size());
+        assertTrue(events.get(1).startsWith("id:e2\n"));
+    }
+
+    private void publish(String eventId, Long userId) {
+        TodoEventMessage event = new TodoEventMessage();
+        event.setEventId(eventId);
+        event.setTodoId(1L);
+        event.setUserId(userId);
+        event.setEventType("updated");
+        stream.onTodoEvent(event);
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                text.append(data.getData());
+            }
+            events.add(text.toString());
+        }
+
+        /**
+         * 事件由发送线程异步写出，等待写出指定数量
+         */
+        List<String> await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(events.size() >= count, "Received " + events);
+            return events;
+        }
+    }
+}
@@ -1,21 +1,32 @@
 package com.zjgsu.user.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.DefaultJackson2JavaTypeMapper;
 import org.springframework.amqp.support.converter.Jackson2JavaTypeMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 /**
  * User Service RabbitMQ配置类
  * 主要用于接收todo事件通知
+ * 通知队列通过headers交换机按eventType选择性绑定，只接收订阅的事件类型
  */
 @Configuration
 public class RabbitMQConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(RabbitMQConfig.class);
+
+    private static final String LEGACY_ROUTING_KEY = "todo.*";
+
     /**
      * Topic交换机 - 接收todo事件
      */
@@ -28,8 +39,42 @@ public class RabbitMQConfig {
     }
 
     /**
-     * 用户通知队列 - 接收所有todo事件
-     * 使用通配符 todo.* 匹配所有todo相关事件
+     * Topic交换机 - 发布用户事件
+     * routing key: user.updated, user.deleted
+     */
+    @Bean
+    public TopicExchange userEventExchange() {
+        return ExchangeBuilder
+                .topicExchange("user.event.exchange")
+                .durable(true)
+                .build();
+    }
+
+    /**
+     * Headers交换机 - 按eventType消息头路由todo事件
+     * 与todo-service中的声明保持一致，两侧谁先启动都能建立拓扑
+     */
+    @Bean
+    public HeadersExchange todoEventHeadersExchange() {
+        return ExchangeBuilder
+                .headersExchange("todo.event.headers")
+                .durable(true)
+                .build();
+    }
+
+    /**
+     * 将headers交换机绑定到topic交换机，转发全部todo事件
+     */
+    @Bean
+    public Binding todoEventHeadersBinding() {
+        return BindingBuilder
+                .bind(todoEventHeadersExchange())
+                .to(todoEventExchange())
+                .with("todo.#");
+    }
+
+    /**
+     * 用户通知队列 - 接收订阅的todo事件
      */
     @Bean
     public Queue userNotificationQueue() {
@@ -39,15 +84,37 @@ public class RabbitMQConfig {
     }
 
     /**
-     * 绑定用户通知队列到todo事件交换机
-     * routing key: todo.* (匹配todo.created, todo.updated等所有todo事件)
+     * 绑定用户通知队列到headers交换机
+     * 每个订阅的事件类型一条绑定，匹配消息头 eventType
      */
     @Bean
-    public Binding userNotificationBinding() {
-        return BindingBuilder
-                .bind(userNotificationQueue())
-                .to(todoEventExchange())
-                .with("todo.*");  // 使用通配符匹配所有todo事件
+    public Declarables userNotificationBindings(
+            @Value("${app.messaging.subscribed-event-types:created,updated,deleted,toggled}") List<String> eventTypes) {
+        return new Declarables(eventTypes.stream()
+                .map(String::trim)
+                .filter(eventType -> !eventType.isEmpty())
+                .map(eventType -> (Declarable) BindingBuilder
+                        .bind(userNotificationQueue())
+                        .to(todoEventHeadersExchange())
+                        .where("eventType")
+                        .matches(eventType))
+                .toList());
+    }
+
+    /**
+     * 移除旧版本声明的 todo.* topic绑定
+     * 否则通知队列仍会收到全部事件，且与headers绑定重复投递
+     */
+    @Bean
+    public ApplicationRunner legacyNotificationBindingCleanup(AmqpAdmin amqpAdmin) {
+        return args -> {
+            try {
+                amqpAdmin.removeBinding(new Binding("user.notification.queue", Binding.DestinationType.QUEUE,
+                        "todo.event.exchange", LEGACY_ROUTING_KEY, null));
+            } catch (Exception e) {
+                logger.warn("Failed to remove legacy binding {}: {}", LEGACY_ROUTING_KEY, e.getMessage());
+            }
+        };
     }
 
     /**
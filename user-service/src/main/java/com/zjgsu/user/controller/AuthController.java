@@ -4,6 +4,7 @@ import com.zjgsu.user.common.ApiResponse;
 import com.zjgsu.user.dto.LoginRequest;
 import com.zjgsu.user.dto.LoginResponse;
 import com.zjgsu.user.model.User;
+import com.zjgsu.user.service.IdempotencyService;
 import com.zjgsu.user.service.UserService;
 import com.zjgsu.user.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +12,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * 认证控制器
  */
@@ -24,6 +28,9 @@ public class AuthController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     /**
      * 用户登录
      */
@@ -51,16 +58,24 @@ public class AuthController {
 
     /**
      * 用户注册
+     * 带Idempotency-Key请求头时，同一key的重复请求重放首次的响应
      */
     @PostMapping("/register")
-    public ResponseEntity<ApiResponse<User>> register(@RequestBody User user) {
+    public ResponseEntity<ApiResponse<User>> register(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody User user) {
         // 设置默认角色
         if (user.getRole() == null || user.getRole().isEmpty()) {
             user.setRole("USER");
         }
 
-        User createdUser = userService.createUser(user);
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ApiResponse.created(createdUser));
+        // 密码以带密钥的HMAC参与比对，同一key换了密码的重试返回422；响应中不含密码
+        List<Object> request = Arrays.asList(user.getUsername(), user.getEmail(), user.getRole(),
+                idempotencyService.secretDigest(user.getPassword()));
+        return idempotencyService.execute("register", idempotencyKey, request, User.class, () -> {
+            User createdUser = userService.createUser(user);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ApiResponse.created(createdUser));
+        });
     }
 }
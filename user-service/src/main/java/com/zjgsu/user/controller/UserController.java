@@ -1,6 +1,9 @@
 package com.zjgsu.user.controller;
 
 import com.zjgsu.user.common.ApiResponse;
+import com.zjgsu.user.common.EntityTags;
+import com.zjgsu.user.dto.UserDetail;
+import com.zjgsu.user.dto.UserSummary;
 import com.zjgsu.user.model.User;
 import com.zjgsu.user.service.UserService;
 import org.springframework.http.HttpStatus;
@@ -8,6 +11,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * 用户管理Controller
@@ -17,6 +21,11 @@ import java.util.List;
 @RequestMapping("/api/users")
 public class UserController {
 
+    // 摘要视图包含的字段
+    private static final Set<String> SUMMARY_FIELDS = Set.of("id", "username", "role", "version");
+    // 需要扩展为详情视图的字段
+    private static final Set<String> DETAIL_FIELDS = Set.of("email", "createdAt");
+
     private final UserService userService;
 
     public UserController(UserService userService) {
@@ -25,11 +34,13 @@ public class UserController {
 
     /**
      * 获取所有用户
-     * GET /api/users
+     * GET /api/users?fields=
+     * 默认返回摘要视图，fields包含email/createdAt时返回详情视图
      */
     @GetMapping
-    public ResponseEntity<ApiResponse<List<User>>> getAllUsers() {
-        List<User> users = userService.findAll();
+    public ResponseEntity<ApiResponse<List<?>>> getAllUsers(
+            @RequestParam(required = false) String fields) {
+        List<?> users = userService.findAll(resolveListView(fields));
         return ResponseEntity.ok(ApiResponse.success(users));
     }
 
@@ -40,11 +51,47 @@ public class UserController {
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<User>> getUserById(@PathVariable Long id) {
         return userService.findById(id)
+                .map(user -> ResponseEntity.ok()
+                        .eTag(EntityTags.of(user.getVersion()))
+                        .body(ApiResponse.success(user)))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.notFound("User not found with id: " + id)));
+    }
+
+    /**
+     * 获取用户摘要（供服务间调用的轻量级接口）
+     * GET /api/users/{id}/summary
+     * 只查询摘要视图的列，不包含密码哈希、邮箱
+     */
+    @GetMapping("/{id}/summary")
+    public ResponseEntity<ApiResponse<UserSummary>> getUserSummary(@PathVariable Long id) {
+        return userService.findById(id, UserSummary.class)
                 .map(user -> ResponseEntity.ok(ApiResponse.success(user)))
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.notFound("User not found with id: " + id)));
     }
 
+    /**
+     * 检查用户是否存在（供服务间调用的轻量级接口）
+     * GET /api/users/{id}/exists
+     * 只返回布尔值，不序列化用户详情（密码哈希、邮箱等）
+     */
+    @GetMapping("/{id}/exists")
+    public ResponseEntity<ApiResponse<Boolean>> existsUser(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(userService.existsById(id)));
+    }
+
+    /**
+     * 检查用户是否存在，只返回状态码
+     * HEAD /api/users/{id}
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headUser(@PathVariable Long id) {
+        return userService.existsById(id)
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.notFound().build();
+    }
+
     /**
      * 创建用户
      * POST /api/users
@@ -59,13 +106,17 @@ public class UserController {
     /**
      * 更新用户
      * PUT /api/users/{id}
+     * 支持If-Match请求头进行乐观并发控制
      */
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<User>> updateUser(
             @PathVariable Long id,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody User user) {
-        User updated = userService.updateUser(id, user);
-        return ResponseEntity.ok(ApiResponse.success(updated));
+        User updated = userService.updateUser(id, user, EntityTags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(EntityTags.of(updated.getVersion()))
+                .body(ApiResponse.success(updated));
     }
 
     /**
@@ -73,8 +124,31 @@ public class UserController {
      * DELETE /api/users/{id}
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<ApiResponse<Void>> deleteUser(@PathVariable Long id) {
-        userService.deleteUser(id);
+    public ResponseEntity<ApiResponse<Void>> deleteUser(
+            @PathVariable Long id,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        userService.deleteUser(id, EntityTags.parseIfMatch(ifMatch));
         return ResponseEntity.ok(ApiResponse.success("User deleted successfully"));
     }
+
+    /**
+     * 根据fields参数选择列表投影
+     */
+    private Class<?> resolveListView(String fields) {
+        Class<?> view = UserSummary.class;
+        if (fields == null || fields.isBlank()) {
+            return view;
+        }
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty() || SUMMARY_FIELDS.contains(name)) {
+                continue;
+            }
+            if (!DETAIL_FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unsupported field: " + name);
+            }
+            view = UserDetail.class;
+        }
+        return view;
+    }
 }
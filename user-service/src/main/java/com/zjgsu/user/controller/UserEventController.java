@@ -0,0 +1,33 @@
+package com.zjgsu.user.controller;
+
+import com.zjgsu.user.common.ApiResponse;
+import com.zjgsu.user.messaging.UserEventOutbox;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户事件Controller
+ * todo-service遗漏清理已删除用户的数据时，按删除时间重新发布user.deleted事件对账
+ */
+@RestController
+@RequestMapping("/api/admin/user-events")
+public class UserEventController {
+
+    private final UserEventOutbox userEventOutbox;
+
+    public UserEventController(UserEventOutbox userEventOutbox) {
+        this.userEventOutbox = userEventOutbox;
+    }
+
+    /**
+     * 重新发布指定时间之后的用户删除事件
+     * POST /api/admin/user-events/deleted/republish?since=2024-01-01T00:00:00
+     */
+    @PostMapping("/deleted/republish")
+    public ApiResponse<Integer> republishDeleted(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        return ApiResponse.success(userEventOutbox.republishDeleted(since));
+    }
+}
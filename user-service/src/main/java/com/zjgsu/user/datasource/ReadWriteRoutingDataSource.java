@@ -0,0 +1,86 @@
+package com.zjgsu.user.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * 读写分离路由数据源
+ * 只读事务路由到副本库，其余路由到主库；只有读写事务会记录为用户的写操作
+ * 需要包装在LazyConnectionDataSourceProxy中，保证获取连接时事务的只读标记已经生效
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private static final String USER_ID_HEADER = "X-User-Id";
+
+    private final DataSource primary;
+    private final ReadYourWritesTracker tracker;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWritesTracker tracker) {
+        this.primary = primary;
+        this.tracker = tracker;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        // 事务之外获取的连接走主库，但不算作写操作
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+        String userId = currentUserId();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            tracker.recordWrite(userId);
+            return PRIMARY;
+        }
+        // 读己之写：用户刚写过主库，副本可能尚未同步
+        if (tracker.recentlyWrote(userId)) {
+            return PRIMARY;
+        }
+        return REPLICA;
+    }
+
+    /**
+     * 副本库不可用时回退到主库
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target == primary) {
+            return target.getConnection();
+        }
+        try {
+            return target.getConnection();
+        } catch (SQLException e) {
+            logger.warn("Replica unavailable, falling back to primary: {}", e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * 从当前HTTP请求中获取网关传递的用户ID，非请求线程返回null
+     */
+    private String currentUserId() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            return servletAttributes.getRequest().getHeader(USER_ID_HEADER);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.zjgsu.user.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户列表详情视图
+ * 列表接口通过fields参数请求email/createdAt时使用，永远不包含密码
+ */
+public record UserDetail(
+        Long id,
+        String username,
+        String email,
+        String role,
+        LocalDateTime createdAt,
+        Long version) {
+}
@@ -0,0 +1,80 @@
+package com.zjgsu.user.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 用户事件消息DTO
+ * 发送到user.event.exchange，routing key为 user.<eventType>
+ */
+public class UserEventMessage implements Serializable {
+
+    private String eventId;
+    private Long userId;
+    private String username;
+    private String eventType;  // updated, deleted
+    private LocalDateTime timestamp;
+
+    public UserEventMessage() {
+        this.eventId = UUID.randomUUID().toString();
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public UserEventMessage(Long userId, String username, String eventType) {
+        this();
+        this.userId = userId;
+        this.username = username;
+        this.eventType = eventType;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "UserEventMessage{" +
+                "eventId='" + eventId + '\'' +
+                ", userId=" + userId +
+                ", eventType='" + eventType + '\'' +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
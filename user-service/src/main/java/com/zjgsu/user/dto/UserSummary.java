@@ -0,0 +1,12 @@
+package com.zjgsu.user.dto;
+
+/**
+ * 用户列表摘要视图
+ * 列表接口默认使用，只查询列表展示所需的列
+ */
+public record UserSummary(
+        Long id,
+        String username,
+        String role,
+        Long version) {
+}
@@ -0,0 +1,11 @@
+package com.zjgsu.user.exception;
+
+/**
+ * Idempotency-Key复用异常
+ * 同一个key被用于内容不同的请求时抛出
+ */
+public class IdempotencyKeyException extends RuntimeException {
+    public IdempotencyKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.zjgsu.user.exception;
+
+/**
+ * 前置条件失败异常
+ * If-Match携带的版本号与资源当前版本不一致时抛出
+ */
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+    public PreconditionFailedException(String resource, Long id, Long expectedVersion, Long currentVersion) {
+        super(resource + " version mismatch for id: " + id
+                + " (expected " + expectedVersion + ", current " + currentVersion + ")");
+    }
+}
@@ -0,0 +1,168 @@
+package com.zjgsu.user.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事件去重窗口
+ * 记录去重窗口内已处理的事件ID，重复投递的事件直接确认而不再执行处理逻辑
+ * 内存中按处理完成时间淘汰，可选写入processed_events表，使去重在重启后仍然有效
+ */
+@Component
+public class EventDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(EventDeduplicator.class);
+
+    public enum Result {
+        /** 首次处理，调用方处理完成后必须调用complete或abort */
+        ACQUIRED,
+        /** 窗口内已处理过 */
+        DUPLICATE,
+        /** 另一个消费线程正在处理同一事件 */
+        IN_PROGRESS
+    }
+
+    private record Completion(String eventId, Instant completedAt) {
+    }
+
+    // 值为EPOCH表示处理中，否则为处理完成时间
+    private final Map<String, Instant> seen = new ConcurrentHashMap<>();
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger completionCount = new AtomicInteger();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration window;
+    private final int maxEntries;
+    private final Clock clock;
+    private final Counter duplicateCounter;
+    private volatile Instant lastPurge = Instant.EPOCH;
+
+    @Autowired
+    public EventDeduplicator(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                             @Value("${app.messaging.dedup.persistent:false}") boolean persistent,
+                             @Value("${app.messaging.dedup.window:PT1H}") Duration window,
+                             @Value("${app.messaging.dedup.max-entries:100000}") int maxEntries) {
+        this(persistent ? jdbcTemplate : null, meterRegistry, window, maxEntries, Clock.systemUTC());
+    }
+
+    EventDeduplicator(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry, Duration window, int maxEntries,
+                      Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.window = window;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.duplicateCounter = Counter.builder("user.todo_events.duplicates").register(meterRegistry);
+        Gauge.builder("user.todo_events.dedup.size", seen, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 尝试开始处理事件
+     */
+    public Result tryBegin(String eventId) {
+        evictExpired();
+        Instant previous = seen.putIfAbsent(eventId, Instant.EPOCH);
+        if (previous != null) {
+            if (previous.equals(Instant.EPOCH)) {
+                return Result.IN_PROGRESS;
+            }
+            duplicateCounter.increment();
+            return Result.DUPLICATE;
+        }
+        if (isPersistedDuplicate(eventId)) {
+            // 记为已完成，窗口内再次投递时不必重新查询数据库
+            remember(eventId, clock.instant());
+            duplicateCounter.increment();
+            return Result.DUPLICATE;
+        }
+        return Result.ACQUIRED;
+    }
+
+    /**
+     * 处理成功，事件ID在去重窗口内保留
+     */
+    public void complete(String eventId) {
+        Instant now = clock.instant();
+        remember(eventId, now);
+        if (jdbcTemplate != null) {
+            try {
+                jdbcTemplate.update("INSERT INTO processed_events (event_id, processed_at) VALUES (?, ?)",
+                        eventId, Timestamp.from(now));
+            } catch (DuplicateKeyException e) {
+                // 其他实例已记录
+            } catch (DataAccessException e) {
+                logger.warn("Failed to persist processed event {}: {}", eventId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 处理失败，释放事件ID以便重新投递时再次处理
+     */
+    public void abort(String eventId) {
+        seen.remove(eventId, Instant.EPOCH);
+    }
+
+    private void remember(String eventId, Instant completedAt) {
+        seen.put(eventId, completedAt);
+        completions.add(new Completion(eventId, completedAt));
+        completionCount.incrementAndGet();
+    }
+
+    private boolean isPersistedDuplicate(String eventId) {
+        if (jdbcTemplate == null) {
+            return false;
+        }
+        try {
+            Integer count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM processed_events WHERE event_id = ? AND processed_at >= ?",
+                    Integer.class, eventId, Timestamp.from(clock.instant().minus(window)));
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            // 去重存储不可用时按首次处理，最多退化为重复处理
+            logger.warn("Dedup store lookup failed for {}: {}", eventId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 淘汰超出时间窗口或数量上限的已完成事件，处理中的事件不受影响
+     */
+    private void evictExpired() {
+        Instant cutoff = clock.instant().minus(window);
+        Completion head;
+        while ((head = completions.peek()) != null
+                && (head.completedAt().isBefore(cutoff) || completionCount.get() > maxEntries)) {
+            if (completions.remove(head)) {
+                completionCount.decrementAndGet();
+                seen.remove(head.eventId(), head.completedAt());
+            }
+        }
+        if (jdbcTemplate != null && lastPurge.isBefore(cutoff)) {
+            // 每个窗口周期清理一次过期记录
+            lastPurge = clock.instant();
+            try {
+                jdbcTemplate.update("DELETE FROM processed_events WHERE processed_at < ?", Timestamp.from(cutoff));
+            } catch (DataAccessException e) {
+                logger.warn("Failed to purge processed events: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.zjgsu.user.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件处理通道
+ * 按分区键(userId)把任务分配到K个单线程通道，同一用户的事件按到达顺序串行处理，不同用户之间并行
+ * 通道队列有界，队列满时分发线程阻塞，配合监听容器的prefetch形成背压
+ */
+@Component
+public class EventLanes {
+    private static final Logger logger = LoggerFactory.getLogger(EventLanes.class);
+
+    private final Lane[] lanes;
+    private final long shutdownTimeoutMillis;
+
+    public EventLanes(MeterRegistry meterRegistry,
+                      @Value("${app.messaging.lanes.count:8}") int laneCount,
+                      @Value("${app.messaging.lanes.capacity:64}") int capacity,
+                      @Value("${app.messaging.lanes.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        if (laneCount <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Lane count and capacity must be positive");
+        }
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, capacity, meterRegistry);
+        }
+        // 最深通道与平均深度之比，1表示均衡，越大说明热点用户越集中
+        Gauge.builder("user.todo_events.lane.skew", this, EventLanes::skew).register(meterRegistry);
+    }
+
+    /**
+     * 把任务分配到分区键对应的通道，通道已满时阻塞等待
+     */
+    public void dispatch(Long partitionKey, Runnable task) throws InterruptedException {
+        lanes[laneOf(partitionKey)].queue.put(task);
+    }
+
+    int laneOf(Long partitionKey) {
+        return partitionKey == null ? 0 : Math.floorMod(Long.hashCode(partitionKey), lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    double skew() {
+        int max = 0;
+        long total = 0;
+        for (Lane lane : lanes) {
+            int depth = lane.queue.size();
+            max = Math.max(max, depth);
+            total += depth;
+        }
+        return total == 0 ? 0 : max / ((double) total / lanes.length);
+    }
+
+    /**
+     * 等待已分配的任务处理完成，超时后中断通道线程
+     * 未处理的消息未确认，连接关闭后由broker重新投递
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        for (Lane lane : lanes) {
+            // 停止标记排在已分配的任务之后
+            lane.queue.offer(Lane.STOP, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        for (Lane lane : lanes) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !lane.thread.join(Duration.ofNanos(remaining))) {
+                lane.thread.interrupt();
+            }
+        }
+    }
+
+    private static final class Lane implements Runnable {
+        private static final Runnable STOP = () -> { };
+
+        private final BlockingQueue<Runnable> queue;
+        private final Counter processedCounter;
+        private final Thread thread;
+
+        Lane(int index, int capacity, MeterRegistry meterRegistry) {
+            this.queue = new LinkedBlockingQueue<>(capacity);
+            String lane = String.valueOf(index);
+            this.processedCounter = Counter.builder("user.todo_events.lane.processed")
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+            Gauge.builder("user.todo_events.lane.depth", queue, BlockingQueue::size)
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+            this.thread = Thread.ofPlatform().name("todo-event-lane-" + index).start(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = queue.take()) != STOP) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Unhandled error in {}: {}", Thread.currentThread().getName(), e.getMessage(), e);
+                    }
+                    processedCounter.increment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
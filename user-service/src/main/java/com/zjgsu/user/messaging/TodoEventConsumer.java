@@ -1,37 +1,152 @@
 package com.zjgsu.user.messaging;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Todo事件消费者
  * 监听todo相关事件并处理
  * 实现手动确认机制确保消息可靠性
+ * 按消息content-type解码JSON或CBOR格式的事件
+ * 优先读取eventType消息头，未订阅的事件类型不解码直接确认
+ * 按message-id(事件ID)去重，去重窗口内重复投递的事件直接确认，不再执行处理逻辑；
+ * 同一事件正在处理时，重复投递排在同一通道中等待其结束后再判断
+ * 监听线程只做过滤和分发，事件按userId分配到EventLanes的单线程通道处理，同一用户的事件保持顺序
+ * 处理失败时在通道线程上按退避重试，只阻塞该通道，同一用户之后的事件在其后等待；
+ * 重试耗尽或无法解码的事件拒绝且不重新入队，避免排到同一用户更新的事件之后
  */
 @Component
 public class TodoEventConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(TodoEventConsumer.class);
+
+    private static final String CBOR_CONTENT_TYPE = "application/cbor";
+    private static final String EVENT_TYPE_HEADER = "eventType";
+    private static final String USER_ID_HEADER = "userId";
 
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new CBORMapper();
+
+    private final Set<String> subscribedEventTypes;
+    private final EventDeduplicator eventDeduplicator;
+    private final EventLanes eventLanes;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+    private final Counter failedCounter;
+
+    public TodoEventConsumer(
+            @Value("${app.messaging.subscribed-event-types:created,updated,deleted,toggled}") List<String> eventTypes,
+            EventDeduplicator eventDeduplicator, EventLanes eventLanes, MeterRegistry meterRegistry,
+            @Value("${app.messaging.lanes.max-attempts:3}") int maxAttempts,
+            @Value("${app.messaging.lanes.retry-backoff:PT1S}") Duration retryBackoff,
+            @Value("${app.messaging.lanes.max-retry-backoff:PT10S}") Duration maxRetryBackoff) {
+        this.eventDeduplicator = eventDeduplicator;
+        this.eventLanes = eventLanes;
+        this.subscribedEventTypes = Set.copyOf(eventTypes.stream().map(String::trim).toList());
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+        this.failedCounter = Counter.builder("user.todo_events.failed")
+                .description("Todo events rejected after exhausting in-lane retries")
+                .register(meterRegistry);
+    }
 
     /**
      * 监听用户通知队列
-     * 接收todo.* 路由的所有todo事件
+     * 接收headers交换机按eventType路由的todo事件
+     * 容器保持单个消费者，分发顺序即队列顺序；确认由通道线程在处理完成后发出
      */
     @RabbitListener(queues = "user.notification.queue")
     public void handleTodoEvent(Message message, Channel channel) throws IOException {
         long deliveryTag = message.getMessageProperties().getDeliveryTag();
 
+        // 迁移期间旧绑定可能仍投递未订阅的事件，按消息头过滤，无需反序列化消息体
+        String headerEventType = message.getMessageProperties().getHeader(EVENT_TYPE_HEADER);
+        if (headerEventType != null && !subscribedEventTypes.contains(headerEventType)) {
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+
+        // 旧版本生产者发送的消息没有message-id，不做去重
+        String eventId = message.getMessageProperties().getMessageId();
+        Runnable task = () -> process(message, channel, eventId, headerEventType);
+        boolean acquired = false;
+        if (eventId != null) {
+            EventDeduplicator.Result result = eventDeduplicator.tryBegin(eventId);
+            if (result == EventDeduplicator.Result.DUPLICATE) {
+                channel.basicAck(deliveryTag, false);
+                return;
+            }
+            acquired = result == EventDeduplicator.Result.ACQUIRED;
+            if (!acquired) {
+                // 同一事件的分区键相同，正在处理的那次投递在同一通道中排在前面，
+                // 排队等它结束后再判断，不立即重新入队，避免broker反复投递形成忙循环
+                task = () -> processAfterInFlight(message, channel, eventId, headerEventType);
+            }
+        }
+
+        try {
+            eventLanes.dispatch(partitionKey(message), task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (acquired) {
+                eventDeduplicator.abort(eventId);
+            }
+            channel.basicNack(deliveryTag, false, true);
+        }
+    }
+
+    /**
+     * 在事件通道线程上处理之前处于处理中的重复投递
+     * 前一次处理成功时直接确认，失败时由本次投递重新处理
+     */
+    private void processAfterInFlight(Message message, Channel channel, String eventId, String headerEventType) {
+        EventDeduplicator.Result result = eventDeduplicator.tryBegin(eventId);
+        if (result == EventDeduplicator.Result.ACQUIRED) {
+            process(message, channel, eventId, headerEventType);
+            return;
+        }
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        try {
+            if (result == EventDeduplicator.Result.DUPLICATE) {
+                channel.basicAck(deliveryTag, false);
+            } else {
+                // 前一次投递不在本通道(如消息头缺失时分区键不同)，只能重新入队
+                channel.basicNack(deliveryTag, false, true);
+            }
+        } catch (IOException e) {
+            // 通道已关闭，未确认的消息由broker重新投递
+            System.err.println("✗ 消息确认失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在事件通道线程上处理单条事件并确认
+     */
+    private void process(Message message, Channel channel, String eventId, String headerEventType) {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
         try {
-            // 解析消息内容为JSON Map
-            String messageBody = new String(message.getBody(), StandardCharsets.UTF_8);
-            Map<String, Object> todoEvent = objectMapper.readValue(messageBody, Map.class);
+            // 解析消息内容为Map
+            Map<String, Object> todoEvent = decode(message);
+            String messageBody = isCbor(message)
+                    ? todoEvent.toString()
+                    : new String(message.getBody(), StandardCharsets.UTF_8);
 
             System.out.println("==============================================");
             System.out.println("用户服务接收到Todo事件: " + messageBody);
@@ -44,21 +159,90 @@ public class TodoEventConsumer {
             System.out.println("==============================================");
 
             // 处理业务逻辑
-            processTodoEvent(todoEvent, message.getMessageProperties().getReceivedRoutingKey());
+            if (headerEventType != null) {
+                todoEvent.put("eventType", headerEventType);
+            }
+            processWithRetry(todoEvent, message.getMessageProperties().getReceivedRoutingKey(), eventId);
 
-            // 手动确认消息
+            // 先记录处理完成再确认，确认丢失导致的重新投递也能被去重
+            if (eventId != null) {
+                eventDeduplicator.complete(eventId);
+            }
             channel.basicAck(deliveryTag, false);
             System.out.println("✓ 消息确认成功: delivery tag = " + deliveryTag);
 
+        } catch (InterruptedException e) {
+            // 关闭时中断退避，重新入队由之后的消费者处理
+            Thread.currentThread().interrupt();
+            reject(channel, deliveryTag, eventId, true);
         } catch (Exception e) {
-            System.err.println("✗ 处理消息失败: " + e.getMessage());
-            e.printStackTrace();
+            failedCounter.increment();
+            logger.error("Giving up on todo event {} (delivery tag {}): {}", eventId, deliveryTag, e.getMessage(), e);
+            reject(channel, deliveryTag, eventId, false);
+        }
+    }
 
-            // 拒绝消息并重新入队（最多重试3次，配置在bootstrap.yml中）
-            // false = 不批量拒绝, true = 重新入队
-            channel.basicNack(deliveryTag, false, true);
-            System.err.println("消息已重新入队: delivery tag = " + deliveryTag);
+    /**
+     * 在通道线程上重试，第n次重试前等待retry-backoff * 2^(n-1)，不超过max-retry-backoff
+     */
+    private void processWithRetry(Map<String, Object> todoEvent, String routingKey, String eventId)
+            throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                processTodoEvent(todoEvent, routingKey);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                long backoff = Math.min(maxRetryBackoff.toMillis(),
+                        retryBackoff.toMillis() << Math.min(attempt - 1, 20));
+                logger.warn("Todo event {} failed on attempt {}, retrying in {} ms: {}",
+                        eventId, attempt, backoff, e.getMessage());
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    private void reject(Channel channel, long deliveryTag, String eventId, boolean requeue) {
+        if (eventId != null) {
+            eventDeduplicator.abort(eventId);
         }
+        try {
+            channel.basicNack(deliveryTag, false, requeue);
+        } catch (IOException e) {
+            // 通道已关闭，未确认的消息由broker重新投递
+            logger.warn("Failed to reject delivery {}: {}", deliveryTag, e.getMessage());
+        }
+    }
+
+    /**
+     * 分区键优先取userId消息头，旧消息从消息体读取，无法解析时分配到固定通道
+     */
+    private Long partitionKey(Message message) {
+        Object userId = message.getMessageProperties().getHeader(USER_ID_HEADER);
+        if (userId == null) {
+            try {
+                userId = decode(message).get("userId");
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return userId instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * 按content-type选择解码器，未声明content-type的旧消息按JSON处理
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> decode(Message message) throws IOException {
+        ObjectMapper mapper = isCbor(message) ? cborMapper : objectMapper;
+        return mapper.readValue(message.getBody(), Map.class);
+    }
+
+    private boolean isCbor(Message message) {
+        String contentType = message.getMessageProperties().getContentType();
+        return contentType != null && contentType.startsWith(CBOR_CONTENT_TYPE);
     }
 
     /**
@@ -0,0 +1,198 @@
+package com.zjgsu.user.messaging;
+
+import com.zjgsu.user.dto.UserEventMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户事件发件箱
+ * 事件与业务变更在同一事务内写入user_event_outbox，提交后发布并等待broker确认，确认后记录published_at
+ * 发布失败或进程在提交后退出时，未确认的记录超过relay-delay后由定时任务重新发布；
+ * 多个实例可能重复发布同一事件，todo-service的清理是幂等的
+ * 已发布的记录保留retention，对账时可按删除时间重新发布
+ */
+@Component
+public class UserEventOutbox {
+    private static final Logger logger = LoggerFactory.getLogger(UserEventOutbox.class);
+
+    private static final RowMapper<UserEventMessage> MESSAGE_MAPPER = (rs, rowNum) -> {
+        UserEventMessage message = new UserEventMessage(rs.getLong("user_id"), rs.getString("username"),
+                rs.getString("event_type"));
+        message.setEventId(rs.getString("event_id"));
+        message.setTimestamp(rs.getTimestamp("created_at").toLocalDateTime());
+        return message;
+    };
+
+    private final RabbitTemplate rabbitTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration confirmTimeout;
+    private final Duration relayDelay;
+    private final Duration relayInterval;
+    private final int relayBatchSize;
+    private final Duration retention;
+
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+
+    private final ScheduledExecutorService relay = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("user-event-relay").daemon().factory());
+
+    public UserEventOutbox(RabbitTemplate rabbitTemplate, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                           @Value("${app.messaging.outbox.confirm-timeout:PT5S}") Duration confirmTimeout,
+                           @Value("${app.messaging.outbox.relay-delay:PT30S}") Duration relayDelay,
+                           @Value("${app.messaging.outbox.relay-interval:PT10S}") Duration relayInterval,
+                           @Value("${app.messaging.outbox.relay-batch-size:100}") int relayBatchSize,
+                           @Value("${app.messaging.outbox.retention:P7D}") Duration retention) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.confirmTimeout = confirmTimeout;
+        this.relayDelay = relayDelay;
+        this.relayInterval = relayInterval;
+        this.relayBatchSize = relayBatchSize;
+        this.retention = retention;
+
+        this.publishedCounter = Counter.builder("user.events.outbox").tag("result", "published").register(meterRegistry);
+        this.failedCounter = Counter.builder("user.events.outbox").tag("result", "failed").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        relay.scheduleWithFixedDelay(this::relaySafely,
+                relayInterval.toMillis(), relayInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        relay.shutdownNow();
+    }
+
+    /**
+     * 在当前事务内写入事件，提交后在后台发布，不阻塞请求
+     * 没有事务时立即发布
+     */
+    public void add(UserEventMessage message) {
+        jdbcTemplate.update("""
+                INSERT INTO user_event_outbox (event_id, user_id, username, event_type, created_at)
+                VALUES (?, ?, ?, ?, ?)""",
+                message.getEventId(), message.getUserId(), message.getUsername(), message.getEventType(),
+                Timestamp.valueOf(message.getTimestamp()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    Thread.ofVirtual().name("user-event-publish").start(() -> publish(message));
+                }
+            });
+        } else {
+            publish(message);
+        }
+    }
+
+    /**
+     * 重新发布超过relay-delay仍未确认的事件，并删除超过保留期限的已发布记录
+     * @return 本次确认的事件数
+     */
+    int relay() {
+        List<UserEventMessage> pending = jdbcTemplate.query("""
+                SELECT event_id, user_id, username, event_type, created_at FROM user_event_outbox
+                WHERE published_at IS NULL AND created_at <= ? ORDER BY created_at LIMIT ?""",
+                MESSAGE_MAPPER, Timestamp.valueOf(LocalDateTime.now().minus(relayDelay)), relayBatchSize);
+        int published = 0;
+        for (UserEventMessage message : pending) {
+            if (!publish(message)) {
+                // broker不可用时后面的事件同样会失败，等下一轮
+                break;
+            }
+            published++;
+        }
+        if (published > 0) {
+            logger.info("Relayed {} unpublished user events", published);
+        }
+        jdbcTemplate.update("DELETE FROM user_event_outbox WHERE published_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        return published;
+    }
+
+    /**
+     * 对账：重新发布指定时间之后的用户删除事件，补发todo-service遗漏清理的用户
+     * 只能覆盖保留期限内的记录
+     * @return 得到broker确认的事件数
+     */
+    public int republishDeleted(LocalDateTime since) {
+        List<UserEventMessage> events = jdbcTemplate.query("""
+                SELECT event_id, user_id, username, event_type, created_at FROM user_event_outbox
+                WHERE created_at >= ? AND event_type = 'deleted' ORDER BY created_at""",
+                MESSAGE_MAPPER, Timestamp.valueOf(since));
+        int published = 0;
+        for (UserEventMessage message : events) {
+            if (publish(message)) {
+                published++;
+            }
+        }
+        logger.info("Republished {} of {} user.deleted events since {}", published, events.size(), since);
+        return published;
+    }
+
+    /**
+     * 发布并等待broker确认，确认后标记为已发布
+     */
+    private boolean publish(UserEventMessage message) {
+        CorrelationData correlation = new CorrelationData(message.getEventId());
+        try {
+            rabbitTemplate.convertAndSend(UserEventProducer.EXCHANGE, "user." + message.getEventType(), message,
+                    amqpMessage -> {
+                        amqpMessage.getMessageProperties().setMessageId(message.getEventId());
+                        return amqpMessage;
+                    }, correlation);
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                    .get(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (!confirm.isAck()) {
+                failedCounter.increment();
+                logger.warn("User event {} was nacked: {}", message.getEventId(), confirm.getReason());
+                return false;
+            }
+            jdbcTemplate.update("UPDATE user_event_outbox SET published_at = ? WHERE event_id = ?",
+                    Timestamp.valueOf(LocalDateTime.now()), message.getEventId());
+            publishedCounter.increment();
+            logger.info("Published user event: {}", message);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            failedCounter.increment();
+            logger.warn("Failed to publish user event {}, it will be relayed: {}", message.getEventId(),
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    private void relaySafely() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            logger.error("Failed to relay user events: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.zjgsu.user.messaging;
+
+import com.zjgsu.user.dto.UserEventMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 用户事件消息生产者
+ * 在事务中调用时推迟到提交之后发送，消费者不会看到已回滚的变更
+ * 用户删除事件经UserEventOutbox在同一事务内落库，确认后才算发布；更新事件只用于缓存失效，直接发送
+ */
+@Component
+public class UserEventProducer {
+    private static final Logger logger = LoggerFactory.getLogger(UserEventProducer.class);
+
+    public static final String EXCHANGE = "user.event.exchange";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final UserEventOutbox userEventOutbox;
+
+    public UserEventProducer(RabbitTemplate rabbitTemplate, UserEventOutbox userEventOutbox) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.userEventOutbox = userEventOutbox;
+    }
+
+    /**
+     * 发送用户删除事件，由todo-service异步清理该用户的数据
+     * 须在删除用户的事务内调用，事件随事务提交写入发件箱
+     */
+    public void sendUserDeletedEvent(Long userId, String username) {
+        userEventOutbox.add(new UserEventMessage(userId, username, "deleted"));
+    }
+
+    /**
+     * 发送用户更新事件，网关据此使缓存的用户响应失效
+     */
+    public void sendUserUpdatedEvent(Long userId, String username) {
+        send(new UserEventMessage(userId, username, "updated"));
+    }
+
+    private void send(UserEventMessage message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(message);
+                }
+            });
+        } else {
+            publish(message);
+        }
+    }
+
+    private void publish(UserEventMessage message) {
+        try {
+            rabbitTemplate.convertAndSend(EXCHANGE, "user." + message.getEventType(), message, amqpMessage -> {
+                amqpMessage.getMessageProperties().setMessageId(message.getEventId());
+                return amqpMessage;
+            });
+            logger.info("Published user event: {}", message);
+        } catch (Exception e) {
+            logger.error("Failed to publish user event {}: {}", message, e.getMessage(), e);
+        }
+    }
+}
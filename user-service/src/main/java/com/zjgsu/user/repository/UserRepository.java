@@ -1,33 +1,50 @@
 package com.zjgsu.user.repository;
 
 import com.zjgsu.user.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
  * 用户数据访问层
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+    /**
+     * 查找所有用户，只查询投影类型包含的列
+     */
+    <T> List<T> findAllProjectedBy(Class<T> type);
+
+    /**
+     * 根据ID查找用户，只查询投影类型包含的列
+     */
+    <T> Optional<T> findProjectedById(Long id, Class<T> type);
+
     /**
      * 根据用户名查找用户
      */
     Optional<User> findByUsername(String username);
 
     /**
-     * 根据邮箱查找用户
+     * 根据邮箱查找用户（查询缓存）
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByEmail(String email);
 
     /**
-     * 检查用户名是否存在
+     * 检查用户名是否存在（查询缓存，不存在的结果同样会被缓存）
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsByUsername(String username);
 
     /**
-     * 检查邮箱是否存在
+     * 检查邮箱是否存在（查询缓存，不存在的结果同样会被缓存）
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsByEmail(String email);
 }
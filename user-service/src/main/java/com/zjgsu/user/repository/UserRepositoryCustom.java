@@ -0,0 +1,17 @@
+package com.zjgsu.user.repository;
+
+import com.zjgsu.user.model.User;
+
+import java.util.Optional;
+
+/**
+ * 用户数据访问层扩展
+ * 提供Spring Data派生查询无法表达的Hibernate特性
+ */
+public interface UserRepositoryCustom {
+    /**
+     * 按用户名(natural id)加载用户
+     * 命中natural id缓存时不访问数据库
+     */
+    Optional<User> loadByUsername(String username);
+}
@@ -1,16 +1,29 @@
 package com.zjgsu.user.service;
 
+import com.zjgsu.user.datasource.ReadYourWritesTracker;
+import com.zjgsu.user.exception.PreconditionFailedException;
 import com.zjgsu.user.exception.ResourceNotFoundException;
+import com.zjgsu.user.messaging.UserEventProducer;
 import com.zjgsu.user.model.User;
 import com.zjgsu.user.repository.UserRepository;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * 用户服务层
@@ -18,12 +31,32 @@ import java.util.Optional;
  */
 @Service
 public class UserService {
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
+    // 读己之写跟踪中用户名的键前缀，与按X-User-Id跟踪的键区分
+    private static final String USERNAME_KEY_PREFIX = "username:";
+
     private final UserRepository userRepository;
+    private final UserEventProducer userEventProducer;
     private final PasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int optimisticLockMaxAttempts;
+    // 未配置副本库时为null
+    private final ReadYourWritesTracker readYourWritesTracker;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserEventProducer userEventProducer,
+                       PlatformTransactionManager transactionManager,
+                       ObjectProvider<ReadYourWritesTracker> readYourWritesTracker,
+                       @Value("${app.optimistic-lock.max-attempts:3}") int optimisticLockMaxAttempts) {
         this.userRepository = userRepository;
+        this.userEventProducer = userEventProducer;
+        this.readYourWritesTracker = readYourWritesTracker.getIfAvailable();
         this.passwordEncoder = new BCryptPasswordEncoder();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.optimisticLockMaxAttempts = optimisticLockMaxAttempts;
     }
 
     /**
@@ -53,18 +86,30 @@ public class UserService {
 
     /**
      * 获取所有用户
+     * @param view 列表投影类型，只查询该类型包含的列
      */
-    public List<User> findAll() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public <T> List<T> findAll(Class<T> view) {
+        return userRepository.findAllProjectedBy(view);
     }
 
     /**
      * 根据ID查找用户
      */
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
 
+    /**
+     * 根据ID查找用户
+     * @param view 投影类型，只查询该类型包含的列
+     */
+    @Transactional(readOnly = true)
+    public <T> Optional<T> findById(Long id, Class<T> view) {
+        return userRepository.findProjectedById(id, view);
+    }
+
     /**
      * 创建用户
      */
@@ -84,39 +129,61 @@ public class UserService {
             user.setPassword(passwordEncoder.encode(user.getPassword()));
         }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        recordUsernameWrite(saved.getUsername());
+        return saved;
     }
 
     /**
      * 更新用户
+     * @param expectedVersion If-Match携带的版本号，为null时不做前置条件校验
      */
-    @Transactional
-    public User updateUser(Long id, User user) {
+    public User updateUser(Long id, User user, Long expectedVersion) {
+        if (expectedVersion != null) {
+            // 客户端声明了期望版本，冲突时直接交由客户端处理
+            return transactionTemplate.execute(status -> doUpdateUser(id, user, expectedVersion));
+        }
+        // PUT为全量替换，属于幂等操作，版本冲突时基于最新数据自动重试
+        return retryOnConflict(() -> transactionTemplate.execute(status -> doUpdateUser(id, user, null)));
+    }
+
+    private User doUpdateUser(Long id, User user, Long expectedVersion) {
         User existingUser = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", id));
+        checkVersion(existingUser, expectedVersion);
 
         // 更新字段
         existingUser.setUsername(user.getUsername());
         existingUser.setEmail(user.getEmail());
 
-        return userRepository.save(existingUser);
+        User updated = userRepository.saveAndFlush(existingUser);
+        recordUsernameWrite(updated.getUsername());
+        userEventProducer.sendUserUpdatedEvent(updated.getId(), updated.getUsername());
+        return updated;
     }
 
     /**
      * 删除用户
+     * 提交后发送user.deleted事件，该用户的Todo由todo-service在后台分批清理
      */
     @Transactional
-    public boolean deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new ResourceNotFoundException("User", id);
-        }
-        userRepository.deleteById(id);
+    public boolean deleteUser(Long id, Long expectedVersion) {
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User", id));
+        checkVersion(user, expectedVersion);
+
+        // 按实体删除，DELETE语句会带上版本条件
+        userRepository.delete(user);
+        userRepository.flush();
+        userEventProducer.sendUserDeletedEvent(user.getId(), user.getUsername());
         return true;
     }
 
     /**
      * 检查用户是否存在
+     * 按主键计数，只走主键索引，不读取整行
      */
+    @Transactional(readOnly = true)
     public boolean existsById(Long id) {
         return userRepository.existsById(id);
     }
@@ -128,7 +195,16 @@ public class UserService {
      * @return 认证成功返回用户对象，失败返回null
      */
     public User authenticate(String username, String password) {
-        Optional<User> userOpt = userRepository.findByUsername(username);
+        // 按natural id加载，命中二级缓存时不访问数据库；启用读写分离时查询副本库
+        Optional<User> userOpt = readOnlyTransactionTemplate.execute(
+                status -> userRepository.loadByUsername(username));
+
+        // 本实例刚写入的用户名可能尚未同步到副本库，只有这种情况回退到主库；
+        // 不存在的用户名(暴力破解、枚举)不会落到主库
+        if (userOpt.isEmpty() && readYourWritesTracker != null
+                && readYourWritesTracker.recentlyWrote(USERNAME_KEY_PREFIX + username)) {
+            userOpt = transactionTemplate.execute(status -> userRepository.loadByUsername(username));
+        }
 
         if (userOpt.isEmpty()) {
             return null;
@@ -143,4 +219,50 @@ public class UserService {
 
         return null;
     }
+
+    /**
+     * 提交后记录用户名的写入，复制延迟窗口内按该用户名登录时可回退到主库
+     */
+    private void recordUsernameWrite(String username) {
+        if (readYourWritesTracker == null || username == null) {
+            return;
+        }
+        String key = USERNAME_KEY_PREFIX + username;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            readYourWritesTracker.recordWrite(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                readYourWritesTracker.recordWrite(key);
+            }
+        });
+    }
+
+    /**
+     * 校验If-Match版本号
+     */
+    private void checkVersion(User user, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+            throw new PreconditionFailedException("User", user.getId(), expectedVersion, user.getVersion());
+        }
+    }
+
+    /**
+     * 乐观锁冲突时自动重试
+     * 仅用于幂等操作，每次重试都在新事务中重新读取最新版本
+     */
+    private <T> T retryOnConflict(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= optimisticLockMaxAttempts) {
+                    throw e;
+                }
+                logger.debug("Optimistic lock conflict, retrying (attempt {}/{})", attempt, optimisticLockMaxAttempts);
+            }
+        }
+    }
 }
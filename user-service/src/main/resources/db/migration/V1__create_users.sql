@@ -0,0 +1,14 @@
+-- 用户表基线结构
+-- 只使用MySQL与H2(MySQL模式)都支持的语法，字符集沿用数据库默认的utf8mb4
+-- username/email的唯一索引同时服务findBy/existsBy查询，InnoDB二级索引包含主键，existsBy只读索引即可完成
+CREATE TABLE IF NOT EXISTS users (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  username VARCHAR(50) NOT NULL,
+  email VARCHAR(100) NOT NULL,
+  password VARCHAR(255) NOT NULL,
+  role VARCHAR(20),
+  created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  version BIGINT NOT NULL DEFAULT 0,
+  CONSTRAINT uk_users_username UNIQUE (username),
+  CONSTRAINT uk_users_email UNIQUE (email)
+);
@@ -0,0 +1,9 @@
+-- 已处理的todo事件ID，供消费者去重
+-- 仅在app.messaging.dedup.persistent=true时写入，超过去重窗口的记录定期删除
+CREATE TABLE IF NOT EXISTS processed_events (
+  event_id VARCHAR(36) NOT NULL PRIMARY KEY,
+  processed_at DATETIME NOT NULL
+);
+
+-- 按processed_at范围删除过期记录
+CREATE INDEX idx_processed_events_processed_at ON processed_events (processed_at);
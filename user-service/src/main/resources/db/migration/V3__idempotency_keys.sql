@@ -0,0 +1,14 @@
+-- 带Idempotency-Key的写请求的原始响应，重复请求直接重放
+
+-- id为操作和客户端key的SHA-256，request_hash用于发现同一key被用于不同的请求
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  id CHAR(64) NOT NULL PRIMARY KEY,
+  request_hash CHAR(64) NOT NULL,
+  status_code INT NOT NULL,
+  response_body MEDIUMTEXT NOT NULL,
+  created_at DATETIME NOT NULL,
+  expires_at DATETIME NOT NULL
+);
+
+-- 按expires_at范围删除过期记录
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,15 @@
+-- 用户删除事件发件箱，与删除用户在同一事务内写入，发布并得到broker确认后记录published_at
+-- published_at为空的记录由定时任务重新发布；已发布的记录保留一段时间，供对账时重新发布
+CREATE TABLE IF NOT EXISTS user_event_outbox (
+  event_id VARCHAR(36) NOT NULL PRIMARY KEY,
+  user_id BIGINT NOT NULL,
+  username VARCHAR(50),
+  event_type VARCHAR(20) NOT NULL,
+  created_at DATETIME NOT NULL,
+  published_at DATETIME NULL
+);
+
+-- 待发布记录(WHERE published_at IS NULL AND created_at <= ? ORDER BY created_at)和过期记录(published_at < ?)
+CREATE INDEX idx_user_event_outbox_published_at ON user_event_outbox (published_at, created_at);
+-- 对账时按删除时间范围重新发布
+CREATE INDEX idx_user_event_outbox_created_at ON user_event_outbox (created_at);
@@ -0,0 +1,3 @@
+-- 注册接口的幂等记录曾保存含密码哈希的完整响应，删除这些记录
+-- 在TTL内用同一key重试注册将重新执行，用户名已存在时返回冲突
+DELETE FROM idempotency_keys WHERE response_body LIKE '%"password"%';
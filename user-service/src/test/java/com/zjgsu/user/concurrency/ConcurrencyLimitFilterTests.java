@@ -0,0 +1,94 @@
+package com.zjgsu.user.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并发限制过滤器测试
+ * 读写限制都固定为1，在放行请求的过滤链内发起第二个请求模拟并发
+ */
+class ConcurrencyLimitFilterTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimitFilter filter = filter(true);
+
+    @Test
+    void rejectsReadBeyondLimitWith503() throws Exception {
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+        MockHttpServletResponse outer = new MockHttpServletResponse();
+
+        filter.doFilter(request("GET", "/api/users/7"), outer,
+                (req, res) -> filter.doFilter(request("GET", "/api/users/8"), nested, passThrough()));
+
+        assertEquals(200, outer.getStatus());
+        assertEquals(503, nested.getStatus());
+        assertEquals("1", nested.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(nested.getContentAsString().contains("\"code\":503"), nested.getContentAsString());
+        assertEquals(1.0, meterRegistry.counter("http.concurrency.rejected", "type", "read").count());
+    }
+
+    @Test
+    void readsAndWritesAreLimitedSeparately() throws Exception {
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+
+        filter.doFilter(request("GET", "/api/users/7"), new MockHttpServletResponse(),
+                (req, res) -> filter.doFilter(request("POST", "/api/users"), nested, passThrough()));
+
+        assertEquals(200, nested.getStatus());
+    }
+
+    @Test
+    void pathsOutsideUserApiAreNotLimited() throws Exception {
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+
+        filter.doFilter(request("GET", "/api/users/7"), new MockHttpServletResponse(),
+                (req, res) -> filter.doFilter(request("GET", "/actuator/health"), nested, passThrough()));
+
+        assertEquals(200, nested.getStatus());
+    }
+
+    @Test
+    void disabledFilterPassesEverything() throws Exception {
+        ConcurrencyLimitFilter disabled = filter(false);
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+
+        disabled.doFilter(request("GET", "/api/users/7"), new MockHttpServletResponse(),
+                (req, res) -> disabled.doFilter(request("GET", "/api/users/8"), nested, passThrough()));
+
+        assertEquals(200, nested.getStatus());
+    }
+
+    @Test
+    void slotIsReleasedAfterRequestCompletes() throws Exception {
+        filter.doFilter(request("GET", "/api/users/7"), new MockHttpServletResponse(), passThrough());
+        MockHttpServletResponse next = new MockHttpServletResponse();
+
+        filter.doFilter(request("GET", "/api/users/8"), next, passThrough());
+
+        assertEquals(200, next.getStatus());
+    }
+
+    private ConcurrencyLimitFilter filter(boolean enabled) {
+        // 与应用中的ObjectMapper一样注册JavaTimeModule，ApiResponse.timestamp是LocalDateTime
+        return new ConcurrencyLimitFilter(Jackson2ObjectMapperBuilder.json().build(), meterRegistry, enabled,
+                1, 1, 1, 1, 1, 1, 0.2, 1.5, Duration.ZERO, 10);
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        return new MockHttpServletRequest(method, path);
+    }
+
+    private static FilterChain passThrough() {
+        return (req, res) -> { };
+    }
+}
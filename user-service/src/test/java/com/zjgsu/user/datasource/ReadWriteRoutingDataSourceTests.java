@@ -0,0 +1,176 @@
+package com.zjgsu.user.datasource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 读写分离路由测试
+ * 使用两个H2内存库分别模拟主库和副本库
+ */
+class ReadWriteRoutingDataSourceTests {
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = node("primary");
+        replica = node("replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        new JdbcTemplate(primary).execute("DROP TABLE node");
+        new JdbcTemplate(replica).execute("DROP TABLE node");
+    }
+
+    @Test
+    void routesReadOnlyTransactionsToReplica() {
+        Routing routing = new Routing(replica, 2000);
+
+        assertEquals("replica", routing.readOnly());
+        assertEquals("primary", routing.readWrite());
+    }
+
+    @Test
+    void routesReadsToPrimaryWithinReadYourWritesWindow() {
+        Routing routing = new Routing(replica, 60000);
+
+        actAs("1");
+        routing.readWrite();
+        assertEquals("primary", routing.readOnly());
+
+        actAs("2");
+        assertEquals("replica", routing.readOnly());
+    }
+
+    @Test
+    void connectionsOutsideTransactionsDoNotCountAsWrites() {
+        Routing routing = new Routing(replica, 60000);
+
+        actAs("1");
+        assertEquals("primary", routing.withoutTransaction());
+        assertEquals("replica", routing.readOnly());
+    }
+
+    /**
+     * 只读事务未找到数据后在读写事务中重试主库(如刚注册的用户登录)
+     * 请求内共用同一个EntityManager时，按application.yml中的连接处理方式，重试事务必须拿到主库连接
+     */
+    @Test
+    void readWriteRetryAfterReadOnlyTransactionReachesPrimary() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties properties = yaml.getObject();
+        assertEquals("false", properties.getProperty("spring.jpa.open-in-view"));
+        String handlingMode = properties.getProperty("spring.jpa.properties.hibernate.connection.handling_mode");
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(
+                primary, replica, new ReadYourWritesTracker(2000))));
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setPackagesToScan(ReadWriteRoutingDataSourceTests.class.getPackageName());
+        factoryBean.setJpaPropertyMap(Map.of("hibernate.connection.handling_mode", handlingMode));
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        TransactionTemplate readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+        TransactionTemplate readWriteTemplate = new TransactionTemplate(transactionManager);
+
+        // 与open-in-view相同：EntityManager在请求开始时绑定到线程，请求内的事务共用它
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            assertEquals("replica", readOnlyTemplate.execute(status -> currentNode(entityManager)));
+            assertEquals("primary", readWriteTemplate.execute(status -> currentNode(entityManager)));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+            factoryBean.destroy();
+        }
+    }
+
+    @Test
+    void fallsBackToPrimaryWhenReplicaUnavailable() {
+        Routing routing = new Routing(new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/unreachable"), 2000);
+
+        assertEquals("primary", routing.readOnly());
+    }
+
+    private void actAs(String userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-User-Id", userId);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static String currentNode(EntityManager entityManager) {
+        return (String) entityManager.createNativeQuery("SELECT name FROM node").getSingleResult();
+    }
+
+    private static DataSource node(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+
+    private class Routing {
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate readOnlyTemplate;
+        private final TransactionTemplate readWriteTemplate;
+
+        Routing(DataSource replicaDataSource, long windowMillis) {
+            DataSource dataSource = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(
+                    primary, replicaDataSource, new ReadYourWritesTracker(windowMillis)));
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+            this.readOnlyTemplate.setReadOnly(true);
+            this.readWriteTemplate = new TransactionTemplate(transactionManager);
+        }
+
+        String readOnly() {
+            return readOnlyTemplate.execute(status -> currentNode());
+        }
+
+        String readWrite() {
+            return readWriteTemplate.execute(status -> currentNode());
+        }
+
+        String withoutTransaction() {
+            return currentNode();
+        }
+
+        private String currentNode() {
+            return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+        }
+    }
+}
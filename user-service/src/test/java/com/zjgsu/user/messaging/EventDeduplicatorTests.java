@@ -0,0 +1,119 @@
+package com.zjgsu.user.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 事件去重窗口测试
+ * 使用可调整的时钟模拟时间流逝
+ */
+class EventDeduplicatorTests {
+
+    private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+
+    private EventDeduplicator deduplicator(int maxEntries) {
+        return new EventDeduplicator(null, new SimpleMeterRegistry(), Duration.ofMinutes(10), maxEntries, clock);
+    }
+
+    @Test
+    void completedEventIsDuplicateWithinWindow() {
+        EventDeduplicator deduplicator = deduplicator(100);
+
+        assertEquals(EventDeduplicator.Result.ACQUIRED, deduplicator.tryBegin("e1"));
+        deduplicator.complete("e1");
+
+        now = now.plus(Duration.ofMinutes(9));
+        assertEquals(EventDeduplicator.Result.DUPLICATE, deduplicator.tryBegin("e1"));
+    }
+
+    @Test
+    void eventInProgressIsNotAcquiredTwice() {
+        EventDeduplicator deduplicator = deduplicator(100);
+
+        assertEquals(EventDeduplicator.Result.ACQUIRED, deduplicator.tryBegin("e1"));
+        assertEquals(EventDeduplicator.Result.IN_PROGRESS, deduplicator.tryBegin("e1"));
+    }
+
+    @Test
+    void abortedEventCanBeRetried() {
+        EventDeduplicator deduplicator = deduplicator(100);
+
+        deduplicator.tryBegin("e1");
+        deduplicator.abort("e1");
+
+        assertEquals(EventDeduplicator.Result.ACQUIRED, deduplicator.tryBegin("e1"));
+    }
+
+    @Test
+    void completedEventsAreEvictedAfterWindow() {
+        EventDeduplicator deduplicator = deduplicator(100);
+
+        deduplicator.tryBegin("e1");
+        deduplicator.complete("e1");
+
+        now = now.plus(Duration.ofMinutes(11));
+        assertEquals(EventDeduplicator.Result.ACQUIRED, deduplicator.tryBegin("e1"));
+    }
+
+    @Test
+    void oldestEventsAreEvictedOverCapacity() {
+        EventDeduplicator deduplicator = deduplicator(2);
+
+        for (String eventId : new String[]{"e1", "e2", "e3"}) {
+            deduplicator.tryBegin(eventId);
+            deduplicator.complete(eventId);
+        }
+
+        assertEquals(EventDeduplicator.Result.ACQUIRED, deduplicator.tryBegin("e1"));
+        assertEquals(EventDeduplicator.Result.DUPLICATE, deduplicator.tryBegin("e3"));
+    }
+
+    /**
+     * 数据库中已记录的事件在内存中记为已完成，之后的重复投递不再查询数据库
+     */
+    @Test
+    void persistedDuplicateIsRememberedInMemory() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:dedup_tests;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE processed_events (event_id VARCHAR(36) PRIMARY KEY, processed_at TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO processed_events (event_id, processed_at) VALUES (?, ?)",
+                "e1", Timestamp.from(now));
+        EventDeduplicator deduplicator = new EventDeduplicator(jdbcTemplate, new SimpleMeterRegistry(),
+                Duration.ofMinutes(10), 100, clock);
+
+        assertEquals(EventDeduplicator.Result.DUPLICATE, deduplicator.tryBegin("e1"));
+
+        // 去重存储不可用时查询按首次处理，只有内存中的记录能识别重复
+        jdbcTemplate.execute("DROP TABLE processed_events");
+        assertEquals(EventDeduplicator.Result.DUPLICATE, deduplicator.tryBegin("e1"));
+        assertEquals(EventDeduplicator.Result.ACQUIRED, deduplicator.tryBegin("e2"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.zjgsu.user.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 事件处理通道测试
+ */
+class EventLanesTests {
+
+    private final EventLanes eventLanes = new EventLanes(new SimpleMeterRegistry(), 4, 16, 1000);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        eventLanes.shutdown();
+    }
+
+    @Test
+    void eventsOfSameUserAreProcessedInOrder() throws InterruptedException {
+        int users = 10;
+        int eventsPerUser = 200;
+        Map<Long, List<Integer>> processed = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(users * eventsPerUser);
+
+        for (int seq = 0; seq < eventsPerUser; seq++) {
+            for (long userId = 1; userId <= users; userId++) {
+                long user = userId;
+                int value = seq;
+                eventLanes.dispatch(user, () -> {
+                    // 每个用户的列表只由其所在通道线程写入
+                    processed.computeIfAbsent(user, key -> new ArrayList<>()).add(value);
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (long userId = 1; userId <= users; userId++) {
+            List<Integer> values = processed.get(userId);
+            assertEquals(eventsPerUser, values.size());
+            for (int i = 0; i < eventsPerUser; i++) {
+                assertEquals(i, values.get(i));
+            }
+        }
+    }
+
+    @Test
+    void sameUserAlwaysMapsToSameLane() {
+        assertEquals(eventLanes.laneOf(42L), eventLanes.laneOf(42L));
+        assertEquals(0, eventLanes.laneOf(null));
+        for (long userId = 0; userId < 100; userId++) {
+            int lane = eventLanes.laneOf(userId);
+            assertTrue(lane >= 0 && lane < eventLanes.getLaneCount());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.zjgsu.user.messaging;
+
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Todo事件消费者测试
+ * 用动态代理记录通道上的确认操作
+ */
+class TodoEventConsumerTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EventLanes eventLanes = new EventLanes(meterRegistry, 2, 16, 5000);
+    private final EventDeduplicator eventDeduplicator = new EventDeduplicator(null, new SimpleMeterRegistry(),
+            Duration.ofMinutes(10), 100, Clock.systemUTC());
+    private final TodoEventConsumer consumer = new TodoEventConsumer(
+            List.of("created", "updated", "deleted", "toggled"), eventDeduplicator, eventLanes, meterRegistry,
+            3, Duration.ofMillis(10), Duration.ofMillis(50));
+
+    private final List<String> operations = new CopyOnWriteArrayList<>();
+    private final CountDownLatch settled = new CountDownLatch(2);
+    private final Channel channel = (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{Channel.class}, (proxy, method, args) -> {
+                if (method.getName().equals("basicAck")) {
+                    operations.add("basicAck:" + args[0]);
+                    settled.countDown();
+                } else if (method.getName().equals("basicNack")) {
+                    operations.add("basicNack:" + args[0] + ":requeue=" + args[2]);
+                    settled.countDown();
+                }
+                return null;
+            });
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        eventLanes.shutdown();
+    }
+
+    /**
+     * 处理中的事件再次投递时排在同一通道等待，前一次处理完成后作为重复确认，不重新入队
+     */
+    @Test
+    void redeliveryWhileInProgressWaitsInLane() throws Exception {
+        consumer.handleTodoEvent(message(1, "e1"), channel);
+        consumer.handleTodoEvent(message(2, "e1"), channel);
+
+        assertTrue(settled.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("basicAck:1", "basicAck:2"), operations);
+    }
+
+    @Test
+    void completedEventIsAckedWithoutProcessing() throws Exception {
+        consumer.handleTodoEvent(message(1, "e1"), channel);
+        assertTrue(waitFor("basicAck:1"));
+
+        consumer.handleTodoEvent(message(2, "e1"), channel);
+        assertEquals(List.of("basicAck:1", "basicAck:2"), operations);
+    }
+
+    /**
+     * 失败的事件在通道内重试，耗尽后拒绝且不重新入队，同一用户之后的事件排在它之后处理
+     */
+    @Test
+    void failedEventIsRetriedBeforeLaterEventsOfSameUser() throws Exception {
+        consumer.handleTodoEvent(failingMessage(1, "e1"), channel);
+        consumer.handleTodoEvent(message(2, "e2"), channel);
+
+        assertTrue(settled.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("basicNack:1:requeue=false", "basicAck:2"), operations);
+        assertEquals(1, meterRegistry.get("user.todo_events.failed").counter().count());
+    }
+
+    private boolean waitFor(String operation) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!operations.contains(operation)) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static Message message(long deliveryTag, String eventId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        properties.setMessageId(eventId);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setHeader("eventType", "created");
+        properties.setHeader("userId", 7L);
+        properties.setReceivedRoutingKey("todo.created");
+        String body = "{\"todoId\":1,\"title\":\"t\",\"userId\":7,\"eventType\":\"created\"}";
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    /**
+     * 未知事件类型且没有路由键，处理时总是失败
+     */
+    private static Message failingMessage(long deliveryTag, String eventId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        properties.setMessageId(eventId);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setHeader("userId", 7L);
+        String body = "{\"todoId\":1,\"title\":\"t\",\"userId\":7,\"eventType\":\"unknown\"}";
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,100 @@
+package com.zjgsu.user.messaging;
+
+import com.zjgsu.user.dto.UserEventMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 用户事件发件箱测试
+ * 用RabbitTemplate子类直接完成发布确认
+ */
+class UserEventOutboxTests {
+
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private volatile boolean ack = true;
+
+    private final RabbitTemplate rabbitTemplate = new RabbitTemplate() {
+        @Override
+        public void convertAndSend(String exchange, String routingKey, Object message,
+                                   MessagePostProcessor messagePostProcessor, CorrelationData correlationData) {
+            if (ack) {
+                published.add(routingKey + ":" + ((UserEventMessage) message).getUserId());
+            }
+            correlationData.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack"));
+        }
+    };
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:mem:outbox_tests;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+
+    private final UserEventOutbox outbox = new UserEventOutbox(rabbitTemplate, jdbcTemplate,
+            new SimpleMeterRegistry(), Duration.ofSeconds(1), Duration.ZERO, Duration.ofSeconds(10), 100,
+            Duration.ofDays(7));
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS user_event_outbox");
+        jdbcTemplate.execute("""
+                CREATE TABLE user_event_outbox (
+                  event_id VARCHAR(36) NOT NULL PRIMARY KEY,
+                  user_id BIGINT NOT NULL,
+                  username VARCHAR(50),
+                  event_type VARCHAR(20) NOT NULL,
+                  created_at TIMESTAMP NOT NULL,
+                  published_at TIMESTAMP NULL
+                )""");
+    }
+
+    @Test
+    void confirmedEventIsMarkedPublished() {
+        outbox.add(new UserEventMessage(1L, "alice", "deleted"));
+
+        assertEquals(List.of("user.deleted:1"), published);
+        assertEquals(0, unpublished());
+        assertEquals(0, outbox.relay());
+    }
+
+    @Test
+    void nackedEventIsRelayedLater() {
+        ack = false;
+        outbox.add(new UserEventMessage(1L, "alice", "deleted"));
+        assertEquals(1, unpublished());
+        assertEquals(0, outbox.relay());
+
+        ack = true;
+        assertEquals(1, outbox.relay());
+        assertEquals(List.of("user.deleted:1"), published);
+        assertEquals(0, unpublished());
+    }
+
+    @Test
+    void republishDeletedCoversRetainedEventsSinceTime() {
+        LocalDateTime start = LocalDateTime.now().minusMinutes(1);
+        outbox.add(new UserEventMessage(1L, "alice", "deleted"));
+        outbox.add(new UserEventMessage(2L, "bob", "deleted"));
+        published.clear();
+
+        assertEquals(2, outbox.republishDeleted(start));
+        assertEquals(Set.of("user.deleted:1", "user.deleted:2"), Set.copyOf(published));
+        assertEquals(0, outbox.republishDeleted(LocalDateTime.now().plusMinutes(1)));
+    }
+
+    private int unpublished() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_event_outbox WHERE published_at IS NULL", Integer.class);
+    }
+}
@@ -0,0 +1,100 @@
+package com.zjgsu.user.repository;
+
+import com.zjgsu.user.model.User;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 索引使用检查
+ * 在MySQL兼容模式的H2上执行Flyway迁移，按UserRepository派生查询的方法名生成等价SQL，
+ * 要求EXPLAIN结果中不出现全表扫描
+ */
+class UserRepositoryIndexUsageTests {
+
+    @Test
+    void derivedQueriesUseIndexes() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:user_index_usage;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Set<String> methodNames = new TreeSet<>();
+        for (Method method : UserRepository.class.getDeclaredMethods()) {
+            methodNames.add(method.getName());
+        }
+
+        List<String> failures = new ArrayList<>();
+        for (String methodName : methodNames) {
+            PartTree tree = new PartTree(methodName, User.class);
+            if (!tree.iterator().hasNext()) {
+                // 没有查询条件的全量查询
+                continue;
+            }
+            String sql = toSql(tree);
+            String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+            if (plan.toLowerCase().contains("tablescan")) {
+                failures.add(methodName + " -> " + plan);
+            }
+        }
+        assertTrue(failures.isEmpty(), "Queries without index: " + failures);
+    }
+
+    private static String toSql(PartTree tree) {
+        List<String> orParts = new ArrayList<>();
+        for (PartTree.OrPart orPart : tree) {
+            List<String> conditions = new ArrayList<>();
+            for (Part part : orPart) {
+                conditions.add(condition(part));
+            }
+            orParts.add(String.join(" AND ", conditions));
+        }
+        StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE ")
+                .append(String.join(" OR ", orParts));
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : tree.getSort()) {
+            orders.add(column(order.getProperty()) + " " + order.getDirection().name());
+        }
+        if (!orders.isEmpty()) {
+            sql.append(" ORDER BY ").append(String.join(", ", orders));
+        }
+        return sql.toString();
+    }
+
+    private static String condition(Part part) {
+        String column = column(part.getProperty().getSegment());
+        Class<?> type = part.getProperty().getType();
+        return switch (part.getType()) {
+            case SIMPLE_PROPERTY -> column + " = " + literal(type);
+            case CONTAINING -> column + " LIKE '%x%'";
+            default -> throw new IllegalArgumentException("Unsupported query part: " + part);
+        };
+    }
+
+    private static String literal(Class<?> type) {
+        if (type == Boolean.class || type == boolean.class) {
+            return "TRUE";
+        }
+        if (type == String.class) {
+            return "'x'";
+        }
+        return "1";
+    }
+
+    // 与Spring Boot默认命名策略一致：驼峰转下划线
+    private static String column(String property) {
+        return property.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
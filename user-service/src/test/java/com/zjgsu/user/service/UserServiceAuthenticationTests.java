@@ -0,0 +1,72 @@
+package com.zjgsu.user.service;
+
+import com.zjgsu.user.datasource.ReadYourWritesTracker;
+import com.zjgsu.user.model.User;
+import com.zjgsu.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 登录回退主库测试
+ * 用动态代理代替仓库，按顺序返回副本库和主库的查询结果
+ */
+class UserServiceAuthenticationTests {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    // 依次作为loadByUsername的结果，用完后返回empty
+    private final Deque<Optional<User>> results = new ArrayDeque<>();
+    private final AtomicReference<User> saved = new AtomicReference<>();
+
+    private final UserRepository userRepository = (UserRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{UserRepository.class}, (proxy, method, args) ->
+                    switch (method.getName()) {
+                        case "loadByUsername" -> {
+                            lookups.incrementAndGet();
+                            yield results.isEmpty() ? Optional.empty() : results.poll();
+                        }
+                        case "existsByUsername", "existsByEmail" -> false;
+                        case "save" -> {
+                            saved.set((User) args[0]);
+                            yield args[0];
+                        }
+                        default -> null;
+                    });
+    private final PlatformTransactionManager transactionManager = (PlatformTransactionManager) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{PlatformTransactionManager.class}, (proxy, method, args) -> null);
+
+    private final UserService userService = new UserService(userRepository, null, transactionManager,
+            new StaticListableBeanFactory(Map.of("tracker", new ReadYourWritesTracker(2000)))
+                    .getBeanProvider(ReadYourWritesTracker.class), 3);
+
+    @Test
+    void unknownUsernameIsNotRetriedOnPrimary() {
+        assertNull(userService.authenticate("ghost", "password"));
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    void recentlyRegisteredUsernameFallsBackToPrimary() {
+        User user = new User(null, "alice", "alice@example.com");
+        user.setPassword("password");
+        userService.createUser(user);
+        // 副本库尚未同步，主库返回刚注册的用户
+        results.add(Optional.empty());
+        results.add(Optional.of(saved.get()));
+
+        assertNotNull(userService.authenticate("alice", "password"));
+        assertEquals(2, lookups.get());
+    }
+}